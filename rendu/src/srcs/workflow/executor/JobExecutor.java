@@ -1,25 +1,81 @@
 package srcs.workflow.executor;
 
+import java.rmi.MarshalException;
+import java.rmi.RemoteException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.function.Consumer;
 
 import srcs.workflow.job.Job;
+import srcs.workflow.job.JobStructure;
+import srcs.workflow.job.ValidationException;
 
 /**
  * Une classe abstraite JobExecutor possède un attribut de type Job (renseigné lors
  * de l’appel au constructeur) et offre la méthode abstraite execute().
- * 
+ *
+ * executeAsync() lance l'exécution sans attendre sa fin, et taskFuture(id) permet de suivre
+ * chaque tâche. Par défaut, executeAsync() appelle execute() dans un thread dédié ; les
+ * JobExecutor qui le peuvent la redéfinissent pour qu'aucun thread n'attende la fin du job
+ * (JobExecutorParallel, JobExecutorForkJoin, clients distants).
+ *
+ * resultPublisher() publie les résultats des tâches (TaskResult) dans l'ordre où elles se
+ * terminent, pour traiter les premiers résultats sans attendre la fin du job.
+ *
+ * setReturnedTasks / setReturnOnlySinks limitent les résultats renvoyés par execute() : les
+ * résultats intermédiaires sont alors libérés dès que les tâches qui les lisent ont été exécutées.
  */
 public abstract class JobExecutor {
-	
+
+	/** Threads de l'implantation par défaut de executeAsync() : un par job (rien à arrêter) */
+	private static final ExecutorService ASYNC_EXECUTOR = TaskExecutors.threadPerTask();
+
 	protected final Job job;
-	
+
 	/** (exo 5) permet d'appeler une méthode lorsqu'une tâche est terminée. */
 	protected JobExecutorNotification notificationMethod;
-	
+
+	/** Résultat de chaque tâche, à mesure qu'elles se terminent (voir taskFuture) */
+	protected final Map<String, CompletableFuture<Object>> taskFutures = new ConcurrentHashMap<>();
+
+	/** Identifiants des tâches terminées (voir taskCompleted) */
+	private final Set<String> completedTasks = ConcurrentHashMap.newKeySet();
+
+	/** Tâches dont le résultat est renvoyé par execute() : toutes si null et ! returnOnlySinks */
+	protected volatile Set<String> returnedTasks;
+
+	/** Vrai si seuls les résultats des tâches dont aucune autre ne dépend sont renvoyés */
+	protected volatile boolean returnOnlySinks;
+
+	/** Cause de l'échec du job, null tant qu'il n'a pas échoué */
+	protected volatile Throwable jobFailure;
+
+	/** Appelé à chaque fin de tâche avec son résultat (voir setTaskListener), ou null */
+	protected volatile Consumer<TaskResult> taskListener;
+
+	/** Publie les résultats des tâches (voir resultPublisher), null tant qu'il n'a pas été demandé */
+	private volatile SubmissionPublisher<TaskResult> publisher;
+
+	/** Vrai une fois le job terminé (ou échoué), jusqu'au lancement de l'exécution suivante */
+	private boolean jobDone;
+
+	/** Lock pour protéger publisher et jobDone */
+	private final Object publisherLock = new Object();
+
 	public JobExecutor(Job job) {
 		this.job = job;
 	}
-	
+
 	/**
 	 * (exo 5) permet d'appeler une méthode lorsqu'une tâche est terminée.
 	 * @param notif  l'objet duquel appeler la méthode taskFinished(String taskID)
@@ -27,13 +83,341 @@ public abstract class JobExecutor {
 	public void setNotificationMethod(JobExecutorNotification notif) {
 		notificationMethod = notif;
 	}
-	
-	/** 
+
+	/**
+	 * Méthode appelée à chaque fin de tâche, avec le résultat de la tâche (voir TaskResult),
+	 * depuis le thread qui l'a terminée.
+	 * @param listener  null pour n'appeler aucune méthode
+	 */
+	public void setTaskListener(Consumer<TaskResult> listener) {
+		taskListener = listener;
+	}
+
+	/**
+	 * Résultats des tâches, publiés à mesure qu'elles se terminent (ordre de fin), avec leurs
+	 * mesures de temps. Le flux se termine (onComplete) à la fin du job, ou par onError avec
+	 * l'exception du job s'il échoue : onError est alors immédiat, les résultats publiés mais pas
+	 * encore remis à un abonné sont perdus (ils restent disponibles via taskFuture).
+	 *
+	 * Chaque exécution a son propre flux : resultPublisher() renvoie celui de l'exécution en
+	 * cours, ou à défaut celui de la prochaine exécution. Un abonné ne reçoit que les résultats
+	 * publiés après son abonnement : pour les recevoir tous, s'abonner avant de lancer
+	 * l'exécution (les autres restent disponibles via taskFuture).
+	 *
+	 * Les abonnés sont appelés par les threads de ForkJoinPool.commonPool(). Un abonné qui ne
+	 * demande plus d'éléments (request) finit par ralentir le job : une tâche qui se termine
+	 * attend qu'il y ait de la place dans son tampon.
+	 * @return le même Publisher pour toute une exécution
+	 */
+	public Flow.Publisher<TaskResult> resultPublisher() {
+		synchronized (publisherLock) {
+			// Flux d'une exécution terminée : remplacé par celui de la prochaine
+			if ( (publisher == null) || publisher.isClosed() ) publisher = new SubmissionPublisher<>();
+			return publisher;
+		}
+	}
+
+	/**
+	 * Début d'une exécution : oublie l'état de la précédente (tâches terminées et leurs futurs,
+	 * échec, flux de résultats fermé), pour qu'un même JobExecutor puisse exécuter son job
+	 * plusieurs fois. Les futurs et le Publisher demandés avant le lancement (pas encore
+	 * complétés, ni fermé) sont gardés.
+	 * Appelé au début de execute() et de executeAsync().
+	 */
+	protected void startExecution() {
+		completedTasks.clear();
+		taskFutures.values().removeIf(CompletableFuture::isDone);
+		jobFailure = null;
+		synchronized (publisherLock) {
+			jobDone = false;
+			if ( (publisher != null) && publisher.isClosed() ) publisher = null;
+		}
+	}
+
+	/**
+	 * Seuls les résultats de ces tâches seront renvoyés par execute(). Les autres résultats sont
+	 * libérés au cours de l'exécution, dès que toutes les tâches qui les lisent ont été
+	 * exécutées : le pic de mémoire n'est plus la somme des résultats de toutes les tâches.
+	 * Un résultat libéré n'est plus disponible via taskFuture que si son futur a été demandé
+	 * avant la fin de la tâche ; il est toujours publié (resultPublisher).
+	 * 
+	 * Les clients distants envoient cette sélection avec le job : le serveur ne garde et ne
+	 * renvoie lui aussi que ces résultats.
+	 * @param taskIDs  identifiants (@Task) des tâches, null pour renvoyer tous les résultats
+	 *        (par défaut). Un identifiant inconnu fait échouer l'exécution (IllegalArgumentException).
+	 */
+	public void setReturnedTasks(Collection<String> taskIDs) {
+		returnedTasks = (taskIDs == null) ? null : new LinkedHashSet<>(taskIDs);
+		returnOnlySinks = false;
+	}
+
+	/**
+	 * Comme setReturnedTasks, avec les tâches dont aucune autre ne dépend (les résultats finaux du job).
+	 */
+	public void setReturnOnlySinks() {
+		returnedTasks = null;
+		returnOnlySinks = true;
+	}
+
+	/** Vrai si tous les résultats sont renvoyés, donc gardés jusqu'à la fin de l'exécution. */
+	protected boolean returnsAllResults() {
+		return (returnedTasks == null) && ! returnOnlySinks;
+	}
+
+	/**
+	 * Vrai si le futur de chaque tâche garde son résultat, même s'il n'a pas été demandé avant la
+	 * fin de la tâche (voir taskFuture). Faux quand les résultats ne doivent pas tous rester en
+	 * mémoire : résultats libérés (setReturnedTasks), écrits sur disque (JobExecutorParallelAbstract.setResultStore).
+	 */
+	protected boolean retainsTaskResults() {
+		return returnsAllResults();
+	}
+
+	/**
+	 * Comptage des lecteurs de chaque résultat, pour une exécution qui ne renvoie pas tous les
+	 * résultats (voir ResultRetention).
+	 * @return null si tous les résultats sont renvoyés : rien n'est libéré
+	 * @throws IllegalArgumentException  si une tâche à renvoyer n'existe pas
+	 */
+	protected ResultRetention newResultRetention(JobStructure structure) throws IllegalArgumentException {
+		if (returnsAllResults()) return null;
+		return new ResultRetention(structure, returnOnlySinks ? null : returnedTasks);
+	}
+
+	/**
 	 * L’appel à cette méthode exécute le job et renvoie une map qui associe pour chaque
 	 * tâche son résultat.
 	 * @return liste des associations entre id d'une tâche et résultat de cette tâche.
 	 * @throws Exception   si le job a levé une exception
 	 */
 	public abstract Map<String,Object> execute() throws Exception;
-	
+
+	/**
+	 * Lance l'exécution du job et rend la main aussitôt.
+	 * @return le futur résultat de execute() : complété par la map des résultats, ou
+	 *         exceptionnellement par l'exception que execute() aurait jetée.
+	 */
+	public CompletableFuture<Map<String, Object>> executeAsync() {
+		startExecution();
+		CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+		ASYNC_EXECUTOR.execute( () -> {
+			try {
+				Map<String, Object> results = execute();
+				resultsReceived(results);
+				future.complete(results);
+			} catch (Throwable t) {
+				jobFailed(t);
+				future.completeExceptionally(t);
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Futur résultat d'une tâche, complété dès que la tâche est terminée (avant la fin du job),
+	 * ou exceptionnellement si le job échoue avant. Peut être demandé avant, pendant ou après
+	 * l'exécution (sauf si les résultats intermédiaires sont libérés, voir setReturnedTasks : le
+	 * futur d'une tâche déjà terminée échoue alors avec une IllegalStateException). Les futurs
+	 * complétés par une exécution sont oubliés au lancement de la suivante.
+	 * @param taskID  identifiant (@Task) de la tâche. Le futur d'un identifiant inconnu échoue
+	 *        aussitôt (IllegalArgumentException), ou à la fin du job si sa classe n'est pas valide.
+	 */
+	public CompletableFuture<Object> taskFuture(String taskID) {
+		if (isUnknownTask(taskID)) {
+			return CompletableFuture.failedFuture(new IllegalArgumentException("Tâche inconnue : " + taskID));
+		}
+		CompletableFuture<Object> future = taskFutures.computeIfAbsent(taskID, id -> new CompletableFuture<>());
+		// Tâche terminée avant la demande, résultat non gardé (voir taskCompleted)
+		if (completedTasks.contains(taskID) && ! future.isDone()) {
+			future.completeExceptionally(new IllegalStateException("Résultat de la tâche " + taskID + " déjà libéré."));
+		}
+		Throwable failure = jobFailure;
+		if (failure != null) future.completeExceptionally(failure);
+		// Job terminé sans que la tâche ait été signalée (résultat non renvoyé par le serveur)
+		if ( ! future.isDone() && isJobDone()) {
+			future.completeExceptionally(new IllegalStateException("Résultat de la tâche " + taskID + " non renvoyé."));
+		}
+		return future;
+	}
+
+	private boolean isJobDone() {
+		synchronized (publisherLock) {
+			return jobDone;
+		}
+	}
+
+	/**
+	 * Vrai si la classe du job est valide et n'a pas de tâche taskID. Structure de la classe mise
+	 * en cache (voir JobStructure.of) : rien n'est recalculé à chaque appel.
+	 */
+	private boolean isUnknownTask(String taskID) {
+		try {
+			return ! JobStructure.of(job.getClass()).getTaskMethods().containsKey(taskID);
+		} catch (ValidationException e) {
+			return false; // job invalide : son exécution échouera, et avec elle tous les futurs
+		}
+	}
+
+	/**
+	 * Exécution asynchrone dont l'avancement est rapporté à un objet distant : chaque fin de
+	 * tâche, puis la fin (ou l'échec) du job. Sert aux serveurs (JobTrackerCentral,
+	 * JobTrackerMaster), pour qu'aucun thread RMI n'attende la fin du job.
+	 * @param callback  objet exporté par le client
+	 * @param streamedTasks  tâches dont la valeur est transmise dès leur fin (futurs demandés par
+	 *        le client), null pour toutes (flux de résultats). Pour les autres, seuls l'identifiant
+	 *        et les mesures de temps sont transmis (voir TaskResult.withoutValue).
+	 * @return le futur résultat du job (voir executeAsync())
+	 */
+	public CompletableFuture<Map<String, Object>> executeAsync(JobExecutorCallback callback, Set<String> streamedTasks) {
+		setTaskListener( result -> {
+			try {
+				if ( (streamedTasks == null) || streamedTasks.contains(result.getTaskID()) ) {
+					try {
+						callback.taskFinished(result);
+					} catch (MarshalException e) {
+						// Valeur non sérialisable : le client apprend tout de même la fin de la tâche
+						callback.taskFinished(result.withoutValue("valeur non transmissible : " + e.getCause()));
+					}
+				} else {
+					callback.taskFinished(result.withoutValue(null));
+				}
+			} catch (RemoteException e) { } // client déconnecté : le job continue
+		});
+		CompletableFuture<Map<String, Object>> future = executeAsync();
+		future.whenComplete( (results, failure) -> {
+			try {
+				if (failure == null) {
+					try {
+						callback.jobFinished(results);
+					} catch (MarshalException e) {
+						// Résultat non sérialisable : le client doit tout de même apprendre la fin du job
+						callback.jobFailed(new Exception("Résultats du job non transmissibles : " + e.getCause()));
+					}
+				} else {
+					Throwable cause = (failure instanceof CompletionException) ? failure.getCause() : failure;
+					try {
+						callback.jobFailed((cause instanceof Exception) ? (Exception) cause : new Exception(cause));
+					} catch (RemoteException e) {
+						// Exception non sérialisable : seul son message est transmis
+						callback.jobFailed(new Exception(cause.toString()));
+					}
+				}
+			} catch (RemoteException e) { } // client déconnecté
+		});
+		return future;
+	}
+
+	/**
+	 * Une tâche est terminée : complète son futur (voir taskFuture), prévient taskListener et
+	 * publie son résultat (voir resultPublisher). Doit être appelé avant jobFinished.
+	 * Résultat sans valeur (non transmise par le serveur, voir TaskResult.withoutValue) : le futur
+	 * échoue si la valeur n'était pas transmissible, sinon il attend les résultats du job.
+	 */
+	protected void taskCompleted(TaskResult result) {
+		String taskID = result.getTaskID();
+		if ( ! completedTasks.add(taskID)) return;
+		if ( ! result.hasValue()) {
+			CompletableFuture<Object> future = taskFutures.get(taskID);
+			if ( (future != null) && (result.getValueError() != null) ) {
+				future.completeExceptionally(new IllegalStateException("Résultat de la tâche " + taskID + " : " + result.getValueError()));
+			}
+		} else if (retainsTaskResults()) {
+			taskFutures.computeIfAbsent(taskID, id -> new CompletableFuture<>()).complete(result.getValue());
+		} else {
+			// Résultats pas tous gardés en mémoire : seuls les futurs déjà demandés le gardent
+			CompletableFuture<Object> future = taskFutures.get(taskID);
+			if (future != null) future.complete(result.getValue());
+		}
+		Consumer<TaskResult> listener = taskListener;
+		if (listener != null) listener.accept(result);
+		SubmissionPublisher<TaskResult> pub = publisher;
+		if ( (pub != null) && ! pub.isClosed()) pub.submit(result);
+	}
+
+	/** Vrai si resultPublisher() a été demandé : les résultats doivent alors être publiés tâche par tâche. */
+	protected boolean hasResultPublisher() {
+		return publisher != null;
+	}
+
+	/**
+	 * Le job est terminé, après le taskCompleted de chacune de ses tâches : ferme le publisher.
+	 * Un futur encore en attente ne peut plus être complété : il échoue.
+	 */
+	protected void jobFinished(Map<String, Object> results) {
+		// jobDone d'abord : un futur demandé pendant le parcours échoue dans taskFuture
+		synchronized (publisherLock) {
+			jobDone = true;
+			if (publisher != null) closePublisher(null);
+		}
+		for (Map.Entry<String, CompletableFuture<Object>> e : taskFutures.entrySet()) {
+			if ( ! e.getValue().isDone()) {
+				String taskID = e.getKey();
+				e.getValue().completeExceptionally(completedTasks.contains(taskID)
+						? new IllegalStateException("Résultat de la tâche " + taskID + " non renvoyé.")
+						: new IllegalArgumentException("Tâche inconnue : " + taskID));
+			}
+		}
+	}
+
+	/**
+	 * Fin du job d'après les résultats renvoyés, pour un JobExecutor qui ne les a pas tous reçus
+	 * un à un (clients distants) : signale chaque tâche pas encore signalée (taskCompleted),
+	 * complète les futurs restés sans valeur (voir TaskResult.withoutValue), puis la fin du job.
+	 */
+	protected void resultsReceived(Map<String, Object> results) {
+		for (Map.Entry<String, Object> e : results.entrySet()) {
+			CompletableFuture<Object> future = retainsTaskResults()
+					? taskFutures.computeIfAbsent(e.getKey(), id -> new CompletableFuture<>())
+					: taskFutures.get(e.getKey());
+			if (future != null) future.complete(e.getValue());
+			taskCompleted(new TaskResult(e.getKey(), e.getValue(), -1));
+		}
+		jobFinished(results);
+	}
+
+	/**
+	 * Tâches dont un client distant veut recevoir la valeur dès leur fin (voir
+	 * executeAsync(JobExecutorCallback, Set)) : toutes si resultPublisher() a été demandé,
+	 * sinon celles dont le futur est en attente.
+	 */
+	protected Set<String> streamedTasks() {
+		return hasResultPublisher() ? null : new HashSet<>(taskFutures.keySet());
+	}
+
+	/** Le job a échoué : les futurs des tâches non terminées sont complétés exceptionnellement. */
+	protected void jobFailed(Throwable cause) {
+		jobFailure = cause;
+		for (CompletableFuture<Object> future : taskFutures.values()) {
+			future.completeExceptionally(cause);
+		}
+		synchronized (publisherLock) {
+			jobDone = true;
+			if (publisher != null) closePublisher(cause);
+		}
+	}
+
+	/** Termine le flux des abonnés de resultPublisher() : onComplete, ou onError si failure != null. */
+	private void closePublisher(Throwable failure) {
+		if (failure == null) {
+			publisher.close();
+		} else {
+			publisher.closeExceptionally(failure);
+		}
+	}
+
+	/**
+	 * Attend le résultat d'un executeAsync(), et jette l'exception qu'aurait jetée execute().
+	 * Sert aux JobExecutor dont execute() repose sur executeAsync().
+	 */
+	protected static Map<String, Object> await(CompletableFuture<Map<String, Object>> future) throws Exception {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception) throw (Exception) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw e;
+		}
+	}
+
 }
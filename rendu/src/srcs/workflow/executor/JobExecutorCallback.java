@@ -0,0 +1,36 @@
+package srcs.workflow.executor;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.Map;
+
+/**
+ * Objet exporté via RMI par un client qui exécute un job de manière asynchrone
+ * (JobExecutor.executeAsync() des clients distants) : le serveur l'appelle à chaque fin
+ * de tâche, puis à la fin du job. Aucun thread, ni chez le client ni sur le serveur,
+ * n'attend la fin du job.
+ */
+public interface JobExecutorCallback extends Remote {
+	
+	/**
+	 * Une tâche est terminée.
+	 * @param result  identifiant, résultat (Serializable) et mesures de temps de la tâche. Sans sa
+	 *        valeur si le client ne l'attend pas ou si elle n'est pas transmissible (voir TaskResult.withoutValue).
+	 * @throws RemoteException
+	 */
+	public void taskFinished(TaskResult result) throws RemoteException;
+	
+	/**
+	 * Le job est terminé.
+	 * @param results  associations entre id d'une tâche et résultat de cette tâche
+	 * @throws RemoteException
+	 */
+	public void jobFinished(Map<String, Object> results) throws RemoteException;
+	
+	/**
+	 * Le job a échoué.
+	 * @param cause  l'exception qu'aurait jetée execute()
+	 * @throws RemoteException
+	 */
+	public void jobFailed(Exception cause) throws RemoteException;
+}
@@ -0,0 +1,228 @@
+package srcs.workflow.executor;
+
+import java.rmi.RemoteException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import srcs.workflow.graph.GraphCSR;
+import srcs.workflow.job.Job;
+import srcs.workflow.job.JobDispatcher;
+import srcs.workflow.job.JobStructure;
+import srcs.workflow.job.JobValidator;
+import srcs.workflow.job.ValidationException;
+
+/**
+ * Exécute un job en parallèle sur un ForkJoinPool, sans thread répartiteur ni lock commun.
+ *
+ * Contrairement à JobExecutorParallel, une tâche terminée ne repasse pas par execute() :
+ * le thread qui l'a exécutée décrémente lui-même (atomiquement) le nombre de dépendances
+ * restantes de chacun de ses successeurs. Parmi ceux qui deviennent prêts, il exécute le
+ * premier aussitôt (le résultat qu'il vient de produire est encore dans son cache), et
+ * empile les autres dans sa propre file (fork), où les threads inoccupés du pool viennent
+ * les voler.
+ *
+ * executeAsync() rend la main dès les premières tâches lancées : aucun thread n'attend la fin du job.
+ *
+ * Les tâches qui bloquent longtemps (sleep, entrées-sorties) occupent un thread du pool :
+ * pour ce type de tâches, préférer JobExecutorParallel (voir TaskExecutors).
+ */
+public class JobExecutorForkJoin extends JobExecutor {
+
+	protected final ForkJoinPool pool;
+
+	// Graphe des tâches, figé et réduit (voir JobStructure), immuable
+	protected GraphCSR<String> graph;
+
+	protected JobDispatcher dispatcher;
+
+	// pendingDependencies[id] : nombre de dépendances de la tâche id pas encore terminées
+	protected AtomicIntegerArray pendingDependencies;
+
+	// taskResults[id] : résultat de la tâche id. Écrit avant la décrémentation des compteurs
+	// des successeurs, donc visible par le thread qui les exécute.
+	protected Object[] taskResults;
+
+	// Objets du contexte utilisés par les tâches, lus une seule fois par exécution
+	protected Object[] contextValues;
+	
+	// Libération des résultats qui ne sont plus lus, null si tous les résultats sont renvoyés (voir setReturnedTasks)
+	protected ResultRetention retention;
+
+	// Nombre de TaskRun lancés et pas encore terminés : l'exécution est finie quand il tombe à 0
+	protected AtomicInteger activeRuns;
+
+	// Première exception jetée par une tâche : plus aucune tâche n'est alors lancée
+	protected AtomicReference<Exception> failure;
+
+	// Complétée lorsque plus aucun TaskRun n'est actif
+	protected CompletableFuture<Void> done;
+
+	/**
+	 * Exécution sur le pool commun (ForkJoinPool.commonPool()).
+	 * @param job
+	 */
+	public JobExecutorForkJoin(Job job) {
+		this(job, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Exécution sur un pool donné, qui n'est pas arrêté à la fin.
+	 * @param job
+	 * @param pool
+	 */
+	public JobExecutorForkJoin(Job job, ForkJoinPool pool) {
+		super(job);
+		this.pool = pool;
+	}
+
+	@Override
+	public Map<String, Object> execute() throws Exception {
+		return await(executeAsync());
+	}
+
+	/** Lance les tâches sans dépendance et rend la main : aucun thread n'attend la fin du job. */
+	@Override
+	public CompletableFuture<Map<String, Object>> executeAsync() {
+		startExecution();
+		CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+		JobValidator validator;
+		try {
+			validator = new JobValidator(job);
+		} catch (ValidationException e) {
+			jobFailed(e);
+			future.completeExceptionally(e);
+			return future;
+		}
+		JobStructure structure = validator.getStructure();
+		try {
+			retention = newResultRetention(structure);
+		} catch (IllegalArgumentException e) {
+			jobFailed(e);
+			future.completeExceptionally(e);
+			return future;
+		}
+		graph = validator.getReducedTaskGraph();
+		dispatcher = structure.getDispatcher();
+		int n = graph.size();
+		pendingDependencies = new AtomicIntegerArray(n);
+		taskResults = new Object[n];
+		contextValues = structure.contextValues(job);
+		activeRuns = new AtomicInteger();
+		failure = new AtomicReference<>();
+		done = new CompletableFuture<>();
+
+		// Quand le dernier TaskRun se termine : résultats, ou première exception jetée par une tâche
+		done.thenRun( () -> {
+			Exception e = failure.get();
+			if (e != null) {
+				jobFailed(e);
+				future.completeExceptionally(e);
+				return;
+			}
+			Map<String, Object> results = new HashMap<>(n * 2);
+			for (int task = 0; task < n; task++) {
+				if ( (retention == null) || retention.isReturned(task) ) results.put(graph.value(task), taskResults[task]);
+			}
+			jobFinished(results);
+			future.complete(results);
+		});
+
+		// Les tâches sans dépendance sont lancées d'ici, les autres par le thread qui termine leur dernière dépendance.
+		// activeRuns compte une unité de plus pendant le lancement, pour que done ne soit pas complétée trop tôt.
+		activeRuns.incrementAndGet();
+		for (int task = 0; task < n; task++) {
+			pendingDependencies.set(task, graph.inDegree(task));
+		}
+		for (int task = 0; task < n; task++) {
+			if (graph.inDegree(task) == 0) {
+				activeRuns.incrementAndGet();
+				pool.execute(new TaskRun(task));
+			}
+		}
+		runFinished();
+		return future;
+	}
+
+	/** Un TaskRun est terminé : le dernier complète done. */
+	private void runFinished() {
+		if (activeRuns.decrementAndGet() == 0) {
+			done.complete(null);
+		}
+	}
+
+	/**
+	 * Exécution d'une tâche, puis de l'un de ses successeurs devenus prêts, et ainsi de suite ;
+	 * les autres successeurs prêts sont empilés (fork) dans la file du thread courant.
+	 */
+	protected class TaskRun extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int first;
+
+		TaskRun(int task) {
+			first = task;
+		}
+
+		@Override
+		protected void compute() {
+			try {
+				int task = first;
+				while ( (task != -1) && (failure.get() == null) ) {
+					Object res;
+					long start = System.nanoTime();
+					try {
+						// Appel direct de la méthode (voir JobDispatcher)
+						res = dispatcher.dispatch(task, job, taskResults, contextValues);
+					} catch (Exception e) {
+						failure.compareAndSet(null, e);
+						return;
+					}
+					taskResults[task] = res;
+					taskCompleted(new TaskResult(graph.value(task), res, System.nanoTime() - start));
+					// Les résultats lus par la tâche ont pu être lus par tous leurs lecteurs
+					if (retention != null) retention.taskExecuted(task, taskResults);
+
+					// (exo 5) S'il faut notifier via une méthode, j'appelle la méthode.
+					// Les notifications restent séquentielles, comme avec JobExecutorParallel.
+					if (notificationMethod != null) {
+						synchronized (notificationMethod) {
+							try {
+								notificationMethod.taskFinished(graph.value(task));
+							} catch (RemoteException e) { }
+						}
+					}
+
+					// Le premier successeur prêt est exécuté ici, les autres sont empilés
+					int next = -1;
+					for (int k = 0, d = graph.outDegree(task); k < d; k++) {
+						int successor = graph.outNeighbor(task, k);
+						if (pendingDependencies.decrementAndGet(successor) == 0) {
+							if (next == -1) {
+								next = successor;
+							} else {
+								activeRuns.incrementAndGet();
+								// compute() s'exécute toujours dans un thread du pool : fork() empile dans sa file
+								new TaskRun(successor).fork();
+							}
+						}
+					}
+					task = next;
+				}
+			} catch (Throwable t) {
+				// Échec après la tâche (listener, abonné...) : le job ne doit pas réussir avec
+				// les résultats manquants des successeurs qui ne seront jamais lancés
+				failure.compareAndSet(null, (t instanceof Exception) ? (Exception) t : new ExecutionException(t));
+			} finally {
+				runFinished();
+			}
+		}
+	}
+
+}
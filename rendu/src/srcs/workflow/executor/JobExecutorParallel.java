@@ -1,6 +1,6 @@
 package srcs.workflow.executor;
 
-import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
 
 import srcs.workflow.job.Job;
 
@@ -14,11 +14,21 @@ public class JobExecutorParallel extends JobExecutorParallelAbstract {
 		super(job);
 	}
 	
-	// Ici, l'exécution des tâches est sur la machine locale
-	// (dans un thread séparé géré par JobExecutorParallelAbstract.execute())
+	/**
+	 * Exécution sur un ExecutorService donné (voir TaskExecutors), qui n'est pas arrêté à la fin.
+	 * @param job
+	 * @param executorService  null pour le défaut (un nouveau thread par tâche)
+	 */
+	public JobExecutorParallel(Job job, ExecutorService executorService) {
+		super(job);
+		setExecutorService(executorService);
+	}
+	
+	// Appel direct de la tâche (voir JobDispatcher), les arguments étant lus dans les résultats
+	// des tâches et le contexte : ni réflexion, ni tableau d'arguments.
 	@Override
-	public Object executeMethod(Method method, Object[] args) throws Exception {
-		return method.invoke(job, args);
+	protected Object executeTask(int task) throws Exception {
+		return validator.getStructure().getDispatcher().dispatch(task, job, taskResults, contextValues);
 	}
 	
 }
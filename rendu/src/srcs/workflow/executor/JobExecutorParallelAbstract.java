@@ -1,25 +1,24 @@
 package srcs.workflow.executor;
 
-import java.lang.annotation.Annotation;
-import java.lang.reflect.Method;
-import java.lang.reflect.Parameter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.rmi.RemoteException;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
-import srcs.workflow.graph.Graph;
-import srcs.workflow.job.Context;
+import srcs.workflow.graph.GraphCSR;
 import srcs.workflow.job.Job;
 import srcs.workflow.job.JobValidator;
-import srcs.workflow.job.LinkFrom;
 import srcs.workflow.job.ValidationException;
 
 /**
  * Exécute un job d'une manière parallèle.
- * La seule méthode à redéfinir est executeMethod,
+ * La méthode à redéfinir est executeTask (ou executeMethod, qu'elle appelle par défaut),
  * elle est responsable de l'exécution d'une tâche du job,
  * toutes les dépendances ont été vérifiées et les arguments sont
  * prêts.
@@ -28,45 +27,170 @@ import srcs.workflow.job.ValidationException;
  * qui s'occupe de l'exécution multi-threadée en local,
  * et aussi de JobExecutorParallelDistributed (exo 6)
  * qui s'occupe de l'exécution sur plusieurs machines distantes.
+ * 
+ * Les tâches prêtes sont exécutées sur un ExecutorService (voir TaskExecutors et
+ * setExecutorService) : par défaut un nouveau thread par tâche. Le nombre de tâches
+ * exécutées en même temps par ce JobExecutor peut être borné (setMaxParallelTasks),
+ * même si l'ExecutorService est partagé.
+ * 
+ * Par défaut, les tâches prêtes sont lancées dans l'ordre où elles le deviennent. Avec
+ * setPriorityScheduling, la tâche prête lancée en premier est celle qui a le plus long chemin
+ * (en durées observées) jusqu'à la fin du job : le chemin critique n'attend pas derrière des
+ * tâches courtes quand les places sont comptées (maxParallelTasks, trackers occupés).
+ * 
+ * Il n'y a pas de thread répartiteur : chaque tâche qui se termine lance celles qu'elle a
+ * rendues prêtes. executeAsync() n'occupe donc aucun thread en attendant la fin du job,
+ * et execute() se contente d'attendre le futur renvoyé par executeAsync().
  */
 public abstract class JobExecutorParallelAbstract extends JobExecutor {
 	
 	/**
-	 * Exécution (synchrone) d'une tâche sur un tracker libre. Cette méthode est appelée dans un thread
-	 * géré dans la méthode execute().
+	 * Exécution (synchrone) d'une tâche dont les arguments sont prêts. Cette méthode est appelée
+	 * par executeTask, dans un thread géré dans la méthode execute().
 	 * 
-	 * <p>Méthode exécutée lorsqu'une tâche est prête.
-	 * Pour l'exo4, c'est simplement method.invoke.
-	 * Pour l'exo6, trouve un tracker libre et execute la méthode dessus (via RMI).
-	 * @param method
+	 * <p>Par défaut, c'est l'équivalent de method.invoke, via un MethodHandle résolu une seule fois
+	 * par tâche (voir JobStructure.getInvoker). JobExecutorParallel et JobExecutorParallelDistributed
+	 * redéfinissent directement executeTask.
+	 * @param task  identifiant de la tâche (dans validator.getStructure().getTaskGraph())
 	 * @param args
 	 * @return
 	 * @throws Exception
 	 */
-	abstract protected Object executeMethod(Method method, Object[] args) throws Exception;
+	protected Object executeMethod(int task, Object[] args) throws Exception {
+		return validator.getStructure().getInvoker(task).invoke(job, args);
+	}
+	
+	/** ExecutorService par défaut : un nouveau thread par tâche (rien à arrêter, il peut être partagé) */
+	private static final ExecutorService THREAD_PER_TASK = TaskExecutors.threadPerTask();
 	
 	public JobExecutorParallelAbstract(Job job) {
 		super(job);
 	}
 	
+	// ExecutorService sur lequel sont exécutées les tâches (jamais arrêté par ce JobExecutor)
+	protected ExecutorService executorService = THREAD_PER_TASK;
+	
+	// Nombre maximal de tâches de ce job exécutées en même temps
+	protected int maxParallelTasks = Integer.MAX_VALUE;
+	
+	/**
+	 * Choisit l'ExecutorService sur lequel les tâches sont exécutées (voir TaskExecutors).
+	 * Il n'est pas arrêté à la fin de l'exécution : il peut servir à plusieurs JobExecutor.
+	 * @param executorService  null pour revenir au défaut (un nouveau thread par tâche)
+	 */
+	public void setExecutorService(ExecutorService executorService) {
+		this.executorService = (executorService == null) ? THREAD_PER_TASK : executorService;
+	}
+	
+	/**
+	 * Borne le nombre de tâches de ce job exécutées en même temps (par défaut : pas de borne).
+	 * @param maxParallelTasks
+	 * @throws IllegalArgumentException  si maxParallelTasks < 1
+	 */
+	public void setMaxParallelTasks(int maxParallelTasks) throws IllegalArgumentException {
+		if (maxParallelTasks < 1) {
+			throw new IllegalArgumentException("Il faut pouvoir exécuter au moins une tâche (" + maxParallelTasks + ").");
+		}
+		this.maxParallelTasks = maxParallelTasks;
+	}
+	
+	// Durées observées des tâches, pour l'ordonnancement par priorité (null : premier prêt, premier lancé)
+	protected TaskDurationHistory durationHistory;
+	
+	/**
+	 * Lance en premier les tâches prêtes du chemin critique : celles qui ont le plus long chemin
+	 * restant jusqu'à la fin du job, d'après les durées observées lors des exécutions précédentes
+	 * (voir TaskDurationHistory.upwardRanks). La durée de chaque tâche exécutée y est enregistrée.
+	 * 
+	 * N'a d'effet que si les tâches prêtes ne peuvent pas toutes être lancées aussitôt : avec un
+	 * ExecutorService borné, borner aussi maxParallelTasks (au nombre de ses threads), sinon ce
+	 * sont les tâches en attente dans sa file qui sont exécutées dans l'ordre de soumission.
+	 * @param history  durées observées, partageables entre JobExecutor ; null pour revenir à
+	 *        l'ordre par défaut (premier prêt, premier lancé)
+	 */
+	public void setPriorityScheduling(TaskDurationHistory history) {
+		this.durationHistory = history;
+	}
+	
+	// Stockage des résultats de chaque exécution, null pour les garder en mémoire (voir setResultStore)
+	protected ResultStore.Factory resultStoreFactory;
+	
+	/**
+	 * Stockage des résultats des tâches, pour les jobs dont les résultats ne tiennent pas tous en
+	 * mémoire (voir SpillingResultStore.factory). Le store d'une exécution gère taskResults : avant
+	 * d'exécuter une tâche, ses dépendances y sont épinglées (relues si besoin), et les résultats
+	 * renvoyés par execute() n'en sont relus qu'à la fin du job.
+	 * Les futurs des tâches (taskFuture) ne gardent alors que les résultats demandés avant la fin
+	 * de leur tâche.
+	 * @param factory  null pour garder tous les résultats en mémoire (par défaut)
+	 */
+	public void setResultStore(ResultStore.Factory factory) {
+		this.resultStoreFactory = factory;
+	}
+	
+	@Override
+	protected boolean retainsTaskResults() {
+		return super.retainsTaskResults() && (resultStoreFactory == null);
+	}
+	
 	// Résultats retournés par la fonction execute()
 	protected Map<String, Object> results;
 	
 	// JobValidator créé à partir du job fourni
 	protected JobValidator validator;
 	
-	// Graph construit par le JobValidator
-	protected Graph<String> graph;
+	// Graphe construit par le JobValidator, figé au format CSR : les tâches y sont
+	// identifiées par un entier, l'ordonnancement se fait sans allocation ni boxing.
+	// C'est sa réduction transitive : une dépendance déjà impliquée par une autre n'est pas
+	// revérifiée (les arguments, eux, sont toujours liés via les @LinkFrom).
+	// Immuable, donc lisible sans prendre le lock.
+	protected GraphCSR<String> graph;
+	
+	// pendingDependencies[id] : nombre de dépendances de la tâche id (dans graph) pas encore terminées.
+	// La tâche devient prête quand il tombe à 0 : elle est alors ajoutée à readyTasks.
+	protected int[] pendingDependencies;
+	
+	// File des tâches prêtes : chaque tâche y entre une seule fois, un tableau de graph.size() cases suffit.
+	// Les tâches readyTasks[readyHead .. readyTail-1] sont prêtes mais pas encore lancées.
+	// Avec priorities, c'est un tas (readyHead reste à 0) : la tâche de plus haute priorité est en tête.
+	protected int[] readyTasks;
+	protected int readyHead, readyTail;
 	
-	// Liste de tâches en attente d'être exécutées (initialement : toutes)
-	protected List<String> awaitingTasksID;
+	// priorities[id] : rang ascendant de la tâche id (voir setPriorityScheduling), null sans priorité
+	protected double[] priorities;
 	
-	/* Lock pour protéger les variables results et awaitingTasksID des accès concurrents */
+	// Nombre de tâches pas encore lancées (prêtes ou non)
+	protected int awaitingCount;
+	
+	// Nombre de tâches lancées et pas encore terminées
+	protected int runningCount;
+	
+	// taskResults[id] : résultat de la tâche id (mêmes identifiants que graph), lu via les plans de liaison
+	protected Object[] taskResults;
+	
+	// startNanos[id] : début de l'exécution de la tâche id (System.nanoTime()), pour mesurer sa durée
+	protected long[] startNanos;
+	
+	// Objets du contexte utilisés par les tâches, lus une seule fois par exécution
+	protected Object[] contextValues;
+	
+	// Libération des résultats qui ne sont plus lus, null si tous les résultats sont renvoyés (voir setReturnedTasks)
+	protected ResultRetention retention;
+	
+	// Stockage des résultats de cette exécution, qui gère taskResults, null s'ils restent tous en mémoire
+	protected ResultStore store;
+	
+	/* Lock pour protéger les variables results, pendingDependencies, readyTasks, awaitingCount, runningCount
+	 * et completed des accès concurrents */
 	protected final Object lock = new Object();
 
 	// Exceptions éventuellement jetées lors de l'exécution dans un thread
 	protected ArrayList<Exception> exceptions = new ArrayList<>();
 	
+	// Futur résultat de l'exécution en cours (voir executeAsync), et vrai une fois qu'il est complété
+	protected CompletableFuture<Map<String, Object>> jobFuture;
+	protected boolean completed;
+	
 	/**
 	 * Initialisation de l'exécution
 	 * @throws ValidationException
@@ -79,183 +203,349 @@ public abstract class JobExecutorParallelAbstract extends JobExecutor {
 		// Création du JobValidator, pour avoir le graphe de tâches et l'association ID tâche <-> méthode
 		validator = new JobValidator(job);
 		
-		// Graphe des tâches
-		graph = validator.getTaskGraph();
+		// Graphe des tâches, figé et réduit (calculé une seule fois par classe de job)
+		graph = validator.getReducedTaskGraph();
 		
-		// Liste des tâches en attente d'exécution
-		awaitingTasksID = new LinkedList<>();
+		// Résultats libérés dès qu'ils ne sont plus lus, si tous ne sont pas renvoyés
+		retention = newResultRetention(validator.getStructure());
 		
-		// Ajout des tâches qui attendent d'être exécutées
-		for (String taskID : graph) {
-			awaitingTasksID.add(taskID);
+		// Toutes les tâches attendent d'être exécutées, celles sans dépendance sont prêtes
+		awaitingCount = graph.size();
+		TaskDurationHistory history = durationHistory;
+		priorities = (history == null) ? null
+				: history.upwardRanks(job.getClass(), graph, validator.getStructure().getTopologicalOrder());
+		pendingDependencies = new int[awaitingCount];
+		readyTasks = new int[awaitingCount];
+		readyHead = readyTail = 0;
+		runningCount = 0;
+		completed = false;
+		// Exceptions d'une exécution précédente (le même JobExecutor peut relancer son job)
+		exceptions.clear();
+		for (int task = 0; task < awaitingCount; task++) {
+			pendingDependencies[task] = graph.inDegree(task);
+			if (pendingDependencies[task] == 0) pushReady(task);
+		}
+		taskResults = new Object[awaitingCount];
+		startNanos = new long[awaitingCount];
+		contextValues = validator.getStructure().contextValues(job);
+		try {
+			store = (resultStoreFactory == null) ? null : resultStoreFactory.create(taskResults);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
 		}
 	}
 	
 	/**
 	 * Récupérer un ID de tâche exécutable, c'est à dire une tâche dont toutes les
-	 * dépendances sont satisfaites. Retourne null s'il n'y a plus aucune tâche
-	 * à exécuter, ou s'il y a eu une exception dans un des threads. </br>
-	 * S'il reste des tâches à exécuter mais qu'aucune n'est actuellement exécutable,
-	 * bloque et attend qu'une tache soit exécutable.
-	 * @return  l'ID d'une tâche exécutable, ou null s'il n'y a plus de tâche à exécuter
-	 *          ou qu'une exception a été jetée dans un des threads.
-	 * @throws InterruptedException
+	 * dépendances sont satisfaites, et la compter comme lancée. Ne bloque jamais : les tâches
+	 * prêtes sont tenues à jour par taskFinished, et launchReadyTasks() est rappelée à chaque
+	 * fin de tâche. Il n'y a pas de tâche à lancer s'il y a eu une exception dans un des threads,
+	 * ou si maxParallelTasks tâches sont déjà en cours d'exécution.
+	 * Doit être appelé en possession du lock.
+	 * @return  l'identifiant (dans graph) d'une tâche exécutable, ou -1 s'il n'y en a pas.
 	 */
-	protected String getReadyTaskID() throws InterruptedException {
-		
-		synchronized(lock) {
-			
-			// J'essaie de trouver une tâche prête, je m'endors s'il en reste au moins
-			// une en attente mais non exécutable.
-			while ( ! awaitingTasksID.isEmpty()) {
-				
-				// Exception levée dans un des threads, système devenu instable
-				// arrêt et renvoi d'une exception via execute().
-				if ( ! exceptions.isEmpty()) return null;
-				
-				// Pour toutes les tâches restantes...
-				for (String taskID : awaitingTasksID) {
-					
-					// ...je regarde si toutes les tâches qui pointent vers cette tâche sont terminées
-					boolean ready = true;
-					List<String> neededTasks = graph.getNeighborsIn(taskID);
-					for (String ntask : neededTasks) {
-						if ( ! results.containsKey(ntask)) {
-							// La tâche n'est pas terminée, le résultat n'est pas encore disponible
-							ready = false;
-							break;
-						}
-					}
-					
-					// Si la tâche est exécutable, je la renvoie.
-					if (ready) {
-						// La tâche n'est plus en attente
-						// Suppression de la méthode de la liste des méthodes restant à exécuter
-						awaitingTasksID.remove(taskID);
-						return taskID;
-					}
-				}
-				
-				// Il reste au moins une tâche à exécuter, j'attends que la situation se débloque
-				lock.wait();
+	protected int nextReadyTask() {
+		if ( ! exceptions.isEmpty()) return -1;
+		if ( (readyHead == readyTail) || (runningCount >= maxParallelTasks) ) return -1;
+		awaitingCount--;
+		runningCount++;
+		return popReady();
+	}
+	
+	/**
+	 * Ajoute une tâche aux tâches prêtes : en fin de file, ou à sa place dans le tas s'il y a des
+	 * priorités (coût : log du nombre de tâches prêtes).
+	 * Doit être appelé en possession du lock.
+	 */
+	protected void pushReady(int task) {
+		if (priorities == null) {
+			readyTasks[readyTail++] = task;
+			return;
+		}
+		// Remontée dans le tas
+		int i = readyTail++;
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (priorities[readyTasks[parent]] >= priorities[task]) break;
+			readyTasks[i] = readyTasks[parent];
+			i = parent;
+		}
+		readyTasks[i] = task;
+	}
+	
+	/**
+	 * Retire la prochaine tâche prête : la première de la file, ou celle de plus haute priorité.
+	 * Il doit y en avoir une. Doit être appelé en possession du lock.
+	 */
+	protected int popReady() {
+		if (priorities == null) return readyTasks[readyHead++];
+		int top = readyTasks[0];
+		int last = readyTasks[--readyTail];
+		// Descente de la dernière tâche depuis la racine
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= readyTail) break;
+			if ( (child + 1 < readyTail) && (priorities[readyTasks[child + 1]] > priorities[readyTasks[child]]) ) child++;
+			if (priorities[last] >= priorities[readyTasks[child]]) break;
+			readyTasks[i] = readyTasks[child];
+			i = child;
+		}
+		readyTasks[i] = last;
+		return top;
+	}
+	
+	/**
+	 * Enregistre la durée d'exécution d'une tâche dans durationHistory (s'il y en a un).
+	 * Appelé sans le lock, dans le thread qui a terminé la tâche.
+	 * @param task  identifiant de la tâche dans graph
+	 * @param durationNanos  durée mesurée du début de l'exécution (voir startTask) à sa fin
+	 */
+	protected void recordDuration(int task, long durationNanos) {
+		TaskDurationHistory history = durationHistory;
+		if (history != null) history.record(job.getClass(), graph.value(task), durationNanos);
+	}
+	
+	/**
+	 * La tâche est terminée : chacun de ses successeurs a une dépendance de moins,
+	 * ceux qui n'en ont plus deviennent prêts. Coût : le degré sortant de la tâche.
+	 * Doit être appelé en possession du lock.
+	 * @param task  identifiant de la tâche dans graph
+	 */
+	protected void taskFinished(int task) {
+		for (int k = 0, n = graph.outDegree(task); k < n; k++) {
+			int next = graph.outNeighbor(task, k);
+			if (--pendingDependencies[next] == 0) {
+				pushReady(next);
 			}
 		}
-		
-		// null signifie qu'il n'y a plus de tâche en attente d'exécution.
-		return null;
 	}
 	
 	/**
-	 * Renvoie les arguments de la méthode associée à une tâche.
-	 * La tâche associée à la méthode passée en paramètre doit exister.
-	 * Cette fonction va chercher les arguments dans les objets
-	 * du contexte et dans les dépendances aux autres tâches.
-	 * @param method  méthode associée
+	 * Renvoie les arguments de la méthode associée à une tâche, d'après son plan de liaison
+	 * (voir JobStructure) : ni réflexion, ni recherche par nom.
+	 * Les résultats des dépendances peuvent être lus sans le lock : ils ont été écrits
+	 * (sous le lock) avant que la tâche ne soit déclarée prête, donc avant qu'elle ne soit
+	 * retirée des tâches prêtes (sous le lock) puis lancée par startTask.
+	 * @param task  identifiant de la tâche dans graph
 	 * @return
 	 */
-	protected Object[] prepareTaskArgs(Method method) {
-		// Liste des arguments de la méthode
-		List<Object> args = new ArrayList<>();
-		
-		// J'ajoute les arguments : pour chaque paramètre, j'en regarde l'annotation
-		for (Parameter param : method.getParameters()) {
-			Annotation[] pannots = param.getAnnotations();
-			for (Annotation a : pannots) {
-				
-				// Dépendance à une tâche
-				if (a.annotationType().equals(LinkFrom.class)) {
-					String ref = ((LinkFrom) a).value();
-					// Récupération (thread-safe) de la valeur de retour d'une autre tâche
-					Object taskObj;
-					synchronized(lock) {
-						taskObj = results.get(ref);
-					}
-					args.add(taskObj);
-				}
-				
-				// Dépendance à un objet du contexte
-				if (a.annotationType().equals(Context.class)) {
-					String ref = ((Context) a).value();
-					Object contextObj = job.getContext().get(ref);
-					args.add(contextObj);
-				}
+	protected Object[] prepareTaskArgs(int task) {
+		return validator.getStructure().bindArguments(task, taskResults, contextValues);
+	}
+	
+	/**
+	 * Exécute la tâche d'identifiant task (dans graph), dont les dépendances sont terminées.
+	 * Par défaut, prépare ses arguments et appelle executeMethod. JobExecutorParallel le
+	 * redéfinit pour appeler la tâche directement (JobDispatcher), sans tableau d'arguments.
+	 * @param task
+	 * @return le résultat de la tâche
+	 * @throws Exception
+	 */
+	protected Object executeTask(int task) throws Exception {
+		// validator est thread-safe car immuable (i.e. lecture seule).
+		return executeMethod(task, prepareTaskArgs(task));
+	}
+	
+	/**
+	 * Comme executeTask, avec un store : les résultats lus par la tâche sont épinglés dans
+	 * taskResults (relus depuis le disque si besoin) le temps de son exécution.
+	 * @param task
+	 * @return le résultat de la tâche
+	 * @throws Exception
+	 */
+	protected Object executeTaskFromStore(int task) throws Exception {
+		// Graphe complet : une arête par résultat lu (@LinkFrom), y compris ceux absents du graphe réduit
+		GraphCSR<String> links = validator.getStructure().getTaskGraph();
+		int pinned = 0;
+		try {
+			for (int d = links.inDegree(task); pinned < d; pinned++) {
+				store.pin(links.inNeighbor(task, pinned));
+			}
+			return executeTask(task);
+		} finally {
+			for (int k = 0; k < pinned; k++) {
+				store.unpin(links.inNeighbor(task, k));
 			}
 		}
-		return args.toArray();
 	}
 	
 	// Voir le compte rendu pour de plus amples explications (exercice 4)
 	@Override
 	public Map<String, Object> execute() throws Exception {
+		return await(executeAsync());
+	}
+	
+	/**
+	 * Lance les tâches sans dépendance et rend la main : il n'y a pas de thread répartiteur.
+	 * Chaque tâche, en se terminant, lance elle-même celles qu'elle a rendues prêtes
+	 * (launchReadyTasks), et la dernière complète le futur du job.
+	 */
+	@Override
+	public CompletableFuture<Map<String, Object>> executeAsync() {
+		startExecution();
+		jobFuture = new CompletableFuture<>();
 		
 		// Initialisation de l'exécution
-		initExecute();
-		
-		String taskID;
-		
-		// Threads qui vont s'occuper de l'exécution des tâches :
-		// Pour l'exo 4, c'est eux qui vont exécuter les tâches,
-		// pour l'exo 6 c'est un tracker qui va exécuter la tâche (en
-		// synchrone, d'où la nécessité d'avoir un thread aussi)
-		List<Thread> threads = new ArrayList<>();
-		
-		// Tant qu'il y a une tâche à exécuter, je l'exécute dans un thread séparé
-		while ((taskID = getReadyTaskID()) != null) {
-			// Une tâche prête le reste à jamais, taskID ne peut pas ne plus être prête ici.
-			
-			// tID sert à passer au thread l'ID de la tâche à exécuter
-			final String tID = taskID;
-			
-			Thread th = new Thread( () -> {
-				
-				// validator est thread-safe car immuable (i.e. lecture seule).
-				Method method = validator.getMethod(tID);
-				
-				Object args[] = prepareTaskArgs(method);
-				
-				Object res;
-				try {
-					// Appel de la méthode
-					res = executeMethod(method, args);
-					//res = method.invoke(job, args); exo 4
-				} catch (Exception e) {
-					synchronized (lock) {
-						exceptions.add(e);
-					}
-					return;
+		try {
+			initExecute();
+		} catch (ValidationException | RuntimeException e) {
+			jobFailed(e);
+			jobFuture.completeExceptionally(e);
+			return jobFuture;
+		}
+		launchReadyTasks();
+		return jobFuture;
+	}
+	
+	/**
+	 * Lance toutes les tâches prêtes (dans la limite de maxParallelTasks), puis complète le
+	 * futur du job s'il n'y a plus rien à attendre. Appelée au lancement puis à chaque fin de tâche.
+	 */
+	protected void launchReadyTasks() {
+		while (true) {
+			int task;
+			boolean jobDone = false;
+			synchronized (lock) {
+				task = nextReadyTask();
+				if (task == -1) {
+					// Plus rien en cours : toutes les tâches sont terminées, ou une exception a arrêté le job
+					jobDone = (runningCount == 0) && ( (awaitingCount == 0) || ! exceptions.isEmpty() ) && ! completed;
+					if (jobDone) completed = true;
 				}
-				synchronized(lock) {
-					// Ajout du résultat, la tâche avait déjà été enlevée de la liste
-					// des tâches en attente.
-					results.put(tID, res);
-					// (exo 5) S'il faut notifier via une méthode, j'appelle la méthode.
-					if (notificationMethod != null) {
-						try {
-							notificationMethod.taskFinished(tID);
-						} catch (RemoteException e) { }
-					}
-					lock.notifyAll(); // (notify() aurait suffit)
+			}
+			if (task == -1) {
+				// Futur complété hors du lock : il peut déclencher du code de l'appelant
+				if (jobDone) completeJob();
+				return;
+			}
+			submitTask(task);
+		}
+	}
+	
+	/** Complète le futur du job, une fois toutes les tâches lancées terminées. */
+	private void completeJob() {
+		Exception failure;
+		synchronized (lock) {
+			failure = exceptions.isEmpty() ? null : exceptions.get(0);
+		}
+		if ( (store != null) && (failure == null) ) {
+			// Résultats renvoyés relus depuis le store, une fois toutes les tâches terminées
+			try {
+				for (int task = 0; task < graph.size(); task++) {
+					if ( (retention == null) || retention.isReturned(task) ) results.put(graph.value(task), store.get(task));
 				}
-			});
-			
-			// Démarrage de l'exécution de la tâche
-			th.start();
-			
-			// Ajout du thread à attendre
-			threads.add(th);
+			} catch (IOException e) {
+				failure = e;
+			}
 		}
-		
-		// Attente de la fin de l'exécution de toutes les tâches
-		for (Thread th : threads) {
-			th.join();
+		if (store != null) store.close();
+		if (failure != null) {
+			jobFailed(failure);
+			jobFuture.completeExceptionally(failure);
+		} else {
+			jobFinished(results);
+			jobFuture.complete(results);
 		}
-		
-		// S'il y a eu une exception dans un thread, je la renvoie ici.
-		if (! exceptions.isEmpty()) {
-			throw exceptions.get(0);
+	}
+	
+	/**
+	 * Lance l'exécution de la tâche d'identifiant task (dans graph), dont les dépendances sont
+	 * terminées, et renvoie son futur résultat.
+	 * Par défaut (exo 4), la tâche est exécutée dans un thread de executorService (executeTask, ou
+	 * executeTaskFromStore avec un store). JobExecutorParallelDistributed le redéfinit (exo 6) :
+	 * la tâche attend un slot libre dans la file du Master, sans occuper de thread.
+	 * Le futur peut être complété dans n'importe quel thread : la suite (résultat, lancement des
+	 * tâches devenues prêtes) s'exécute dans ce thread.
+	 * @param task
+	 * @return le futur résultat de la tâche
+	 * @throws RejectedExecutionException  si la tâche ne peut pas être lancée (ExecutorService arrêté...)
+	 */
+	protected CompletableFuture<Object> startTask(int task) throws RejectedExecutionException {
+		CompletableFuture<Object> execution = new CompletableFuture<>();
+		executorService.execute( () -> {
+			startNanos[task] = System.nanoTime();
+			try {
+				// Appel de la méthode
+				execution.complete( (store == null) ? executeTask(task) : executeTaskFromStore(task) );
+				//res = method.invoke(job, args); exo 4
+			} catch (Throwable t) {
+				execution.completeExceptionally(t);
+			}
+		});
+		return execution;
+	}
+	
+	/** Lance une tâche (voir startTask), et traite sa fin dans le thread qui la termine. */
+	private void submitTask(int task) {
+		CompletableFuture<Object> execution;
+		try {
+			execution = startTask(task);
+		} catch (RuntimeException e) {
+			// ExecutorService arrêté (ou saturé) : la tâche ne sera pas exécutée
+			synchronized (lock) {
+				exceptions.add(e);
+				runningCount--;
+			}
+			return;
+		}
+		execution.whenComplete( (res, failure) -> taskDone(task, res, failure) );
+	}
+	
+	/**
+	 * Fin d'une tâche : enregistrement de son résultat, publication, puis lancement des tâches
+	 * devenues prêtes (il n'y a pas de thread répartiteur).
+	 * @param res  résultat de la tâche, si failure est null
+	 * @param failure  exception jetée par la tâche, ou null
+	 */
+	private void taskDone(int task, Object res, Throwable failure) {
+		final String tID = graph.value(task);
+		long duration = System.nanoTime() - startNanos[task];
+		try {
+			if (failure != null) throw failure;
+			if (store != null) {
+				// Écriture éventuelle sur disque, hors du lock. Un résultat que rien ne lit plus
+				// n'est pas écrit : il serait supprimé aussitôt.
+				if ( (retention == null) || ! retention.isUnused(task) ) store.put(task, res);
+				// Les résultats lus par la tâche ne sont plus utiles s'ils ont été lus par tous leurs
+				// lecteurs : fichiers supprimés hors du lock (remainingConsumers est atomique)
+				if (retention != null) retention.taskExecuted(task, store::release);
+			}
+			
+			synchronized(lock) {
+				// Ajout du résultat, la tâche avait déjà été enlevée des tâches en attente.
+				// Avec un store, le résultat y est déjà, et ceux à renvoyer en seront relus à la fin.
+				if (store == null) {
+					if ( (retention == null) || retention.isReturned(task) ) results.put(tID, res);
+					taskResults[task] = res;
+				}
+				// Les résultats lus par la tâche ne sont plus utiles s'ils ont été lus par tous leurs lecteurs
+				if ( (retention != null) && (store == null) ) retention.taskExecuted(task, taskResults);
+				taskFinished(task);
+				// (exo 5) S'il faut notifier via une méthode, j'appelle la méthode.
+				if (notificationMethod != null) {
+					try {
+						notificationMethod.taskFinished(tID);
+					} catch (RemoteException e) { }
+				}
+			}
+			recordDuration(task, duration);
+			taskCompleted(new TaskResult(tID, res, duration));
+		} catch (Throwable t) {
+			// Échec de la tâche, ou du traitement de son résultat (store, listener...) :
+			// plus aucune tâche ne sera lancée, le job se termine avec la dernière tâche en cours
+			synchronized (lock) {
+				exceptions.add( (t instanceof Exception) ? (Exception) t : new ExecutionException(t) );
+			}
+		} finally {
+			// La tâche n'est comptée comme terminée qu'une fois son résultat publié (ou son
+			// échec enregistré) : le job ne peut pas se terminer avant, ni attendre indéfiniment
+			synchronized (lock) {
+				runningCount--;
+			}
+			// Lancement des tâches devenues prêtes
+			launchReadyTasks();
 		}
-		
-		return results;
 	}
 	
 }
@@ -1,19 +1,14 @@
 package srcs.workflow.executor;
 
-import java.lang.annotation.Annotation;
-import java.lang.reflect.Method;
-import java.lang.reflect.Parameter;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
 
-import srcs.workflow.graph.Graph;
-import srcs.workflow.job.Context;
+import srcs.workflow.graph.GraphCSR;
 import srcs.workflow.job.Job;
+import srcs.workflow.job.JobDispatcher;
+import srcs.workflow.job.JobStructure;
 import srcs.workflow.job.JobValidator;
-import srcs.workflow.job.LinkFrom;
+import srcs.workflow.job.ValidationException;
 
 /**
 	La première implantation de JobExexutor sera la classe JobExecutorSequential qui permet
@@ -35,95 +30,57 @@ public class JobExecutorSequential extends JobExecutor {
 
 	@Override
 	public Map<String, Object> execute() throws Exception {
+		startExecution();
 		
 		/**
-		 * Une méthode est exécutable lorsque tous les noeuds qui pointent vers elle sont terminés.
-		 * La liste des méthodes terminées est accessible via le résultat.
+		 * Une méthode est exécutable lorsque tous les noeuds qui pointent vers elle sont terminés :
+		 * c'est le cas de chaque tâche à son tour, en suivant un ordre topologique.
 		 */
 		
-		// Création de la Map retournée
-		Map<String, Object> results = new HashMap<>();
-		
-		// Création du JobValidator, pour avoir le graphe de tâches et l'association ID tâche <-> méthode
-		JobValidator validator = new JobValidator(job);
-		
-		// Graphe des tâches
-		Graph<String> graph = validator.getTaskGraph();
-		
-		// Liste des tâches en attente d'exécution
-		LinkedList<String> awaitingTasksID = new LinkedList<>();
-		
-		// Ajout des tâches qui attendent d'être exécutées
-		for (String taskID : graph) {
-			awaitingTasksID.add(taskID);
+		// Création du JobValidator, pour avoir le graphe de tâches et l'association ID tâche <-> méthode.
+		// Un job invalide est un échec du job comme un autre : les observateurs en sont prévenus.
+		JobStructure structure;
+		ResultRetention retention;
+		try {
+			structure = new JobValidator(job).getStructure();
+			
+			// Résultats libérés dès qu'ils ne sont plus lus, si tous ne sont pas renvoyés (voir setReturnedTasks)
+			retention = newResultRetention(structure);
+		} catch (ValidationException | IllegalArgumentException e) {
+			jobFailed(e);
+			throw e;
 		}
 		
-		// Exécution l'une après l'autre des tâches qui peuvent s'exécuter.
-		while ( ! awaitingTasksID.isEmpty()) {
+		// Résultats par identifiant de tâche, et objets du contexte utilisés par les tâches
+		GraphCSR<String> graph = structure.getTaskGraph();
+		Object[] taskResults = new Object[graph.size()];
+		Object[] contextValues = structure.contextValues(job);
+		JobDispatcher dispatcher = structure.getDispatcher();
+		
+		// Ordre topologique des tâches, calculé une seule fois par classe de job (voir JobStructure) :
+		// quand vient le tour d'une tâche, toutes celles dont elle dépend ont déjà été exécutées.
+		// Ni recherche de tâche prête, ni allocation à chaque étape.
+		for (int task : structure.getTopologicalOrder()) {
 			
-			// Pour toutes les tâches restantes...
-			for (String taskID : awaitingTasksID) {
-				
-				// ...je regarde si toutes les tâches qui pointent vers cette tâche sont terminées
-				boolean ready = true;
-				List<String> neededTasks = graph.getNeighborsIn(taskID);
-				for (String ntask : neededTasks) {
-					if ( ! results.containsKey(ntask)) {
-						// La tâche n'est pas terminée, le résultat n'est pas encore disponible
-						ready = false;
-						break;
-					}
-				}
-				
-				// Si la tâche n'est pas encore exécutable, je passe à la suivante
-				if ( ! ready) continue;
-				
-				// La tâche est donc exécutable, je l'exécute
-				Method method = validator.getMethod(taskID);
-				
-				// Liste des arguments de la méthode
-				List<Object> args = new ArrayList<>();
-				
-				// J'ajoute les arguments : pour chaque paramètre, j'en regarde l'annotation
-				for (Parameter param : method.getParameters()) {
-					Annotation[] pannots = param.getAnnotations();
-					for (Annotation a : pannots) {
-						// Dépendance à une tâche
-						if (a.annotationType().equals(LinkFrom.class)) {
-							String ref = ((LinkFrom) a).value();
-							Object taskObj = results.get(ref);
-							args.add(taskObj);
-						}
-						// Dépendance à un objet du contexte
-						if (a.annotationType().equals(Context.class)) {
-							String ref = ((Context) a).value();
-							Object contextObj = job.getContext().get(ref);
-							args.add(contextObj);
-						}
-					}
-				}
-				
-				// Appel de la méthode
-				Object res = method.invoke(job, args.toArray());
-				
-				// Ajout du résultat
-				results.put(taskID, res);
-				
-				// Suppression de la méthode de la liste des méthodes restant à exécuter
-				awaitingTasksID.remove(taskID);
-				
-				// Break pour ne pas perturber l'itérateur sur awaitingTasksID
-				break;
+			// Appel direct de la méthode (voir JobDispatcher), ses arguments étant lus
+			// d'après son plan de liaison (voir JobStructure)
+			long start = System.nanoTime();
+			try {
+				taskResults[task] = dispatcher.dispatch(task, job, taskResults, contextValues);
+			} catch (Exception e) {
+				jobFailed(e);
+				throw e;
 			}
+			taskCompleted(new TaskResult(graph.value(task), taskResults[task], System.nanoTime() - start));
+			if (retention != null) retention.taskExecuted(task, taskResults);
+		}
+		
+		// Résultats par identifiant de tâche (@Task), dans la Map retournée
+		Map<String, Object> results = new HashMap<>(graph.size() * 2);
+		for (int task = 0; task < taskResults.length; task++) {
+			if ( (retention == null) || retention.isReturned(task) ) results.put(graph.value(task), taskResults[task]);
 		}
+		jobFinished(results);
 		return results;
 	}
 }
-
-
-
-
-
-
-
-
@@ -0,0 +1,97 @@
+package srcs.workflow.executor;
+
+import java.rmi.NoSuchObjectException;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Côté client d'une exécution distante asynchrone : objet exporté via RMI et passé au serveur
+ * (voir JobExecutorCallback), qui complète le futur renvoyé par executeAsync() et les futurs
+ * des tâches (taskFuture) du JobExecutor client, et lui transmet les résultats à publier
+ * (resultPublisher).
+ *
+ * L'objet est exporté dès sa création, et dépublié (avec les objets ajoutés via
+ * unexportWhenDone) une fois le job terminé.
+ */
+public class RemoteJobCompletion implements JobExecutorCallback {
+
+	/** Nombre maximal d'essais de dépublication sans forcer (appels en cours) */
+	private static final int UNEXPORT_ATTEMPTS = 100;
+
+	protected final JobExecutor executor;
+
+	protected final CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+
+	/** Objets exportés pour ce job, à dépublier à sa fin */
+	protected final List<Remote> exported = new CopyOnWriteArrayList<>();
+
+	/**
+	 * @param executor  JobExecutor client, dont les futurs sont complétés par cet objet
+	 * @throws RemoteException  si l'objet n'a pas pu être exporté.
+	 */
+	public RemoteJobCompletion(JobExecutor executor) throws RemoteException {
+		this.executor = executor;
+		UnicastRemoteObject.exportObject(this, 0);
+		exported.add(this);
+		// Pas dans le thread RMI qui complète le futur : l'appel en cours empêcherait la dépublication
+		future.whenCompleteAsync( (results, failure) -> unexportAll());
+	}
+
+	/** Futur résultat du job. */
+	public CompletableFuture<Map<String, Object>> getFuture() {
+		return future;
+	}
+
+	/** Objet déjà exporté (JobExecutorNotification...), à dépublier à la fin du job. */
+	public void unexportWhenDone(Remote object) {
+		exported.add(object);
+	}
+
+	/** Échec côté client (serveur injoignable...) : le job est considéré comme échoué. */
+	public void fail(Exception cause) {
+		executor.jobFailed(cause);
+		future.completeExceptionally(cause);
+	}
+
+	@Override
+	public void taskFinished(TaskResult result) throws RemoteException {
+		executor.taskCompleted(result);
+	}
+
+	@Override
+	public void jobFinished(Map<String, Object> results) throws RemoteException {
+		// Le serveur ne renvoie que les résultats demandés (voir JobExecutor.setReturnedTasks),
+		// dont ceux qu'il n'a pas transmis un à un (voir JobExecutor.streamedTasks)
+		executor.resultsReceived(results);
+		future.complete(results);
+	}
+
+	@Override
+	public void jobFailed(Exception cause) throws RemoteException {
+		fail(cause);
+	}
+
+	private void unexportAll() {
+		for (Remote object : exported) {
+			try {
+				// Laisse se terminer les appels en cours (le dernier appel du serveur), puis force
+				int attempt = 0;
+				while ( ! UnicastRemoteObject.unexportObject(object, attempt >= UNEXPORT_ATTEMPTS)) {
+					attempt++;
+					Thread.sleep(10);
+				}
+			} catch (NoSuchObjectException e) {
+				// Déjà dépublié
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+}
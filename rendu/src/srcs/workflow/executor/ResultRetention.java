@@ -0,0 +1,91 @@
+package srcs.workflow.executor;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntConsumer;
+
+import srcs.workflow.graph.GraphCSR;
+import srcs.workflow.job.JobStructure;
+
+/**
+ * Libération des résultats intermédiaires au cours d'une exécution, quand seuls certains résultats
+ * sont renvoyés (voir JobExecutor.setReturnedTasks) : chaque résultat compte les tâches qui le
+ * lisent (@LinkFrom) et pas encore exécutées. Quand la dernière l'a été, le résultat est retiré du
+ * tableau des résultats, sauf s'il doit être renvoyé. Le pic de mémoire n'est plus la somme de
+ * tous les résultats, mais celle des résultats encore attendus.
+ *
+ * Thread-safe (compteurs atomiques) : utilisable sans lock (JobExecutorForkJoin).
+ */
+class ResultRetention {
+
+	/** Graphe complet des tâches : une arête par tâche qui lit le résultat d'une autre */
+	private final GraphCSR<String> graph;
+
+	/** returned[id] : vrai si le résultat de la tâche id est renvoyé par execute() */
+	private final boolean[] returned;
+
+	/** remainingConsumers[id] : nombre de tâches qui lisent le résultat de la tâche id, pas encore exécutées */
+	private final AtomicIntegerArray remainingConsumers;
+
+	/**
+	 * @param structure  structure du job
+	 * @param returnedTasks  identifiants (@Task) des tâches dont le résultat est renvoyé, ou null
+	 *        pour renvoyer ceux des tâches dont aucune autre ne dépend
+	 * @throws IllegalArgumentException  si un identifiant ne correspond à aucune tâche du job
+	 */
+	ResultRetention(JobStructure structure, Set<String> returnedTasks) throws IllegalArgumentException {
+		graph = structure.getTaskGraph();
+		int n = graph.size();
+		returned = new boolean[n];
+		remainingConsumers = new AtomicIntegerArray(n);
+		for (int task = 0; task < n; task++) {
+			remainingConsumers.set(task, graph.outDegree(task));
+			if (returnedTasks == null) returned[task] = (graph.outDegree(task) == 0);
+		}
+		if (returnedTasks != null) {
+			for (String taskID : returnedTasks) {
+				if ( ! graph.existNode(taskID)) {
+					throw new IllegalArgumentException("Aucune tâche " + taskID + " dans le job.");
+				}
+				returned[graph.id(taskID)] = true;
+			}
+		}
+	}
+
+	/** Vrai si le résultat de la tâche (identifiant dans getTaskGraph()) est renvoyé par execute(). */
+	boolean isReturned(int task) {
+		return returned[task];
+	}
+
+	/** Vrai si le résultat de la tâche n'est ni lu par une autre tâche, ni renvoyé : il n'est pas à garder. */
+	boolean isUnused(int task) {
+		return (graph.outDegree(task) == 0) && ! returned[task];
+	}
+
+	/**
+	 * La tâche a été exécutée (son résultat est dans taskResults) : les résultats qu'elle a lus et
+	 * dont plus aucune tâche n'a besoin sont retirés de taskResults, ainsi que le sien si aucune
+	 * tâche ne le lit. Coût : le nombre de dépendances de la tâche.
+	 * @param task  identifiant de la tâche (dans getTaskGraph())
+	 * @param taskResults  résultats par identifiant de tâche
+	 */
+	void taskExecuted(int task, Object[] taskResults) {
+		taskExecuted(task, released -> taskResults[released] = null);
+	}
+
+	/**
+	 * Comme taskExecuted(int, Object[]), pour des résultats gardés ailleurs (voir ResultStore).
+	 * @param release  appelé avec l'identifiant de chaque résultat qui n'est plus utile
+	 */
+	void taskExecuted(int task, IntConsumer release) {
+		for (int k = 0, d = graph.inDegree(task); k < d; k++) {
+			int dependency = graph.inNeighbor(task, k);
+			if ( (remainingConsumers.decrementAndGet(dependency) == 0) && ! returned[dependency]) {
+				release.accept(dependency);
+			}
+		}
+		if (isUnused(task)) {
+			release.accept(task);
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package srcs.workflow.executor;
+
+import java.io.IOException;
+
+/**
+ * Stockage des résultats des tâches pendant une exécution (voir
+ * JobExecutorParallelAbstract.setResultStore), pour les jobs dont les résultats ne tiennent pas
+ * tous en mémoire (voir SpillingResultStore).
+ *
+ * Le store gère le tableau des résultats du JobExecutor (slots) : slots[id] est le résultat de
+ * la tâche id s'il est en mémoire, null sinon. Les tâches lisent leurs arguments directement dans
+ * ce tableau : avant d'exécuter une tâche, chacune de ses dépendances est épinglée (pin), ce qui
+ * la recharge en mémoire si besoin et l'y garde jusqu'à unpin.
+ *
+ * Les méthodes peuvent être appelées par plusieurs threads à la fois.
+ */
+public interface ResultStore {
+
+	/** Crée le store d'une exécution. */
+	public interface Factory {
+		/**
+		 * @param slots  tableau des résultats, un par tâche (identifiants du graphe des tâches)
+		 * @throws IOException
+		 */
+		public ResultStore create(Object[] slots) throws IOException;
+	}
+
+	/**
+	 * Enregistre le résultat d'une tâche, en mémoire (slots[task]) ou non.
+	 * @throws IOException  si le résultat n'a pas pu être écrit
+	 */
+	public void put(int task, Object value) throws IOException;
+
+	/**
+	 * Le résultat de la tâche va être lu : il est rechargé dans slots[task] si besoin, et y
+	 * reste jusqu'à l'appel correspondant à unpin.
+	 * @throws IOException  si le résultat n'a pas pu être relu
+	 */
+	public void pin(int task) throws IOException;
+
+	/** Le résultat épinglé par pin n'est plus lu. */
+	public void unpin(int task);
+
+	/**
+	 * Résultat d'une tâche (par exemple pour le renvoyer à la fin du job), sans le garder en mémoire.
+	 * @throws IOException  si le résultat n'a pas pu être relu
+	 */
+	public Object get(int task) throws IOException;
+
+	/** Le résultat de la tâche ne sera plus lu : il est oublié. */
+	public void release(int task);
+
+	/** Fin de l'exécution : tous les résultats sont oubliés (fichiers supprimés...). */
+	public void close();
+}
@@ -0,0 +1,376 @@
+package srcs.workflow.executor;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * ResultStore qui écrit sur disque les gros résultats, pour qu'un job dont les résultats ne tiennent
+ * pas tous en mémoire puisse se terminer.
+ *
+ * Un résultat dont la taille dépasse spillThreshold est sérialisé dans un fichier
+ * temporaire dès la fin de sa tâche. Il reste aussi en mémoire tant que le total des gros
+ * résultats en mémoire ne dépasse pas maxResidentBytes ; au-delà, les moins récemment lus sont
+ * oubliés (leur fichier est gardé). Quand une tâche qui le lit va être exécutée, il est relu
+ * depuis son fichier : d'un bloc s'il est petit, sinon comme un flux (tampon de taille fixe).
+ * Pas de projection en mémoire (FileChannel.map) : elle ne serait libérée qu'au passage du GC,
+ * et le fichier ne pourrait pas être supprimé avant sur certains systèmes (Windows).
+ *
+ * Les résultats épinglés (arguments des tâches en cours d'exécution) ne sont jamais oubliés :
+ * le plafond peut être dépassé de la taille de ces arguments. Les petits résultats, et ceux qui
+ * ne sont pas sérialisables, restent toujours en mémoire.
+ *
+ * Coûts : la taille des tableaux de types primitifs et des String est connue sans les sérialiser.
+ * Les autres objets ne sont sérialisés qu'une fois : en mémoire jusqu'à spillThreshold octets,
+ * puis directement dans leur fichier. Écritures, relectures et suppressions de fichiers sont
+ * faites hors du lock du store ; les tâches qui épinglent en même temps un résultat oublié
+ * attendent une seule relecture.
+ */
+public class SpillingResultStore implements ResultStore {
+
+	/** Taille maximale d'un fichier relu d'un bloc (voir read) */
+	private static final long READ_ALL_MAX = 1 << 20;
+
+	/** Tableau des résultats du JobExecutor : slots[id] est null si le résultat n'est pas en mémoire */
+	protected final Object[] slots;
+
+	/** Taille estimée (en octets) à partir de laquelle un résultat est écrit sur disque */
+	protected final long spillThreshold;
+
+	/** Taille totale maximale des gros résultats gardés en mémoire (hors résultats épinglés) */
+	protected final long maxResidentBytes;
+
+	/** Répertoire temporaire des fichiers de cette exécution, créé à la première écriture */
+	protected Path directory;
+
+	/** files[id] : fichier du résultat de la tâche id, null s'il n'a pas été écrit */
+	protected final Path[] files;
+
+	/** sizes[id] : taille du résultat de la tâche id (en mémoire, ou sérialisé), s'il a été écrit */
+	protected final long[] sizes;
+
+	/** pins[id] : nombre de tâches en cours d'exécution qui lisent le résultat de la tâche id */
+	protected final int[] pins;
+
+	/** Gros résultats en mémoire (ceux qui ont un fichier), du moins récemment lu au plus récent */
+	protected final LinkedHashMap<Integer, Long> resident = new LinkedHashMap<>(16, 0.75f, true);
+
+	/** Taille totale des résultats de resident */
+	protected long residentBytes;
+
+	/** Relectures en cours (voir pin), par tâche : les autres tâches qui épinglent le résultat l'attendent */
+	protected final Map<Integer, CompletableFuture<Object>> loading = new HashMap<>();
+
+	/**
+	 * @param slots  tableau des résultats du JobExecutor
+	 * @param spillThreshold  taille estimée (en octets) à partir de laquelle un résultat est écrit sur disque
+	 * @param maxResidentBytes  taille totale maximale des gros résultats gardés en mémoire
+	 * @throws IllegalArgumentException  si une des tailles est négative
+	 */
+	public SpillingResultStore(Object[] slots, long spillThreshold, long maxResidentBytes) throws IllegalArgumentException {
+		if ( (spillThreshold < 0) || (maxResidentBytes < 0) ) {
+			throw new IllegalArgumentException("Tailles négatives (" + spillThreshold + ", " + maxResidentBytes + ").");
+		}
+		this.slots = slots;
+		this.spillThreshold = spillThreshold;
+		this.maxResidentBytes = maxResidentBytes;
+		files = new Path[slots.length];
+		sizes = new long[slots.length];
+		pins = new int[slots.length];
+	}
+
+	/**
+	 * Factory pour JobExecutorParallelAbstract.setResultStore : un store par exécution.
+	 * @see #SpillingResultStore(Object[], long, long)
+	 */
+	public static ResultStore.Factory factory(long spillThreshold, long maxResidentBytes) throws IllegalArgumentException {
+		if ( (spillThreshold < 0) || (maxResidentBytes < 0) ) {
+			throw new IllegalArgumentException("Tailles négatives (" + spillThreshold + ", " + maxResidentBytes + ").");
+		}
+		return slots -> new SpillingResultStore(slots, spillThreshold, maxResidentBytes);
+	}
+
+	@Override
+	public void put(int task, Object value) throws IOException {
+		long size = knownSize(value);
+		if ( (size >= 0) && (size < spillThreshold) ) {
+			keep(task, value);
+			return;
+		}
+		// Sérialisation sans le lock (chaque tâche a son propre fichier) et une seule fois : c'est le
+		// nombre d'octets écrits qui décide de la taille des objets de taille inconnue
+		SpillStream stream = new SpillStream(task, size >= 0);
+		try (ObjectOutputStream out = new ObjectOutputStream(stream)) {
+			out.writeObject(value);
+		} catch (NotSerializableException e) {
+			stream.discard();
+			keep(task, value);
+			return;
+		} catch (IOException | RuntimeException e) {
+			stream.discard();
+			throw e;
+		}
+		Path file = stream.file;
+		if (file == null) {
+			keep(task, value); // moins de spillThreshold octets
+			return;
+		}
+		if (size < 0) size = stream.count;
+		synchronized (this) {
+			files[task] = file;
+			sizes[task] = size;
+			// Gardé en mémoire s'il y a la place (en oubliant les moins récemment lus)
+			if (size <= maxResidentBytes) evict(size);
+			if (residentBytes + size <= maxResidentBytes) {
+				slots[task] = value;
+				resident.put(task, size);
+				residentBytes += size;
+			} else {
+				slots[task] = null;
+			}
+		}
+	}
+
+	/** Résultat gardé en mémoire uniquement. */
+	private synchronized void keep(int task, Object value) {
+		slots[task] = value;
+	}
+
+	@Override
+	public void pin(int task) throws IOException {
+		Path file;
+		CompletableFuture<Object> load;
+		boolean reader = false;
+		synchronized (this) {
+			file = files[task];
+			if ( (slots[task] != null) || (file == null) ) {
+				pins[task]++;
+				if (file != null) resident.get(task); // devient le plus récemment lu
+				return;
+			}
+			load = loading.get(task);
+			if (load == null) {
+				load = new CompletableFuture<>();
+				loading.put(task, load);
+				reader = true;
+			}
+		}
+		// Relecture hors du lock : les autres tâches continuent d'écrire et d'épingler leurs résultats.
+		// Épinglé seulement une fois relu : une relecture qui échoue n'épingle rien.
+		Object reloaded;
+		if (reader) {
+			try {
+				reloaded = read(file);
+			} catch (Throwable t) {
+				synchronized (this) {
+					loading.remove(task);
+				}
+				load.completeExceptionally(t);
+				throw t;
+			}
+		} else {
+			try {
+				reloaded = load.join();
+			} catch (CompletionException e) {
+				throw new IOException("Échec de la relecture du résultat de la tâche " + task + ".", e.getCause());
+			}
+		}
+		synchronized (this) {
+			if (reader) loading.remove(task);
+			pins[task]++;
+			if ( (slots[task] == null) && (files[task] != null) ) {
+				// Remis en mémoire (par le lecteur, ou de nouveau s'il a été oublié entre-temps)
+				slots[task] = reloaded;
+				resident.put(task, sizes[task]);
+				residentBytes += sizes[task];
+				evict(0);
+			} else if (files[task] != null) {
+				resident.get(task);
+			}
+		}
+		if (reader) load.complete(reloaded);
+	}
+
+	@Override
+	public synchronized void unpin(int task) {
+		pins[task]--;
+		evict(0);
+	}
+
+	@Override
+	public Object get(int task) throws IOException {
+		Path file;
+		synchronized (this) {
+			if ( (slots[task] != null) || (files[task] == null) ) return slots[task];
+			file = files[task];
+		}
+		return read(file); // hors du lock, comme pour pin
+	}
+
+	@Override
+	public void release(int task) {
+		Path file;
+		synchronized (this) {
+			slots[task] = null;
+			Long size = resident.remove(task);
+			if (size != null) residentBytes -= size;
+			file = files[task];
+			files[task] = null;
+		}
+		if (file != null) delete(file); // hors du lock, comme les écritures
+	}
+
+	@Override
+	public void close() {
+		List<Path> deleted = new ArrayList<>();
+		Path dir;
+		synchronized (this) {
+			for (int task = 0; task < files.length; task++) {
+				if (files[task] != null) {
+					deleted.add(files[task]);
+					files[task] = null;
+				}
+			}
+			resident.clear();
+			residentBytes = 0;
+			dir = directory;
+		}
+		for (Path file : deleted) delete(file);
+		if (dir != null) delete(dir);
+	}
+
+	/**
+	 * Oublie les gros résultats non épinglés les moins récemment lus (ils restent dans leur fichier),
+	 * jusqu'à ce que needed octets de plus tiennent sous maxResidentBytes, ou qu'il n'y ait plus rien
+	 * à oublier. Doit être appelé en possession du lock.
+	 */
+	protected void evict(long needed) {
+		Iterator<Map.Entry<Integer, Long>> it = resident.entrySet().iterator();
+		while ( (residentBytes + needed > maxResidentBytes) && it.hasNext() ) {
+			Map.Entry<Integer, Long> e = it.next();
+			int task = e.getKey();
+			if (pins[task] > 0) continue;
+			slots[task] = null;
+			residentBytes -= e.getValue();
+			it.remove();
+		}
+	}
+
+	/** Répertoire des fichiers de cette exécution, créé au premier appel. */
+	protected synchronized Path directory() throws IOException {
+		if (directory == null) directory = Files.createTempDirectory("srcs-workflow-results");
+		return directory;
+	}
+
+	/** Relit un résultat depuis son fichier : d'un bloc s'il fait moins de READ_ALL_MAX octets, sinon comme un flux. */
+	protected static Object read(Path file) throws IOException {
+		InputStream input = (Files.size(file) <= READ_ALL_MAX)
+				? new ByteArrayInputStream(Files.readAllBytes(file))
+				: new BufferedInputStream(Files.newInputStream(file), 1 << 16);
+		try (ObjectInputStream in = new ObjectInputStream(input)) {
+			return in.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException("Classe du résultat introuvable : " + e.getMessage(), e);
+		}
+	}
+
+	private static void delete(Path path) {
+		try {
+			Files.deleteIfExists(path);
+		} catch (IOException e) { } // fichier temporaire : tant pis
+	}
+
+	/**
+	 * Taille d'un résultat connue sans le sérialiser, en octets : exacte pour les tableaux de types
+	 * primitifs et les String.
+	 * @return -1 si elle n'est connue qu'en sérialisant le résultat
+	 */
+	protected static long knownSize(Object value) {
+		if (value == null) return 0;
+		if (value instanceof byte[]) return ((byte[]) value).length;
+		if (value instanceof boolean[]) return ((boolean[]) value).length;
+		if (value instanceof char[]) return 2L * ((char[]) value).length;
+		if (value instanceof short[]) return 2L * ((short[]) value).length;
+		if (value instanceof int[]) return 4L * ((int[]) value).length;
+		if (value instanceof float[]) return 4L * ((float[]) value).length;
+		if (value instanceof long[]) return 8L * ((long[]) value).length;
+		if (value instanceof double[]) return 8L * ((double[]) value).length;
+		if (value instanceof String) return 2L * ((String) value).length();
+		if ( (value instanceof Number) || (value instanceof Boolean) || (value instanceof Character) ) return 16;
+		return -1;
+	}
+
+	/**
+	 * Flux de sérialisation d'un résultat : les octets sont gardés en mémoire tant qu'il y en a
+	 * moins de spillThreshold, puis le fichier est créé et tout y est écrit. Un petit résultat ne
+	 * crée donc aucun fichier.
+	 */
+	private class SpillStream extends OutputStream {
+		private final int task;
+		private ByteArrayOutputStream head = new ByteArrayOutputStream();
+		private OutputStream out;
+		/** Fichier du résultat, null tant qu'il n'a pas été créé */
+		private Path file;
+		private long count = 0;
+
+		/**
+		 * @param spill  vrai pour écrire dans le fichier dès le début (taille connue, assez grande)
+		 */
+		SpillStream(int task, boolean spill) throws IOException {
+			this.task = task;
+			if (spill) spill();
+		}
+
+		private void spill() throws IOException {
+			file = Files.createTempFile(directory(), "result-" + task + "-", ".ser");
+			out = new BufferedOutputStream(Files.newOutputStream(file));
+			head.writeTo(out);
+			head = null;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			if ( (out == null) && (count + 1 >= spillThreshold) ) spill();
+			(out != null ? out : head).write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if ( (out == null) && (count + len >= spillThreshold) ) spill();
+			(out != null ? out : head).write(b, off, len);
+			count += len;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (out != null) out.close();
+		}
+
+		/** Abandonne l'écriture : le fichier éventuel est supprimé. */
+		void discard() {
+			try {
+				close();
+			} catch (IOException e) { } // supprimé juste après
+			if (file != null) delete(file);
+			file = null;
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package srcs.workflow.executor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import srcs.workflow.graph.GraphCSR;
+
+/**
+ * Durées d'exécution observées des tâches, indexées par "classe du job#identifiant de la tâche",
+ * qui servent à ordonner les tâches prêtes (voir JobExecutorParallelAbstract.setPriorityScheduling).
+ *
+ * Chaque durée est une moyenne glissante (exponentielle) des exécutions précédentes : une tâche
+ * dont la durée change (données plus grosses...) est réestimée en quelques exécutions.
+ * Thread-safe : une même instance peut être partagée par tous les jobs d'un serveur.
+ */
+public class TaskDurationHistory {
+
+	/** Poids de la dernière mesure dans la moyenne glissante */
+	private static final double SMOOTHING = 0.25;
+
+	/** Durée moyenne (en nanosecondes) de chaque tâche déjà exécutée */
+	protected final Map<String, Double> durations = new ConcurrentHashMap<>();
+
+	/**
+	 * Enregistre la durée d'une exécution de la tâche.
+	 * @param jobClass  classe du job
+	 * @param taskID  identifiant (@Task) de la tâche
+	 * @param durationNanos  durée de l'exécution (ignorée si négative)
+	 */
+	public void record(Class<?> jobClass, String taskID, long durationNanos) {
+		if (durationNanos < 0) return;
+		durations.merge(jobClass.getName() + "#" + taskID, (double) durationNanos,
+				(previous, measure) -> previous + SMOOTHING * (measure - previous));
+	}
+
+	/**
+	 * Durée estimée de la tâche.
+	 * @return la durée moyenne en nanosecondes, ou -1 si la tâche n'a encore jamais été exécutée.
+	 */
+	public double estimate(Class<?> jobClass, String taskID) {
+		Double duration = durations.get(jobClass.getName() + "#" + taskID);
+		return (duration == null) ? -1 : duration;
+	}
+
+	/**
+	 * Rang ascendant de chaque tâche : durée du plus long chemin (en durées estimées) de la tâche,
+	 * comprise, jusqu'à une tâche dont rien ne dépend. Les tâches de plus grand rang sont sur le
+	 * chemin critique : les lancer en premier raccourcit la durée totale du job.
+	 *
+	 * Une tâche jamais exécutée compte pour la durée moyenne des tâches connues du job, et si aucune
+	 * ne l'est, toutes comptent pour 1 (le rang est alors la longueur du plus long chemin).
+	 * Coût : le nombre de tâches et de dépendances du graphe.
+	 * @param jobClass  classe du job
+	 * @param graph  graphe des tâches (réduit ou non : les plus longs chemins sont les mêmes)
+	 * @param topologicalOrder  identifiants (dans graph) des tâches, dans un ordre topologique
+	 * @return rank[id] : rang de la tâche id
+	 */
+	public double[] upwardRanks(Class<?> jobClass, GraphCSR<String> graph, int[] topologicalOrder) {
+		int n = graph.size();
+		double[] weights = new double[n];
+		double known = 0;
+		int knownCount = 0;
+		for (int task = 0; task < n; task++) {
+			weights[task] = estimate(jobClass, graph.value(task));
+			if (weights[task] >= 0) {
+				known += weights[task];
+				knownCount++;
+			}
+		}
+		double unknown = (knownCount == 0) ? 1 : known / knownCount;
+
+		// Les successeurs d'une tâche sont placés après elle dans l'ordre topologique
+		double[] ranks = new double[n];
+		for (int i = topologicalOrder.length - 1; i >= 0; i--) {
+			int task = topologicalOrder[i];
+			double longest = 0;
+			for (int k = 0, d = graph.outDegree(task); k < d; k++) {
+				longest = Math.max(longest, ranks[graph.outNeighbor(task, k)]);
+			}
+			ranks[task] = ((weights[task] >= 0) ? weights[task] : unknown) + longest;
+		}
+		return ranks;
+	}
+}
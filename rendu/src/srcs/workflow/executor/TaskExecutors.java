@@ -0,0 +1,145 @@
+package srcs.workflow.executor;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ExecutorService sur lesquels un JobExecutorParallel peut exécuter ses tâches
+ * (voir JobExecutorParallelAbstract.setExecutorService) :
+ * - threadPerTask() : un nouveau thread par tâche, c'est le comportement par défaut ;
+ * - boundedPool(n) : au plus n threads, réutilisés d'une tâche à l'autre (n = nombre de coeurs
+ *   pour des tâches de calcul) ;
+ * - virtualThreadPerTask() : un thread virtuel par tâche (Java 21 et plus), pour les tâches qui
+ *   bloquent (sleep, entrées-sorties, appels RMI) : des milliers de tâches sans des milliers de
+ *   threads système.
+ *
+ * Un même ExecutorService peut être partagé par plusieurs JobExecutor (par exemple par tous les
+ * jobs reçus par JobTrackerCentral). Les JobExecutor ne l'arrêtent jamais : c'est à son créateur
+ * d'appeler shutdown().
+ */
+public final class TaskExecutors {
+
+	private TaskExecutors() {
+	}
+
+	/** Un nouveau thread (système) par tâche. */
+	public static ExecutorService threadPerTask() {
+		return new ThreadPerTaskExecutor();
+	}
+
+	/**
+	 * Au plus parallelism threads, réutilisés.
+	 * @param parallelism  nombre de threads (Runtime.getRuntime().availableProcessors() pour des tâches de calcul)
+	 * @throws IllegalArgumentException  si parallelism < 1
+	 */
+	public static ExecutorService boundedPool(int parallelism) throws IllegalArgumentException {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Il faut au moins un thread (" + parallelism + ").");
+		}
+		return Executors.newFixedThreadPool(parallelism);
+	}
+
+	/** Vrai si la JVM permet de créer des threads virtuels (Java 21 et plus). */
+	public static boolean supportsVirtualThreads() {
+		try {
+			Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Un thread virtuel par tâche (Executors.newVirtualThreadPerTaskExecutor, appelé par
+	 * réflexion : ce code compile et s'exécute aussi avec les versions de Java antérieures).
+	 * @throws UnsupportedOperationException  si la JVM n'a pas de threads virtuels (voir supportsVirtualThreads()).
+	 */
+	public static ExecutorService virtualThreadPerTask() throws UnsupportedOperationException {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			throw new UnsupportedOperationException("Cette JVM n'a pas de threads virtuels (Java 21 et plus).", e);
+		}
+	}
+
+	/**
+	 * Un nouveau thread par tâche, comme le faisait JobExecutorParallelAbstract.execute() :
+	 * chaque tâche a son propre thread, même si beaucoup d'entre elles bloquent.
+	 */
+	private static final class ThreadPerTaskExecutor extends AbstractExecutorService {
+
+		/** Threads en cours d'exécution, protégé par lui-même */
+		private final Set<Thread> running = new HashSet<>();
+		private boolean shutdown = false;
+
+		@Override
+		public void execute(Runnable command) {
+			synchronized (running) {
+				if (shutdown) throw new RejectedExecutionException("ExecutorService arrêté.");
+				Thread th = new Thread(() -> {
+					try {
+						command.run();
+					} finally {
+						synchronized (running) {
+							running.remove(Thread.currentThread());
+							running.notifyAll();
+						}
+					}
+				});
+				running.add(th);
+				th.start();
+			}
+		}
+
+		@Override
+		public void shutdown() {
+			synchronized (running) {
+				shutdown = true;
+			}
+		}
+
+		@Override
+		public List<Runnable> shutdownNow() {
+			synchronized (running) {
+				shutdown = true;
+				for (Thread th : running) th.interrupt();
+			}
+			return new ArrayList<>();
+		}
+
+		@Override
+		public boolean isShutdown() {
+			synchronized (running) {
+				return shutdown;
+			}
+		}
+
+		@Override
+		public boolean isTerminated() {
+			synchronized (running) {
+				return shutdown && running.isEmpty();
+			}
+		}
+
+		@Override
+		public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+			long deadline = System.nanoTime() + unit.toNanos(timeout);
+			synchronized (running) {
+				while ( ! (shutdown && running.isEmpty())) {
+					long remaining = deadline - System.nanoTime();
+					if (remaining <= 0) return false;
+					TimeUnit.NANOSECONDS.timedWait(running, remaining);
+				}
+				return true;
+			}
+		}
+	}
+
+}
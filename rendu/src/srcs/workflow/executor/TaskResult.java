@@ -0,0 +1,95 @@
+package srcs.workflow.executor;
+
+import java.io.Serializable;
+
+/**
+ * Résultat d'une tâche, publié dès qu'elle se termine (voir JobExecutor.resultPublisher()) :
+ * identifiant de la tâche, valeur renvoyée, et mesures de temps.
+ * Sérialisable, pour être transmis par un serveur à son client (voir JobExecutorCallback).
+ */
+public final class TaskResult implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final String taskID;
+	private final Object value;
+	private final long durationNanos;
+	private final long completionTimeMillis;
+
+	/** Faux si la valeur n'a pas été transmise par le serveur (voir withoutValue) */
+	private final boolean hasValue;
+
+	/** Pourquoi la valeur n'a pas pu être transmise, null si elle ne l'a pas été faute d'être demandée */
+	private final String valueError;
+
+	/**
+	 * Résultat d'une tâche qui vient de se terminer (l'heure de fin est l'heure courante).
+	 * @param taskID  identifiant (@Task) de la tâche
+	 * @param value  valeur renvoyée par la tâche
+	 * @param durationNanos  durée d'exécution de la tâche, -1 si elle n'est pas connue
+	 */
+	public TaskResult(String taskID, Object value, long durationNanos) {
+		this.taskID = taskID;
+		this.value = value;
+		this.durationNanos = durationNanos;
+		this.completionTimeMillis = System.currentTimeMillis();
+		this.hasValue = true;
+		this.valueError = null;
+	}
+
+	private TaskResult(TaskResult result, String valueError) {
+		this.taskID = result.taskID;
+		this.value = null;
+		this.durationNanos = result.durationNanos;
+		this.completionTimeMillis = result.completionTimeMillis;
+		this.hasValue = false;
+		this.valueError = valueError;
+	}
+
+	/**
+	 * Le même résultat, sans sa valeur : ce qu'un serveur envoie à son client pour une tâche dont
+	 * la valeur n'est pas demandée, ou n'est pas transmissible (voir JobExecutor.executeAsync(JobExecutorCallback, Set)).
+	 * @param valueError  raison pour laquelle la valeur n'a pas pu être transmise, null si elle
+	 *        n'était pas demandée
+	 */
+	public TaskResult withoutValue(String valueError) {
+		return new TaskResult(this, valueError);
+	}
+
+	/** Faux si la valeur n'a pas été transmise (voir withoutValue) : getValue() renvoie alors null. */
+	public boolean hasValue() {
+		return hasValue;
+	}
+
+	/** Raison pour laquelle la valeur n'a pas pu être transmise, ou null. */
+	public String getValueError() {
+		return valueError;
+	}
+
+	/** Identifiant (@Task) de la tâche. */
+	public String getTaskID() {
+		return taskID;
+	}
+
+	/** Valeur renvoyée par la tâche. */
+	public Object getValue() {
+		return value;
+	}
+
+	/**
+	 * Durée d'exécution de la tâche, mesurée là où elle a été lancée (pour une exécution
+	 * distribuée, elle comprend l'appel au tracker), ou -1 si elle n'est pas connue.
+	 */
+	public long getDurationNanos() {
+		return durationNanos;
+	}
+
+	/** Heure de fin de la tâche (System.currentTimeMillis() de la machine qui l'a lancée). */
+	public long getCompletionTimeMillis() {
+		return completionTimeMillis;
+	}
+
+	@Override
+	public String toString() {
+		return taskID + "=" + (hasValue ? value : "?") + ((durationNanos < 0) ? "" : " (" + (durationNanos / 1000) + " µs)");
+	}
+}
@@ -0,0 +1,55 @@
+package srcs.workflow.graph;
+
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ *  Ensemble non modifiable de valeurs d'un GraphCSR, représenté par un BitSet d'identifiants.
+ */
+class BitSetView<T> extends AbstractSet<T> {
+
+	protected final GraphCSR<T> graph;
+	protected final BitSet bits;
+
+	/** Cardinalité, calculée à la première demande */
+	protected int size = -1;
+
+	public BitSetView(GraphCSR<T> graph, BitSet bits) {
+		this.graph = graph;
+		this.bits = bits;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		Integer id = graph.ids.get(o);
+		return (id != null) && bits.get(id);
+	}
+
+	@Override
+	public int size() {
+		if (size < 0) size = bits.cardinality();
+		return size;
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return new Iterator<T>() {
+			private int next = bits.nextSetBit(0);
+
+			@Override
+			public boolean hasNext() {
+				return next >= 0;
+			}
+
+			@Override
+			public T next() {
+				if (next < 0) throw new NoSuchElementException();
+				T value = graph.value(next);
+				next = bits.nextSetBit(next + 1);
+				return value;
+			}
+		};
+	}
+}
@@ -0,0 +1,27 @@
+package srcs.workflow.graph;
+
+import java.util.List;
+
+/**
+ * Jetée lorsqu'un arc ne peut pas être ajouté à un graphe qui doit rester acyclique (GraphDAGImpl).
+ * Le cycle qu'aurait créé l'arc est disponible via getCycle().
+ */
+public class CycleException extends IllegalArgumentException {
+	private static final long serialVersionUID = 4410563417532617690L;
+	
+	/** Le cycle sous la forme [n0, n1, ..., nk, n0] */
+	protected final List<?> cycle;
+	
+	public CycleException(String message, List<?> cycle) {
+		super(message);
+		this.cycle = cycle;
+	}
+	
+	/**
+	 * @return le cycle qu'aurait créé l'arc, sous la forme [n0, n1, ..., nk, n0]
+	 *         (n0 -> n1 étant l'arc refusé).
+	 */
+	public List<?> getCycle() {
+		return cycle;
+	}
+}
@@ -1,7 +1,11 @@
 package srcs.workflow.graph;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
 
 public interface Graph<T> extends Iterable<T> {
 	
@@ -71,6 +75,56 @@ public interface Graph<T> extends Iterable<T> {
 	List<T> getNeighborsIn(T to) throws IllegalArgumentException;
 	
 	
+	/** Comme getNeighborsOut, mais sans recopie : renvoie une vue non modifiable
+	 *  qui suit les modifications du graphe.
+	 *  @param from
+	 *  @return
+	 *  @throws IllegalArgumentException  si from n’existe pas dans le graphe.
+	 */
+	Collection<T> getNeighborsOutView(T from) throws IllegalArgumentException;
+	
+	
+	/** Comme getNeighborsIn, mais sans recopie : renvoie une vue non modifiable
+	 *  qui suit les modifications du graphe.
+	 *  @param to
+	 *  @return
+	 *  @throws IllegalArgumentException  si to n’existe pas dans le graphe.
+	 */
+	Collection<T> getNeighborsInView(T to) throws IllegalArgumentException;
+	
+	
+	/** Appelle action sur chaque voisin de from via les arcs sortants, sans allocation.
+	 *  @param from
+	 *  @param action
+	 *  @throws IllegalArgumentException  si from n’existe pas dans le graphe.
+	 */
+	void forEachNeighborOut(T from, Consumer<? super T> action) throws IllegalArgumentException;
+	
+	
+	/** Appelle action sur chaque voisin de to via les arcs entrants, sans allocation.
+	 *  @param to
+	 *  @param action
+	 *  @throws IllegalArgumentException  si to n’existe pas dans le graphe.
+	 */
+	void forEachNeighborIn(T to, Consumer<? super T> action) throws IllegalArgumentException;
+	
+	
+	/** Renvoie le nombre d'arcs sortants de from.
+	 *  @param from
+	 *  @return
+	 *  @throws IllegalArgumentException  si from n’existe pas dans le graphe.
+	 */
+	int outDegree(T from) throws IllegalArgumentException;
+	
+	
+	/** Renvoie le nombre d'arcs entrants de to.
+	 *  @param to
+	 *  @return
+	 *  @throws IllegalArgumentException  si to n’existe pas dans le graphe.
+	 */
+	int inDegree(T to) throws IllegalArgumentException;
+	
+	
 	/** Renvoie la liste des nœuds accessibles à partir de from.
 	 *  Une IllegalArgumentException est jetée si from n’existe pas dans le graphe.
 	 *  @param from
@@ -80,12 +134,62 @@ public interface Graph<T> extends Iterable<T> {
 	Set<T> accessible(T from) throws IllegalArgumentException;
 	
 	
+	/** Teste s'il existe un chemin (d'au moins un arc) allant de from à to,
+	 *  c'est à dire si to appartient à accessible(from).
+	 *  Une IllegalArgumentException est jetée si from ou to n’existe pas dans le graphe.
+	 *  @param from
+	 *  @param to
+	 *  @return
+	 *  @throws IllegalArgumentException  si from ou to n’existe pas dans le graphe.
+	 */
+	boolean canReach(T from, T to) throws IllegalArgumentException;
+	
+	
 	/** Teste si le graphe est acyclique. On notera que ceci est vrai si aucun des
 	 *  noeuds ne peut être accessible à partir de lui-même.
 	 *  @return  true si le graphe est acyclique, false sinon.
 	 */
 	boolean isDAG();
 	
+	
+	/** Renvoie tous les noeuds du graphe dans un ordre topologique : chaque noeud
+	 *  apparaît après tous les noeuds qui pointent vers lui.
+	 *  Une IllegalStateException est jetée si le graphe contient un cycle.
+	 *  @return  la liste des noeuds triés
+	 *  @throws IllegalStateException  si le graphe contient un cycle (voir findCycle()).
+	 */
+	List<T> topologicalOrder() throws IllegalStateException;
+	
+	
+	/** Recherche un cycle dans le graphe.
+	 *  @return  un cycle sous la forme d'un chemin [n0, n1, ..., nk, n0] (le premier noeud est
+	 *           répété à la fin), ou une liste vide si le graphe est acyclique.
+	 */
+	List<T> findCycle();
+	
+	
+	/** Renvoie la réduction transitive du graphe : un nouveau graphe ayant les mêmes noeuds
+	 *  et les mêmes relations d'accessibilité, mais sans aucun arc redondant (un arc from -> to
+	 *  est redondant s'il existe un autre chemin de from à to).
+	 *  Le graphe courant n'est pas modifié.
+	 *  @return  la réduction transitive
+	 *  @throws IllegalStateException  si le graphe contient un cycle (la réduction n'est alors pas unique).
+	 */
+	Graph<T> transitiveReduction() throws IllegalStateException;
+	
+	
+	/** Découpe le graphe en k parties de tailles équilibrées, en minimisant le poids des
+	 *  arcs coupés (voir GraphPartitioner). Le poids d'un arc from -> to est weight(from) :
+	 *  pour un graphe de tâches, la taille du résultat de from, qui doit être transmis à to.
+	 *  @param k  nombre de parties
+	 *  @param weight  poids de chaque noeud (<= 0 si inconnu), ou null pour compter les arcs coupés.
+	 *  @return  la partie (entre 0 et k-1) de chaque noeud
+	 *  @throws IllegalArgumentException  si k < 1
+	 *  @throws IllegalStateException  si le graphe contient un cycle.
+	 */
+	Map<T, Integer> partition(int k, ToLongFunction<? super T> weight)
+			throws IllegalArgumentException, IllegalStateException;
+	
 }
 
 
@@ -0,0 +1,178 @@
+package srcs.workflow.graph;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ *  Algorithmes de parcours communs aux implémentations de Graph.
+ *  Ils sont génériques sur le type N des noeuds "système" (GraphNode pour GraphImpl,
+ *  directement les valeurs pour GraphHashImpl) : chaque implémentation fournit ses noeuds
+ *  et une fonction donnant les successeurs d'un noeud.
+ *
+ *  Tout est itératif et en O(V+E) : pas de StackOverflowError sur les longues chaînes.
+ */
+final class GraphAlgorithms {
+
+	private GraphAlgorithms() { }
+
+	/** Réduction transitive d'un graphe acyclique figé.
+	 *  Un arc u -> v est redondant si v est accessible depuis un autre successeur w de u.
+	 *  Jusqu'à ReachabilityIndex.MAX_INDEXED_SIZE noeuds, le test utilise l'index d'accessibilité ;
+	 *  au delà, les noeuds accessibles depuis les successeurs de u sont marqués par un parcours
+	 *  (mémoire linéaire, un seul tableau de marques réutilisé pour tous les noeuds).
+	 *  @param graph
+	 *  @return un nouveau graphe, dont les noeuds sont dans le même ordre que dans graph.
+	 *  @throws IllegalStateException  si le graphe contient un cycle.
+	 */
+	static <T> GraphHashImpl<T> transitiveReduction(GraphCSR<T> graph) throws IllegalStateException {
+		if ( ! graph.isDAG()) {
+			throw new IllegalStateException("Le graphe contient au moins un cycle.");
+		}
+		int n = graph.size();
+		GraphHashImpl<T> result = new GraphHashImpl<>();
+		for (T value : graph) {
+			result.addNode(value);
+		}
+
+		if (n <= ReachabilityIndex.MAX_INDEXED_SIZE) {
+			ReachabilityIndex<T> index = graph.reachability();
+			for (int u = 0; u < n; u++) {
+				for (int k = 0, d = graph.outDegree(u); k < d; k++) {
+					int v = graph.outNeighbor(u, k);
+					boolean redundant = false;
+					for (int j = 0; (j < d) && ! redundant; j++) {
+						redundant = (j != k) && index.canReach(graph.outNeighbor(u, j), v);
+					}
+					if ( ! redundant) result.addEdge(graph.value(u), graph.value(v));
+				}
+			}
+			return result;
+		}
+
+		// mark[x] == u + 1 : x est accessible depuis un successeur de u (par au moins un arc)
+		int[] mark = new int[n];
+		// Chaque noeud est empilé au plus une fois par marquage, plus les successeurs directs de u
+		int[] stack = new int[2 * n];
+		for (int u = 0; u < n; u++) {
+			int top = 0;
+			for (int k = 0, d = graph.outDegree(u); k < d; k++) {
+				stack[top++] = graph.outNeighbor(u, k);
+			}
+			// Les successeurs directs eux-mêmes ne sont pas marqués (sauf s'ils sont atteints par un autre chemin)
+			while (top > 0) {
+				int node = stack[--top];
+				for (int k = 0, d = graph.outDegree(node); k < d; k++) {
+					int next = graph.outNeighbor(node, k);
+					if (mark[next] != u + 1) {
+						mark[next] = u + 1;
+						stack[top++] = next;
+					}
+				}
+			}
+			for (int k = 0, d = graph.outDegree(u); k < d; k++) {
+				int v = graph.outNeighbor(u, k);
+				if (mark[v] != u + 1) result.addEdge(graph.value(u), graph.value(v));
+			}
+		}
+		return result;
+	}
+
+	/** Tri topologique par l'algorithme de Kahn.
+	 *  Si le graphe contient un cycle, la liste renvoyée est incomplète : les noeuds
+	 *  appartenant à un cycle (ou accessibles depuis un cycle) n'y figurent pas.
+	 *  @param nodes  tous les noeuds du graphe
+	 *  @param out    successeurs d'un noeud
+	 *  @return les noeuds triés, de taille nodes.size() si et seulement si le graphe est acyclique.
+	 */
+	static <N> List<N> kahn(Collection<N> nodes, Function<N, ? extends Collection<N>> out) {
+
+		// Nombre d'arcs entrants de chaque noeud
+		Map<N, Integer> inDegree = new HashMap<>(nodes.size() * 2);
+		for (N node : nodes) {
+			inDegree.putIfAbsent(node, 0);
+			for (N next : out.apply(node)) {
+				inDegree.merge(next, 1, Integer::sum);
+			}
+		}
+
+		// File des noeuds dont tous les prédécesseurs ont été placés
+		Deque<N> ready = new ArrayDeque<>();
+		for (N node : nodes) {
+			if (inDegree.get(node) == 0) ready.add(node);
+		}
+
+		List<N> order = new ArrayList<>(nodes.size());
+		while ( ! ready.isEmpty()) {
+			N node = ready.poll();
+			order.add(node);
+			for (N next : out.apply(node)) {
+				if (inDegree.merge(next, -1, Integer::sum) == 0) {
+					ready.add(next);
+				}
+			}
+		}
+		return order;
+	}
+
+	/** Recherche d'un cycle par parcours en profondeur itératif (coloration blanc/gris/noir).
+	 *  @param nodes  tous les noeuds du graphe
+	 *  @param out    successeurs d'un noeud
+	 *  @return un cycle sous la forme [n0, n1, ..., nk, n0], ou une liste vide si le graphe est acyclique.
+	 */
+	static <N> List<N> findCycle(Collection<N> nodes, Function<N, ? extends Collection<N>> out) {
+
+		// Absent = blanc (non visité), true = gris (sur le chemin courant), false = noir (terminé)
+		Map<N, Boolean> onPath = new HashMap<>(nodes.size() * 2);
+
+		// Chemin courant et, pour chaque noeud du chemin, les successeurs restant à visiter
+		Deque<N> path = new ArrayDeque<>();
+		Deque<Iterator<N>> pending = new ArrayDeque<>();
+
+		for (N root : nodes) {
+			if (onPath.containsKey(root)) continue;
+
+			onPath.put(root, true);
+			path.push(root);
+			pending.push(out.apply(root).iterator());
+
+			while ( ! path.isEmpty()) {
+				Iterator<N> it = pending.peek();
+				if ( ! it.hasNext()) {
+					// Tous les successeurs ont été visités
+					onPath.put(path.pop(), false);
+					pending.pop();
+					continue;
+				}
+				N next = it.next();
+				Boolean grey = onPath.get(next);
+				if (grey == null) {
+					onPath.put(next, true);
+					path.push(next);
+					pending.push(out.apply(next).iterator());
+				} else if (grey) {
+					// next est sur le chemin courant : le cycle va de next au sommet de la pile
+					List<N> cycle = new ArrayList<>();
+					Iterator<N> fromTop = path.iterator();
+					N node;
+					do {
+						node = fromTop.next();
+						cycle.add(node);
+					} while ( ! node.equals(next));
+					Collections.reverse(cycle);
+					cycle.add(next);
+					return cycle;
+				}
+			}
+		}
+		return Collections.emptyList();
+	}
+
+}
@@ -0,0 +1,449 @@
+package srcs.workflow.graph;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+
+/**
+ *  Graphe immuable au format CSR (compressed sparse row), construit une fois pour toutes
+ *  à partir d'un autre Graph (typiquement le graphe de tâches d'un JobValidator).
+ *
+ *  Chaque noeud reçoit un identifiant entier dense (0..size()-1, dans l'ordre d'itération du
+ *  graphe source). Les arcs sortants du noeud i sont outTargets[outOffsets[i] .. outOffsets[i+1]-1],
+ *  de même pour les arcs entrants. Les méthodes "par identifiant" (inDegree(int), inNeighbor(int, int)...)
+ *  n'allouent rien et ne font aucun boxing : ce sont elles que les JobExecutor utilisent pour
+ *  l'ordonnancement.
+ *
+ *  Attention : inDegree(int) et outDegree(int) prennent un identifiant, alors que
+ *  inDegree(T) et outDegree(T) (de Graph) prennent une valeur. Sur un GraphCSR<Integer>,
+ *  passer par l'interface Graph pour utiliser les valeurs.
+ *
+ *  Les méthodes de Graph qui modifient le graphe jettent UnsupportedOperationException.
+ *  Comme le graphe est immuable, il peut être lu sans synchronisation par plusieurs threads.
+ */
+public class GraphCSR<T> implements Graph<T> {
+
+	/** Valeur associée à chaque identifiant */
+	protected final Object[] values;
+
+	/** Identifiant associé à chaque valeur */
+	protected final Map<T, Integer> ids;
+
+	/** Arcs sortants : les successeurs du noeud i sont outTargets[outOffsets[i] .. outOffsets[i+1]-1] */
+	protected final int[] outOffsets, outTargets;
+
+	/** Arcs entrants : les prédécesseurs du noeud i sont inTargets[inOffsets[i] .. inOffsets[i+1]-1] */
+	protected final int[] inOffsets, inTargets;
+
+	/** Index d'accessibilité, construit à la première demande (le graphe étant immuable,
+	 *  il reste valide). volatile : le graphe peut être partagé entre threads. */
+	protected volatile ReachabilityIndex<T> reachability;
+
+	/**
+	 * Construit la version figée (CSR) d'un graphe. Le graphe source n'est plus utilisé ensuite,
+	 * le modifier n'a aucun effet sur ce graphe.
+	 * @param graph  le graphe à figer
+	 */
+	public GraphCSR(Graph<T> graph) {
+		int n = graph.size();
+		values = new Object[n];
+		ids = new HashMap<>(n * 2);
+
+		int id = 0;
+		for (T value : graph) {
+			values[id] = value;
+			ids.put(value, id);
+			id++;
+		}
+
+		// Arcs sortants : un premier passage pour les degrés, puis remplissage
+		outOffsets = new int[n + 1];
+		for (int i = 0; i < n; i++) {
+			outOffsets[i + 1] = outOffsets[i] + graph.outDegree(value(i));
+		}
+		outTargets = new int[outOffsets[n]];
+		for (int i = 0; i < n; i++) {
+			int k = outOffsets[i];
+			for (T next : graph.getNeighborsOutView(value(i))) {
+				outTargets[k++] = ids.get(next);
+			}
+		}
+		int[] inDegrees;
+		if (n >= GraphParallel.PARALLEL_THRESHOLD) {
+			inDegrees = GraphParallel.countInDegrees(n, outOffsets, outTargets);
+		} else {
+			inDegrees = new int[n];
+			for (int target : outTargets) {
+				inDegrees[target]++;
+			}
+		}
+
+		// Arcs entrants : déduits des arcs sortants
+		inOffsets = new int[n + 1];
+		for (int i = 0; i < n; i++) {
+			inOffsets[i + 1] = inOffsets[i] + inDegrees[i];
+		}
+		inTargets = new int[inOffsets[n]];
+		int[] fill = Arrays.copyOf(inOffsets, n);
+		for (int i = 0; i < n; i++) {
+			for (int k = outOffsets[i]; k < outOffsets[i + 1]; k++) {
+				inTargets[fill[outTargets[k]]++] = i;
+			}
+		}
+	}
+
+	// ----- Accès par identifiant (sans allocation) -----
+
+	/** Identifiant d'un noeud.
+	 *  @param value
+	 *  @return l'identifiant (entre 0 et size()-1)
+	 *  @throws IllegalArgumentException  si value n'existe pas dans le graphe.
+	 */
+	public int id(T value) throws IllegalArgumentException {
+		Integer id = ids.get(value);
+		if (id == null) throw new IllegalArgumentException("Le noeud n'existe pas dans le graphe.");
+		return id;
+	}
+
+	/** Valeur du noeud d'identifiant id. */
+	@SuppressWarnings("unchecked")
+	public T value(int id) {
+		return (T) values[id];
+	}
+
+	/** Nombre d'arcs sortants du noeud d'identifiant id. */
+	public int outDegree(int id) {
+		return outOffsets[id + 1] - outOffsets[id];
+	}
+
+	/** Nombre d'arcs entrants du noeud d'identifiant id. */
+	public int inDegree(int id) {
+		return inOffsets[id + 1] - inOffsets[id];
+	}
+
+	/** k-ième successeur (0 <= k < outDegree(id)) du noeud d'identifiant id. */
+	public int outNeighbor(int id, int k) {
+		return outTargets[outOffsets[id] + k];
+	}
+
+	/** k-ième prédécesseur (0 <= k < inDegree(id)) du noeud d'identifiant id. */
+	public int inNeighbor(int id, int k) {
+		return inTargets[inOffsets[id] + k];
+	}
+
+	/** Nombre total d'arcs du graphe. */
+	public int edgeCount() {
+		return outTargets.length;
+	}
+
+	/** Index d'accessibilité de ce graphe, calculé une seule fois. Une fois calculé, accessible
+	 *  et canReach l'utilisent ; à demander quand les requêtes sont nombreuses.
+	 *  Attention, il occupe de l'ordre de size()² bits. */
+	public ReachabilityIndex<T> reachability() {
+		ReachabilityIndex<T> index = reachability;
+		if (index == null) {
+			// Au pire, deux threads le calculent en même temps : le résultat est le même
+			index = new ReachabilityIndex<>(this);
+			reachability = index;
+		}
+		return index;
+	}
+
+	/** Tri topologique (algorithme de Kahn) sur les identifiants.
+	 *  Parallèle (GraphParallel) à partir de GraphParallel.PARALLEL_THRESHOLD noeuds.
+	 *  @return les identifiants triés, ou null si le graphe contient un cycle.
+	 */
+	public int[] topologicalOrderIds() {
+		if (values.length >= GraphParallel.PARALLEL_THRESHOLD) {
+			return GraphParallel.topologicalOrderIds(this);
+		}
+		int n = values.length;
+		int[] inDegrees = new int[n];
+		int[] order = new int[n];
+		int head = 0, tail = 0;
+
+		// order sert aussi de file : [head, tail[ sont les noeuds prêts non encore traités
+		for (int i = 0; i < n; i++) {
+			inDegrees[i] = inDegree(i);
+			if (inDegrees[i] == 0) order[tail++] = i;
+		}
+		while (head < tail) {
+			int node = order[head++];
+			for (int k = outOffsets[node]; k < outOffsets[node + 1]; k++) {
+				if (--inDegrees[outTargets[k]] == 0) {
+					order[tail++] = outTargets[k];
+				}
+			}
+		}
+		return (tail == n) ? order : null;
+	}
+
+	// ----- Graph -----
+
+	@Override
+	public Iterator<T> iterator() {
+		return new Iterator<T>() {
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < values.length;
+			}
+
+			@Override
+			public T next() {
+				if ( ! hasNext()) throw new NoSuchElementException();
+				return value(next++);
+			}
+		};
+	}
+
+	@Override
+	public void addNode(T n) throws IllegalArgumentException {
+		throw new UnsupportedOperationException("GraphCSR est immuable.");
+	}
+
+	@Override
+	public void addEdge(T from, T to) throws IllegalArgumentException {
+		throw new UnsupportedOperationException("GraphCSR est immuable.");
+	}
+
+	@Override
+	public boolean existEdge(T from, T to) {
+		Integer idFrom = ids.get(from), idTo = ids.get(to);
+		if ( (idFrom == null) || (idTo == null) ) return false;
+		for (int k = outOffsets[idFrom]; k < outOffsets[idFrom + 1]; k++) {
+			if (outTargets[k] == idTo) return true;
+		}
+		return false;
+	}
+
+	@Override
+	public boolean existNode(T n) {
+		return ids.containsKey(n);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return values.length == 0;
+	}
+
+	@Override
+	public int size() {
+		return values.length;
+	}
+
+	@Override
+	public List<T> getNeighborsOut(T from) throws IllegalArgumentException {
+		int id = id(from);
+		List<T> result = new ArrayList<>(outDegree(id));
+		for (int k = outOffsets[id]; k < outOffsets[id + 1]; k++) {
+			result.add(value(outTargets[k]));
+		}
+		return result;
+	}
+
+	@Override
+	public List<T> getNeighborsIn(T to) throws IllegalArgumentException {
+		int id = id(to);
+		List<T> result = new ArrayList<>(inDegree(id));
+		for (int k = inOffsets[id]; k < inOffsets[id + 1]; k++) {
+			result.add(value(inTargets[k]));
+		}
+		return result;
+	}
+
+	@Override
+	public Collection<T> getNeighborsOutView(T from) throws IllegalArgumentException {
+		int id = id(from);
+		return new IdsView<>(this, outTargets, outOffsets[id], outOffsets[id + 1]);
+	}
+
+	@Override
+	public Collection<T> getNeighborsInView(T to) throws IllegalArgumentException {
+		int id = id(to);
+		return new IdsView<>(this, inTargets, inOffsets[id], inOffsets[id + 1]);
+	}
+
+	@Override
+	public void forEachNeighborOut(T from, Consumer<? super T> action) throws IllegalArgumentException {
+		int id = id(from);
+		for (int k = outOffsets[id]; k < outOffsets[id + 1]; k++) {
+			action.accept(value(outTargets[k]));
+		}
+	}
+
+	@Override
+	public void forEachNeighborIn(T to, Consumer<? super T> action) throws IllegalArgumentException {
+		int id = id(to);
+		for (int k = inOffsets[id]; k < inOffsets[id + 1]; k++) {
+			action.accept(value(inTargets[k]));
+		}
+	}
+
+	@Override
+	public int outDegree(T from) throws IllegalArgumentException {
+		return outDegree(id(from));
+	}
+
+	@Override
+	public int inDegree(T to) throws IllegalArgumentException {
+		return inDegree(id(to));
+	}
+
+	@Override
+	public Set<T> accessible(T from) throws IllegalArgumentException {
+		// L'index n'est utilisé que s'il a été demandé (reachability) : pas de size()² bits pour une requête
+		ReachabilityIndex<T> index = reachability;
+		if (index != null) {
+			return index.accessible(from);
+		}
+
+		// Parcours (parallèle si le graphe est assez grand)
+		int id = id(from);
+		if (values.length >= GraphParallel.PARALLEL_THRESHOLD) {
+			return new BitSetView<>(this, GraphParallel.reachableFrom(this, id));
+		}
+		boolean[] visited = new boolean[values.length];
+		int[] stack = new int[values.length + 1];
+		int top = 0;
+		stack[top++] = id;
+
+		Set<T> result = new HashSet<>();
+		while (top > 0) {
+			int node = stack[--top];
+			for (int k = outOffsets[node]; k < outOffsets[node + 1]; k++) {
+				int next = outTargets[k];
+				if ( ! visited[next]) {
+					visited[next] = true;
+					result.add(value(next));
+					stack[top++] = next;
+				}
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public boolean canReach(T from, T to) throws IllegalArgumentException {
+		ReachabilityIndex<T> index = reachability;
+		if (index != null) {
+			return index.canReach(from, to);
+		}
+		int source = id(from);
+		int target = id(to);
+		if (values.length >= GraphParallel.PARALLEL_THRESHOLD) {
+			return GraphParallel.reachableFrom(this, source).get(target);
+		}
+
+		// Parcours en profondeur, arrêté dès que to est atteint
+		boolean[] visited = new boolean[values.length];
+		int[] stack = new int[values.length + 1];
+		int top = 0;
+		stack[top++] = source;
+		while (top > 0) {
+			int node = stack[--top];
+			for (int k = outOffsets[node]; k < outOffsets[node + 1]; k++) {
+				int next = outTargets[k];
+				if (next == target) return true;
+				if ( ! visited[next]) {
+					visited[next] = true;
+					stack[top++] = next;
+				}
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean isDAG() {
+		return topologicalOrderIds() != null;
+	}
+
+	@Override
+	public List<T> topologicalOrder() throws IllegalStateException {
+		int[] order = topologicalOrderIds();
+		if (order == null) {
+			throw new IllegalStateException("Le graphe contient au moins un cycle.");
+		}
+		List<T> result = new ArrayList<>(order.length);
+		for (int id : order) {
+			result.add(value(id));
+		}
+		return result;
+	}
+
+	/** La réduction transitive, elle aussi figée, avec les mêmes identifiants de noeuds. */
+	@Override
+	public GraphCSR<T> transitiveReduction() throws IllegalStateException {
+		return new GraphCSR<>(GraphAlgorithms.transitiveReduction(this));
+	}
+
+	@Override
+	public Map<T, Integer> partition(int k, ToLongFunction<? super T> weight)
+			throws IllegalArgumentException, IllegalStateException {
+		long[] weights = null;
+		if (weight != null) {
+			weights = new long[values.length];
+			for (int id = 0; id < values.length; id++) {
+				weights[id] = weight.applyAsLong(value(id));
+			}
+		}
+		int[] part = GraphPartitioner.partition(this, k, weights);
+		Map<T, Integer> result = new HashMap<>(values.length * 2);
+		for (int id = 0; id < values.length; id++) {
+			result.put(value(id), part[id]);
+		}
+		return result;
+	}
+
+	@Override
+	public List<T> findCycle() {
+		List<T> all = new ArrayList<>(values.length);
+		for (T value : this) {
+			all.add(value);
+		}
+		return GraphAlgorithms.findCycle(all, this::getNeighborsOutView);
+	}
+
+}
+
+
+/**
+ *  Vue non modifiable sur une tranche [start, end[ d'un tableau d'identifiants d'un GraphCSR.
+ */
+class IdsView<T> extends AbstractList<T> {
+
+	protected final GraphCSR<T> graph;
+	protected final int[] targets;
+	protected final int start, end;
+
+	public IdsView(GraphCSR<T> graph, int[] targets, int start, int end) {
+		this.graph = graph;
+		this.targets = targets;
+		this.start = start;
+		this.end = end;
+	}
+
+	@Override
+	public T get(int index) {
+		if ( (index < 0) || (index >= end - start) ) throw new IndexOutOfBoundsException("Index : " + index);
+		return graph.value(targets[start + index]);
+	}
+
+	@Override
+	public int size() {
+		return end - start;
+	}
+}
@@ -0,0 +1,227 @@
+package srcs.workflow.graph;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+
+/**
+ *  Graphe thread-safe par copie à l'écriture.
+ *
+ *  Les lectures se font sans aucun verrou sur un instantané immuable (GraphCSR) publié via
+ *  un champ volatile : autant de threads que l'on veut (ordonnanceurs, thread de supervision...)
+ *  peuvent interroger le graphe en même temps, sans contention.
+ *  Chaque modification est faite sous verrou sur une copie modifiable (GraphHashImpl), puis un
+ *  nouvel instantané est publié d'un seul coup : un lecteur voit soit l'ancienne version, soit
+ *  la nouvelle, jamais un état intermédiaire.
+ *
+ *  Chaque publication coûte O(V + E) : pour ajouter beaucoup de noeuds et d'arcs, il vaut mieux
+ *  les regrouper dans un seul update(...), qui ne publie qu'une version.
+ *  Un appel isolé (getNeighborsOut puis existEdge...) peut voir deux versions différentes :
+ *  pour plusieurs lectures cohérentes entre elles, travailler sur snapshot().
+ */
+public class GraphCopyOnWrite<T> implements Graph<T> {
+
+	/** Version modifiable, accédée uniquement en possession de writeLock */
+	protected GraphHashImpl<T> master = new GraphHashImpl<>();
+
+	/** Dernière version publiée */
+	protected volatile GraphCSR<T> snapshot = new GraphCSR<>(master);
+
+	/** Sérialise les écritures (les lectures ne le prennent jamais) */
+	protected final Object writeLock = new Object();
+
+	/** Instantané courant du graphe : immuable, il ne verra jamais les modifications suivantes. */
+	public GraphCSR<T> snapshot() {
+		return snapshot;
+	}
+
+	/** Applique plusieurs modifications puis publie une seule nouvelle version.
+	 *  Si changes jette une exception, aucune de ses modifications n'est conservée.
+	 *  @param changes  modifications à faire sur le graphe passé en paramètre (à ne pas conserver)
+	 */
+	public void update(Consumer<Graph<T>> changes) {
+		synchronized (writeLock) {
+			try {
+				changes.accept(master);
+			} catch (RuntimeException e) {
+				// Retour à la dernière version publiée
+				master = copyOf(snapshot);
+				throw e;
+			}
+			snapshot = new GraphCSR<>(master);
+		}
+	}
+
+	/** Copie modifiable d'un graphe. */
+	protected static <T> GraphHashImpl<T> copyOf(Graph<T> graph) {
+		GraphHashImpl<T> copy = new GraphHashImpl<>();
+		for (T node : graph) {
+			copy.addNode(node);
+		}
+		for (T from : graph) {
+			for (T to : graph.getNeighborsOutView(from)) {
+				copy.addEdge(from, to);
+			}
+		}
+		return copy;
+	}
+
+	// ----- Écritures -----
+
+	@Override
+	public void addNode(T n) throws IllegalArgumentException {
+		update(g -> g.addNode(n));
+	}
+
+	@Override
+	public void addEdge(T from, T to) throws IllegalArgumentException {
+		update(g -> g.addEdge(from, to));
+	}
+
+	// ----- Lectures, toutes sur l'instantané courant -----
+
+	@Override
+	public Iterator<T> iterator() {
+		return snapshot.iterator();
+	}
+
+	@Override
+	public boolean existEdge(T from, T to) {
+		return snapshot.existEdge(from, to);
+	}
+
+	@Override
+	public boolean existNode(T n) {
+		return snapshot.existNode(n);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return snapshot.isEmpty();
+	}
+
+	@Override
+	public int size() {
+		return snapshot.size();
+	}
+
+	@Override
+	public List<T> getNeighborsOut(T from) throws IllegalArgumentException {
+		return snapshot.getNeighborsOut(from);
+	}
+
+	@Override
+	public List<T> getNeighborsIn(T to) throws IllegalArgumentException {
+		return snapshot.getNeighborsIn(to);
+	}
+
+	/** Vue qui lit, à chaque accès, l'instantané courant : elle suit donc les modifications. */
+	@Override
+	public Collection<T> getNeighborsOutView(T from) throws IllegalArgumentException {
+		snapshot.id(from);
+		return new NeighborsView(from, true);
+	}
+
+	/** Vue qui lit, à chaque accès, l'instantané courant (voir getNeighborsOutView). */
+	@Override
+	public Collection<T> getNeighborsInView(T to) throws IllegalArgumentException {
+		snapshot.id(to);
+		return new NeighborsView(to, false);
+	}
+
+	/** Voisins d'un noeud dans l'instantané courant. Chaque appel (size, iterator...) peut
+	 *  porter sur une version différente ; l'itérateur, lui, reste sur une seule version. */
+	protected class NeighborsView extends AbstractCollection<T> {
+		protected final T node;
+		protected final boolean out;
+
+		public NeighborsView(T node, boolean out) {
+			this.node = node;
+			this.out = out;
+		}
+
+		/** Vue sur l'instantané courant (les noeuds ne sont jamais supprimés : node y existe) */
+		protected Collection<T> current() {
+			GraphCSR<T> s = snapshot;
+			return out ? s.getNeighborsOutView(node) : s.getNeighborsInView(node);
+		}
+
+		@Override
+		public Iterator<T> iterator() {
+			return current().iterator();
+		}
+
+		@Override
+		public int size() {
+			return current().size();
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return current().contains(o);
+		}
+	}
+
+	@Override
+	public void forEachNeighborOut(T from, Consumer<? super T> action) throws IllegalArgumentException {
+		snapshot.forEachNeighborOut(from, action);
+	}
+
+	@Override
+	public void forEachNeighborIn(T to, Consumer<? super T> action) throws IllegalArgumentException {
+		snapshot.forEachNeighborIn(to, action);
+	}
+
+	@Override
+	public int outDegree(T from) throws IllegalArgumentException {
+		return snapshot.outDegree(from);
+	}
+
+	@Override
+	public int inDegree(T to) throws IllegalArgumentException {
+		return snapshot.inDegree(to);
+	}
+
+	@Override
+	public Set<T> accessible(T from) throws IllegalArgumentException {
+		return snapshot.accessible(from);
+	}
+
+	@Override
+	public boolean canReach(T from, T to) throws IllegalArgumentException {
+		return snapshot.canReach(from, to);
+	}
+
+	@Override
+	public boolean isDAG() {
+		return snapshot.isDAG();
+	}
+
+	@Override
+	public List<T> topologicalOrder() throws IllegalStateException {
+		return snapshot.topologicalOrder();
+	}
+
+	@Override
+	public List<T> findCycle() {
+		return snapshot.findCycle();
+	}
+
+	@Override
+	public Graph<T> transitiveReduction() throws IllegalStateException {
+		return snapshot.transitiveReduction();
+	}
+
+	@Override
+	public Map<T, Integer> partition(int k, ToLongFunction<? super T> weight)
+			throws IllegalArgumentException, IllegalStateException {
+		return snapshot.partition(k, weight);
+	}
+
+}
@@ -0,0 +1,158 @@
+package srcs.workflow.graph;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ *  Graphe toujours acyclique : addEdge refuse immédiatement (CycleException) un arc qui
+ *  créerait un cycle, le graphe n'est donc jamais invalide et isDAG() n'a rien à recalculer.
+ *
+ *  Un ordre topologique est maintenu dynamiquement (algorithme de Pearce et Kelly) :
+ *  chaque noeud a un rang ord, et tout arc from -> to vérifie ord(from) < ord(to).
+ *  - Si un nouvel arc respecte déjà l'ordre, il est ajouté en O(1).
+ *  - Sinon, seuls les noeuds dont le rang est compris entre ord(to) et ord(from) sont
+ *    parcourus (en avant depuis to, en arrière depuis from) puis réordonnés entre eux.
+ *    Le coût ne dépend que de cette zone "affectée", pas de la taille du graphe.
+ *
+ *  Utile pour les workflows construits dynamiquement (ajout de tâches à un DAG en cours
+ *  d'exécution...). Pour valider un graphe construit d'un seul coup, un unique tri
+ *  topologique (isDAG() de GraphHashImpl) reste moins coûteux.
+ */
+public class GraphDAGImpl<T> extends GraphHashImpl<T> {
+
+	/** Rang de chaque noeud dans l'ordre topologique maintenu */
+	protected final Map<T, Integer> ord = new HashMap<>();
+
+	/** Noeuds rangés par rang : order.get(ord(v)) == v */
+	protected final List<T> order = new ArrayList<>();
+
+	@Override
+	public void addNode(T n) throws IllegalArgumentException {
+		super.addNode(n);
+		// Un nouveau noeud n'a aucun arc : il peut se placer à la fin de l'ordre
+		ord.put(n, order.size());
+		order.add(n);
+	}
+
+	/** Ajoute un arc, sauf s'il créerait un cycle.
+	 *  @throws CycleException  si l'arc créerait un cycle (le graphe n'est alors pas modifié).
+	 *  @throws IllegalArgumentException  si from ou to n'existe pas, ou si l'arc existe déjà.
+	 */
+	@Override
+	public void addEdge(T from, T to) throws IllegalArgumentException {
+		GraphHashNode<T> sysFrom = getSysNode(from);
+		getSysNode(to);
+		if (sysFrom.pointsOut.contains(to)) {
+			throw new IllegalArgumentException("Le lien existe déjà.");
+		}
+
+		int lower = ord.get(to), upper = ord.get(from);
+		if (lower <= upper) {
+			// L'arc va à l'encontre de l'ordre actuel (ou boucle sur un noeud) : réordonnancement
+			reorder(from, to, lower, upper);
+		}
+		super.addEdge(from, to);
+	}
+
+	/** Réordonne la zone affectée par l'ajout de l'arc from -> to, avec ord(to) <= ord(from).
+	 *  @throws CycleException  si from est accessible depuis to.
+	 */
+	protected void reorder(T from, T to, int lower, int upper) throws CycleException {
+
+		// Parcours en avant depuis to, limité aux rangs <= upper.
+		// parent sert à reconstruire le chemin to -> ... -> from en cas de cycle.
+		Map<T, T> parent = new HashMap<>();
+		List<T> forward = new ArrayList<>();
+		Set<T> visited = new HashSet<>();
+		Deque<T> stack = new ArrayDeque<>();
+		stack.push(to);
+		visited.add(to);
+		while ( ! stack.isEmpty()) {
+			T node = stack.pop();
+			forward.add(node);
+			if (node.equals(from)) {
+				throw new CycleException("L'arc " + from + " -> " + to + " créerait un cycle.",
+						cyclePath(from, to, parent));
+			}
+			for (T next : nodes.get(node).pointsOut) {
+				if ( (ord.get(next) <= upper) && visited.add(next) ) {
+					parent.put(next, node);
+					stack.push(next);
+				}
+			}
+		}
+
+		// Parcours en arrière depuis from, limité aux rangs >= lower
+		List<T> backward = new ArrayList<>();
+		stack.push(from);
+		visited.add(from);
+		while ( ! stack.isEmpty()) {
+			T node = stack.pop();
+			backward.add(node);
+			for (T previous : nodes.get(node).pointsIn) {
+				if ( (ord.get(previous) >= lower) && visited.add(previous) ) {
+					stack.push(previous);
+				}
+			}
+		}
+
+		// Les noeuds de backward doivent passer avant ceux de forward : ils se partagent
+		// les rangs qu'ils occupaient déjà, les uns après les autres.
+		Comparator<T> byOrd = Comparator.comparingInt(ord::get);
+		Collections.sort(forward, byOrd);
+		Collections.sort(backward, byOrd);
+		List<Integer> ranks = new ArrayList<>(forward.size() + backward.size());
+		for (T node : backward) ranks.add(ord.get(node));
+		for (T node : forward) ranks.add(ord.get(node));
+		Collections.sort(ranks);
+
+		int i = 0;
+		for (T node : backward) place(node, ranks.get(i++));
+		for (T node : forward) place(node, ranks.get(i++));
+	}
+
+	/** Place node au rang rank. */
+	protected void place(T node, int rank) {
+		ord.put(node, rank);
+		order.set(rank, node);
+	}
+
+	/** Cycle [from, to, ..., from] formé par l'arc from -> to et le chemin to -> ... -> from. */
+	protected List<T> cyclePath(T from, T to, Map<T, T> parent) {
+		List<T> path = new ArrayList<>();
+		for (T node = from; ! node.equals(to); node = parent.get(node)) {
+			path.add(node);
+		}
+		path.add(to);
+		path.add(from);
+		Collections.reverse(path);
+		return path;
+	}
+
+	/** Toujours vrai : aucun arc créant un cycle n'a pu être ajouté. */
+	@Override
+	public boolean isDAG() {
+		return true;
+	}
+
+	/** L'ordre topologique maintenu, sans recalcul. */
+	@Override
+	public List<T> topologicalOrder() {
+		return new ArrayList<>(order);
+	}
+
+	@Override
+	public List<T> findCycle() {
+		return Collections.emptyList();
+	}
+
+}
@@ -0,0 +1,273 @@
+package srcs.workflow.graph;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+
+/**
+ *  Implémentation de Graph indexée par table de hachage.
+ *  Contrairement à GraphImpl qui parcourt sa liste de noeuds à chaque accès, chaque noeud
+ *  est ici retrouvé en O(1) à partir de sa valeur, et les arcs sont stockés dans des ensembles
+ *  hachés : addNode, addEdge et existEdge sont donc en temps constant (amorti).
+ *
+ *  C'est l'implémentation utilisée par JobValidator (et donc par tous les JobExecutor).
+ *
+ *  LES VALEURS DES NOEUDS SONT SUPPOSEES UNIQUES (et doivent implémenter hashCode et equals).
+ */
+public class GraphHashImpl<T> implements Graph<T> {
+
+	/** Association valeur -> noeud. LinkedHashMap pour conserver l'ordre d'insertion
+	 *  lors de l'itération, comme le faisait la LinkedList de GraphImpl. */
+	protected final Map<T, GraphHashNode<T>> nodes = new LinkedHashMap<>();
+
+	/** Copie figée du graphe, mémorisée entre deux appels aux algorithmes qui l'utilisent
+	 *  (index d'accessibilité, versions parallèles). Remise à null à chaque modification du graphe. */
+	protected GraphCSR<T> frozen;
+
+	@Override
+	public Iterator<T> iterator() {
+		return nodes.keySet().iterator();
+	}
+
+	@Override
+	public void addNode(T n) throws IllegalArgumentException {
+		if (nodes.containsKey(n)) {
+			throw new IllegalArgumentException("Le noeud existe déjà.");
+		}
+		nodes.put(n, new GraphHashNode<>(n));
+		frozen = null;
+	}
+
+	@Override
+	public void addEdge(T from, T to) throws IllegalArgumentException {
+		GraphHashNode<T> sysFrom = nodes.get(from);
+		GraphHashNode<T> sysTo = nodes.get(to);
+
+		// Si au moins un des noeuds n'existe pas, c'est une erreur.
+		if ( (sysFrom == null) || (sysTo == null) ) {
+			throw new IllegalArgumentException("Au moins un des noeuds passés en paramètre n'existe pas dans le graphe.");
+		}
+
+		// Set.add renvoie false si le lien existe déjà
+		if ( ! sysFrom.pointsOut.add(to)) {
+			throw new IllegalArgumentException("Le lien existe déjà.");
+		}
+		sysTo.pointsIn.add(from);
+		frozen = null;
+	}
+
+	@Override
+	public boolean existEdge(T from, T to) {
+		GraphHashNode<T> sysFrom = nodes.get(from);
+		if (sysFrom == null) return false;
+		return sysFrom.pointsOut.contains(to);
+	}
+
+	@Override
+	public boolean existNode(T n) {
+		return nodes.containsKey(n);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return nodes.isEmpty();
+	}
+
+	@Override
+	public int size() {
+		return nodes.size();
+	}
+
+	@Override
+	public List<T> getNeighborsOut(T from) throws IllegalArgumentException {
+		return new ArrayList<>(getSysNode(from).pointsOut);
+	}
+
+	@Override
+	public List<T> getNeighborsIn(T to) throws IllegalArgumentException {
+		return new ArrayList<>(getSysNode(to).pointsIn);
+	}
+
+	@Override
+	public Collection<T> getNeighborsOutView(T from) throws IllegalArgumentException {
+		return getSysNode(from).outView;
+	}
+
+	@Override
+	public Collection<T> getNeighborsInView(T to) throws IllegalArgumentException {
+		return getSysNode(to).inView;
+	}
+
+	@Override
+	public void forEachNeighborOut(T from, Consumer<? super T> action) throws IllegalArgumentException {
+		for (T value : getSysNode(from).pointsOut) {
+			action.accept(value);
+		}
+	}
+
+	@Override
+	public void forEachNeighborIn(T to, Consumer<? super T> action) throws IllegalArgumentException {
+		for (T value : getSysNode(to).pointsIn) {
+			action.accept(value);
+		}
+	}
+
+	@Override
+	public int outDegree(T from) throws IllegalArgumentException {
+		return getSysNode(from).pointsOut.size();
+	}
+
+	@Override
+	public int inDegree(T to) throws IllegalArgumentException {
+		return getSysNode(to).pointsIn.size();
+	}
+
+	@Override
+	public Set<T> accessible(T from) throws IllegalArgumentException {
+		// Throw si from n'existe pas
+		GraphHashNode<T> sysFrom = getSysNode(from);
+
+		// L'index n'est utilisé que s'il a été demandé (reachability) : le construire pour une seule
+		// requête coûterait size()² bits, à refaire après chaque modification
+		ReachabilityIndex<T> index = builtReachability();
+		if (index != null) {
+			return index.accessible(from);
+		}
+		if (nodes.size() >= GraphParallel.PARALLEL_THRESHOLD) {
+			return frozen().accessible(from);
+		}
+
+		Set<T> result = new HashSet<>();
+
+		// Parcours en profondeur itératif (pas de récursion : pas de StackOverflowError
+		// sur les longues chaînes de tâches).
+		Deque<T> stack = new ArrayDeque<>();
+		stack.push(sysFrom.getValue());
+
+		while ( ! stack.isEmpty()) {
+			for (T value : nodes.get(stack.pop()).pointsOut) {
+				if (result.add(value)) {
+					stack.push(value);
+				}
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public boolean canReach(T from, T to) throws IllegalArgumentException {
+		GraphHashNode<T> sysFrom = getSysNode(from);
+		getSysNode(to);
+		ReachabilityIndex<T> index = builtReachability();
+		if (index != null) {
+			return index.canReach(from, to);
+		}
+		if (nodes.size() >= GraphParallel.PARALLEL_THRESHOLD) {
+			return frozen().canReach(from, to);
+		}
+
+		// Parcours en profondeur, arrêté dès que to est atteint
+		Set<T> visited = new HashSet<>();
+		Deque<T> stack = new ArrayDeque<>();
+		stack.push(sysFrom.getValue());
+		while ( ! stack.isEmpty()) {
+			for (T value : nodes.get(stack.pop()).pointsOut) {
+				if (value.equals(to)) return true;
+				if (visited.add(value)) {
+					stack.push(value);
+				}
+			}
+		}
+		return false;
+	}
+
+	/** Index d'accessibilité s'il a déjà été calculé pour l'état actuel du graphe, null sinon. */
+	protected ReachabilityIndex<T> builtReachability() {
+		return (frozen == null) ? null : frozen.reachability;
+	}
+
+	/** Index d'accessibilité du graphe dans son état actuel, calculé si nécessaire
+	 *  puis mémorisé jusqu'à la prochaine modification du graphe. Une fois calculé, accessible
+	 *  et canReach l'utilisent ; à demander quand les requêtes sont nombreuses.
+	 *  Attention, il occupe de l'ordre de size()² bits.
+	 *  @return l'index, qui reste valide (mais ne suit plus le graphe) après une modification.
+	 */
+	public ReachabilityIndex<T> reachability() {
+		return frozen().reachability();
+	}
+
+	/** Copie figée (CSR) du graphe dans son état actuel, mémorisée jusqu'à la prochaine modification.
+	 *  @return la copie, qui reste valide (mais ne suit plus le graphe) après une modification.
+	 */
+	public GraphCSR<T> frozen() {
+		if (frozen == null) {
+			frozen = new GraphCSR<>(this);
+		}
+		return frozen;
+	}
+
+	@Override
+	public boolean isDAG() {
+		if (nodes.size() >= GraphParallel.PARALLEL_THRESHOLD) {
+			return frozen().isDAG();
+		}
+		// Le graphe est acyclique si et seulement si le tri topologique contient tous les noeuds.
+		return GraphAlgorithms.kahn(nodes.keySet(), this::successors).size() == nodes.size();
+	}
+
+	@Override
+	public List<T> topologicalOrder() throws IllegalStateException {
+		if (nodes.size() >= GraphParallel.PARALLEL_THRESHOLD) {
+			return frozen().topologicalOrder();
+		}
+		List<T> order = GraphAlgorithms.kahn(nodes.keySet(), this::successors);
+		if (order.size() != nodes.size()) {
+			throw new IllegalStateException("Le graphe contient au moins un cycle.");
+		}
+		return order;
+	}
+
+	@Override
+	public Graph<T> transitiveReduction() throws IllegalStateException {
+		return GraphAlgorithms.transitiveReduction(frozen());
+	}
+
+	@Override
+	public Map<T, Integer> partition(int k, ToLongFunction<? super T> weight)
+			throws IllegalArgumentException, IllegalStateException {
+		return frozen().partition(k, weight);
+	}
+
+	@Override
+	public List<T> findCycle() {
+		return GraphAlgorithms.findCycle(nodes.keySet(), this::successors);
+	}
+
+	// ----- Partie système -----
+
+	/** Trouver le noeud associé à la valeur value.
+	 *  @param value
+	 *  @return le noeud associé
+	 *  @throws IllegalArgumentException  si value n'existe pas dans le graphe.
+	 */
+	protected GraphHashNode<T> getSysNode(T value) throws IllegalArgumentException {
+		GraphHashNode<T> node = nodes.get(value);
+		if (node == null) throw new IllegalArgumentException("Le noeud n'existe pas dans le graphe.");
+		return node;
+	}
+
+	/** Successeurs d'un noeud existant, sans copie. */
+	protected Set<T> successors(T value) {
+		return nodes.get(value).pointsOut;
+	}
+}
@@ -0,0 +1,33 @@
+package srcs.workflow.graph;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ *  Noeud de GraphHashImpl : les arcs sont stockés directement par valeur,
+ *  dans des ensembles ordonnés (ordre d'insertion).
+ */
+class GraphHashNode<T> {
+
+	/** Objet associé */
+	protected final T value;
+
+	/** Valeurs des noeuds vers lesquels pointe ce noeud (arcs sortants) */
+	protected final Set<T> pointsOut = new LinkedHashSet<>();
+
+	/** Valeurs des noeuds pointant vers ce noeud (arcs entrants) */
+	protected final Set<T> pointsIn = new LinkedHashSet<>();
+
+	/** Vues non modifiables sur pointsOut et pointsIn, créées une seule fois */
+	protected final Set<T> outView = Collections.unmodifiableSet(pointsOut);
+	protected final Set<T> inView = Collections.unmodifiableSet(pointsIn);
+
+	public GraphHashNode(T value) {
+		this.value = value;
+	}
+
+	public T getValue() {
+		return value;
+	}
+}
@@ -1,11 +1,20 @@
 package srcs.workflow.graph;
 
+import java.util.AbstractList;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
 
 
 /**
@@ -102,6 +111,40 @@ public class GraphImpl<T> implements Graph<T> {
 		return sysTo.getInValues();
 	}
 
+	@Override
+	public Collection<T> getNeighborsOutView(T from) throws IllegalArgumentException {
+		return existingSysNode(from).outView;
+	}
+
+	@Override
+	public Collection<T> getNeighborsInView(T to) throws IllegalArgumentException {
+		return existingSysNode(to).inView;
+	}
+
+	@Override
+	public void forEachNeighborOut(T from, Consumer<? super T> action) throws IllegalArgumentException {
+		for (GraphNode<T> node : existingSysNode(from).pointsOut) {
+			action.accept(node.getValue());
+		}
+	}
+
+	@Override
+	public void forEachNeighborIn(T to, Consumer<? super T> action) throws IllegalArgumentException {
+		for (GraphNode<T> node : existingSysNode(to).pointsIn) {
+			action.accept(node.getValue());
+		}
+	}
+
+	@Override
+	public int outDegree(T from) throws IllegalArgumentException {
+		return existingSysNode(from).pointsOut.size();
+	}
+
+	@Override
+	public int inDegree(T to) throws IllegalArgumentException {
+		return existingSysNode(to).pointsIn.size();
+	}
+
 	@Override
 	public Set<T> accessible(T from) throws IllegalArgumentException {
 		Set<T> result = new HashSet<>();
@@ -110,38 +153,59 @@ public class GraphImpl<T> implements Graph<T> {
 		
 		if (sysFrom == null) throw new IllegalArgumentException("Le noeud n'existe pas dans le graphe.");
 		
-		accessibleRecur(from, result);
+		// Parcours itératif directement sur les noeuds système : pas de getSysNode
+		// (linéaire) à chaque étape, et pas de récursion (StackOverflowError sur les longues chaînes).
+		Set<GraphNode<T>> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+		Deque<GraphNode<T>> stack = new ArrayDeque<>();
+		stack.push(sysFrom);
 		
-		return result;
-	}
-	
-	protected void accessibleRecur(T from, Set<T> result) {
-		
-		// Tous les noeuds pointés sont supposés exister.
-		GraphNode<T> sysFrom = getSysNode(from);
-		
-		for (T value : sysFrom.getOutValues()) {
-			// Ajout récursif des noeuds pointés
-			if (! result.contains(value)) {
-				result.add(value);
-				accessibleRecur(value, result);
+		while ( ! stack.isEmpty()) {
+			for (GraphNode<T> node : stack.pop().pointsOut) {
+				if (visited.add(node)) {
+					result.add(node.getValue());
+					stack.push(node);
+				}
 			}
 		}
 		
+		return result;
+	}
+
+	@Override
+	public boolean canReach(T from, T to) throws IllegalArgumentException {
+		if (getSysNode(to) == null) throw new IllegalArgumentException("Le noeud n'existe pas dans le graphe.");
+		return accessible(from).contains(to);
 	}
 
 	@Override
 	public boolean isDAG() {
-		
-		for (GraphNode<T> node : nodes) {
-			// S'il est possible d'accéder depuis node.value à node.value,
-			// c'est que le graphe a au moins un cycle.
-			if (accessible(node.value).contains(node.value)) {
-				return false;
-			}
+		// Le graphe est acyclique si et seulement si le tri topologique contient tous les noeuds.
+		return GraphAlgorithms.kahn(nodes, node -> node.pointsOut).size() == nodes.size();
+	}
+	
+	@Override
+	public List<T> topologicalOrder() throws IllegalStateException {
+		List<GraphNode<T>> order = GraphAlgorithms.kahn(nodes, node -> node.pointsOut);
+		if (order.size() != nodes.size()) {
+			throw new IllegalStateException("Le graphe contient au moins un cycle.");
 		}
-		
-		return true;
+		return toValues(order);
+	}
+	
+	@Override
+	public Graph<T> transitiveReduction() throws IllegalStateException {
+		return GraphAlgorithms.transitiveReduction(new GraphCSR<>(this));
+	}
+	
+	@Override
+	public Map<T, Integer> partition(int k, ToLongFunction<? super T> weight)
+			throws IllegalArgumentException, IllegalStateException {
+		return new GraphCSR<>(this).partition(k, weight);
+	}
+	
+	@Override
+	public List<T> findCycle() {
+		return toValues(GraphAlgorithms.findCycle(nodes, node -> node.pointsOut));
 	}
 	
 	// ----- Partie système -----
@@ -159,6 +223,29 @@ public class GraphImpl<T> implements Graph<T> {
 		}
 		return null;
 	}
+	
+	/** Comme getSysNode, mais jette une IllegalArgumentException si le noeud n'existe pas.
+	 *  @param value
+	 *  @return
+	 *  @throws IllegalArgumentException  si value n'existe pas dans le graphe.
+	 */
+	protected GraphNode<T> existingSysNode(T value) throws IllegalArgumentException {
+		GraphNode<T> node = getSysNode(value);
+		if (node == null) throw new IllegalArgumentException("Le noeud n'existe pas dans le graphe.");
+		return node;
+	}
+	
+	/** Liste des valeurs associées à une liste de noeuds système.
+	 *  @param sysNodes
+	 *  @return
+	 */
+	protected List<T> toValues(List<GraphNode<T>> sysNodes) {
+		List<T> result = new ArrayList<>(sysNodes.size());
+		for (GraphNode<T> node : sysNodes) {
+			result.add(node.getValue());
+		}
+		return result;
+	}
 }
 
 
@@ -198,10 +285,15 @@ class GraphNode<T> {
 	/** Liste des noeurs pointant vers ce noeud (arcs entrants) */
 	protected List<GraphNode<T>> pointsIn;
 	
+	/** Vues (non modifiables, sans recopie) sur les valeurs de pointsOut et pointsIn */
+	protected final List<T> outView, inView;
+	
 	public GraphNode(T value) {
 		this.value = value;
 		pointsOut = new ArrayList<>();
 		pointsIn = new ArrayList<>();
+		outView = new ValuesView<>(pointsOut);
+		inView = new ValuesView<>(pointsIn);
 	}
 	
 	public T getValue() {
@@ -291,17 +383,24 @@ class GraphNode<T> {
 }
 
 
-
-
-
-
-
-
-
-
-
-
-
-
-
-
+/**
+ *  Vue non modifiable sur les valeurs d'une liste de noeuds.
+ */
+class ValuesView<T> extends AbstractList<T> {
+	
+	protected final List<GraphNode<T>> sysNodes;
+	
+	public ValuesView(List<GraphNode<T>> sysNodes) {
+		this.sysNodes = sysNodes;
+	}
+	
+	@Override
+	public T get(int index) {
+		return sysNodes.get(index).getValue();
+	}
+	
+	@Override
+	public int size() {
+		return sysNodes.size();
+	}
+}
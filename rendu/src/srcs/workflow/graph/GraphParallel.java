@@ -0,0 +1,174 @@
+package srcs.workflow.graph;
+
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+
+
+/**
+ *  Versions parallèles (ForkJoin) des algorithmes de parcours, pour les très grands graphes
+ *  (plusieurs centaines de milliers de tâches) : calcul des degrés entrants, tri topologique
+ *  de Kahn synchronisé par niveaux, et parcours d'accessibilité.
+ *
+ *  Les méthodes de cette classe sont toujours parallèles. GraphCSR et GraphHashImpl ne les
+ *  utilisent qu'à partir de PARALLEL_THRESHOLD noeuds : en dessous, le coût de la répartition
+ *  du travail dépasse le gain, et les versions séquentielles sont utilisées.
+ */
+public final class GraphParallel {
+
+	/** Nombre de noeuds à partir duquel les graphes utilisent les versions parallèles. */
+	public static final int PARALLEL_THRESHOLD = 1 << 15;
+
+	/** Nombre d'éléments en dessous duquel une tranche n'est plus découpée. */
+	protected static final int GRAIN = 1 << 10;
+
+	private GraphParallel() { }
+
+	/** Degrés entrants de tous les noeuds, calculés en parallèle à partir des arcs sortants.
+	 *  @param graph
+	 *  @return inDegrees[id] = nombre d'arcs entrants du noeud id
+	 */
+	public static int[] inDegrees(GraphCSR<?> graph) {
+		return countInDegrees(graph.size(), graph.outOffsets, graph.outTargets);
+	}
+
+	/** Degrés entrants à partir de tableaux d'arcs sortants au format CSR. */
+	static int[] countInDegrees(int n, int[] outOffsets, int[] outTargets) {
+		AtomicIntegerArray counts = new AtomicIntegerArray(n);
+		parallelFor(0, n, node -> {
+			for (int k = outOffsets[node]; k < outOffsets[node + 1]; k++) {
+				counts.incrementAndGet(outTargets[k]);
+			}
+		});
+		int[] result = new int[n];
+		parallelFor(0, n, node -> result[node] = counts.get(node));
+		return result;
+	}
+
+	/** Tri topologique de Kahn, synchronisé par niveaux : tous les noeuds d'un niveau
+	 *  (dont les prédécesseurs sont dans les niveaux précédents) sont traités en parallèle,
+	 *  et les noeuds qu'ils libèrent forment le niveau suivant.
+	 *  Les niveaux sont rangés les uns à la suite des autres dans le tableau renvoyé ;
+	 *  l'ordre au sein d'un niveau n'est pas déterministe.
+	 *  @param graph
+	 *  @return les identifiants triés, ou null si le graphe contient un cycle.
+	 */
+	public static int[] topologicalOrderIds(GraphCSR<?> graph) {
+		int n = graph.size();
+		int[] degrees = inDegrees(graph);
+		AtomicIntegerArray pending = new AtomicIntegerArray(degrees);
+
+		// order sert aussi de file : le niveau courant est order[head, levelEnd[,
+		// le niveau suivant est ajouté à partir de tail.
+		int[] order = new int[n];
+		AtomicInteger tail = new AtomicInteger();
+		parallelFor(0, n, node -> {
+			if (degrees[node] == 0) order[tail.getAndIncrement()] = node;
+		});
+
+		int head = 0;
+		while (head < tail.get()) {
+			int levelEnd = tail.get();
+			parallelFor(head, levelEnd, k -> {
+				int node = order[k];
+				for (int j = graph.outOffsets[node]; j < graph.outOffsets[node + 1]; j++) {
+					int next = graph.outTargets[j];
+					if (pending.decrementAndGet(next) == 0) {
+						order[tail.getAndIncrement()] = next;
+					}
+				}
+			});
+			head = levelEnd;
+		}
+		return (tail.get() == n) ? order : null;
+	}
+
+	/** Noeuds accessibles depuis from (parcours en largeur synchronisé par niveaux,
+	 *  chaque niveau étant exploré en parallèle).
+	 *  @param graph
+	 *  @param from  identifiant du noeud de départ
+	 *  @return les identifiants des noeuds accessibles (from n'y est que s'il est sur un cycle)
+	 */
+	public static BitSet reachableFrom(GraphCSR<?> graph, int from) {
+		int n = graph.size();
+		AtomicLongArray visited = new AtomicLongArray((n + 63) / 64);
+
+		// Chaque noeud est ajouté au plus une fois, plus le noeud de départ
+		int[] queue = new int[n + 1];
+		AtomicInteger tail = new AtomicInteger(1);
+		queue[0] = from;
+
+		int head = 0;
+		while (head < tail.get()) {
+			int levelEnd = tail.get();
+			parallelFor(head, levelEnd, k -> {
+				int node = queue[k];
+				for (int j = graph.outOffsets[node]; j < graph.outOffsets[node + 1]; j++) {
+					int next = graph.outTargets[j];
+					if (setBit(visited, next)) {
+						queue[tail.getAndIncrement()] = next;
+					}
+				}
+			});
+			head = levelEnd;
+		}
+
+		long[] words = new long[visited.length()];
+		for (int i = 0; i < words.length; i++) {
+			words[i] = visited.get(i);
+		}
+		return BitSet.valueOf(words);
+	}
+
+	/** Positionne atomiquement un bit.
+	 *  @return true si le bit n'était pas encore positionné. */
+	protected static boolean setBit(AtomicLongArray bits, int index) {
+		int word = index >>> 6;
+		long mask = 1L << index;
+		long old;
+		do {
+			old = bits.get(word);
+			if ((old & mask) != 0) return false;
+		} while ( ! bits.compareAndSet(word, old, old | mask));
+		return true;
+	}
+
+	/** Exécute body(i) pour tout i de [from, to[, en parallèle sur le pool commun.
+	 *  Au retour, toutes les écritures faites par body sont visibles par l'appelant. */
+	protected static void parallelFor(int from, int to, IntConsumer body) {
+		if (to - from <= GRAIN) {
+			for (int i = from; i < to; i++) body.accept(i);
+			return;
+		}
+		ForkJoinPool.commonPool().invoke(new RangeAction(from, to, body));
+	}
+
+	/** Découpe récursive d'une tranche d'indices. */
+	protected static class RangeAction extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		protected final int from, to;
+		protected final IntConsumer body;
+
+		public RangeAction(int from, int to, IntConsumer body) {
+			this.from = from;
+			this.to = to;
+			this.body = body;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= GRAIN) {
+				for (int i = from; i < to; i++) body.accept(i);
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new RangeAction(from, middle, body), new RangeAction(middle, to, body));
+		}
+	}
+
+}
@@ -0,0 +1,175 @@
+package srcs.workflow.graph;
+
+import java.util.Arrays;
+
+
+/**
+ *  Découpage d'un graphe figé en k parties de tailles équilibrées, en minimisant le poids
+ *  des arcs coupés (arcs dont les deux extrémités sont dans des parties différentes).
+ *
+ *  Le poids d'un arc from -> to est le poids du noeud from : pour un graphe de tâches, c'est
+ *  la taille du résultat de from, qui doit être transmis à to. Un poids inconnu (<= 0) vaut 1,
+ *  ce qui revient alors à minimiser le nombre d'arcs coupés.
+ *
+ *  Heuristique en deux temps, linéaire par passe :
+ *  1) placement glouton dans un ordre topologique "en profondeur" (postfixe inverse d'un
+ *     parcours en profondeur, qui garde les chaînes de tâches d'un seul tenant) : chaque noeud
+ *     rejoint la partie (non pleine) qui contient le plus gros poids de ses prédécesseurs, ou
+ *     à défaut la partie en cours de remplissage (jusqu'à ceil(n/k) noeuds) ;
+ *  2) quelques passes d'affinage : un noeud est déplacé vers une autre partie (non pleine)
+ *     si cela diminue le poids coupé.
+ *  Une partie est pleine lorsqu'elle contient ceil(n/k) * (1 + IMBALANCE) noeuds.
+ */
+public final class GraphPartitioner {
+
+	/** Déséquilibre toléré entre les parties (en proportion de la taille idéale). */
+	public static final double IMBALANCE = 0.1;
+
+	/** Nombre maximal de passes d'affinage. */
+	protected static final int REFINEMENT_PASSES = 4;
+
+	private GraphPartitioner() { }
+
+	/** Découpe le graphe en k parties.
+	 *  @param graph  graphe acyclique
+	 *  @param k  nombre de parties (>= 1)
+	 *  @param weights  weights[id] = poids du noeud id (taille de son résultat), <= 0 si inconnu.
+	 *                  Peut être null : tous les poids valent alors 1.
+	 *  @return part[id] = numéro (entre 0 et k-1) de la partie du noeud id
+	 *  @throws IllegalArgumentException  si k < 1
+	 *  @throws IllegalStateException  si le graphe contient un cycle
+	 */
+	public static int[] partition(GraphCSR<?> graph, int k, long[] weights)
+			throws IllegalArgumentException, IllegalStateException {
+		if (k < 1) throw new IllegalArgumentException("Il faut au moins une partie.");
+		int n = graph.size();
+		int[] part = new int[n];
+		if ( (k == 1) || (n == 0) ) return part;
+
+		if (graph.topologicalOrderIds() == null) {
+			throw new IllegalStateException("Le graphe contient au moins un cycle.");
+		}
+		int[] order = depthFirstOrder(graph);
+
+		int target = (n + k - 1) / k;
+		int capacity = (int) Math.ceil(target * (1 + IMBALANCE));
+		int[] loads = new int[k];
+
+		// Poids des arcs reliant le noeud courant à chaque partie (réutilisé d'un noeud à l'autre)
+		long[] affinity = new long[k];
+
+		// 1) Placement glouton dans l'ordre topologique en profondeur
+		Arrays.fill(part, -1);
+		int filling = 0;
+		for (int node : order) {
+			Arrays.fill(affinity, 0);
+			for (int j = 0, d = graph.inDegree(node); j < d; j++) {
+				int previous = graph.inNeighbor(node, j);
+				affinity[part[previous]] += weight(weights, previous);
+			}
+			// Partie en cours de remplissage : la première qui n'a pas atteint la taille idéale
+			// (à défaut, la moins remplie)
+			while ( (filling < k - 1) && (loads[filling] >= target) ) filling++;
+			int best = filling;
+			if (loads[best] >= capacity) {
+				for (int p = 0; p < k; p++) {
+					if (loads[p] < loads[best]) best = p;
+				}
+			}
+			for (int p = 0; p < k; p++) {
+				if ( (loads[p] < capacity) && (affinity[p] > affinity[best]) ) {
+					best = p;
+				}
+			}
+			part[node] = best;
+			loads[best]++;
+		}
+
+		// 2) Affinage : déplacements qui diminuent le poids coupé
+		for (int pass = 0; pass < REFINEMENT_PASSES; pass++) {
+			boolean moved = false;
+			for (int node = 0; node < n; node++) {
+				Arrays.fill(affinity, 0);
+				long own = weight(weights, node);
+				for (int j = 0, d = graph.inDegree(node); j < d; j++) {
+					int previous = graph.inNeighbor(node, j);
+					affinity[part[previous]] += weight(weights, previous);
+				}
+				for (int j = 0, d = graph.outDegree(node); j < d; j++) {
+					affinity[part[graph.outNeighbor(node, j)]] += own;
+				}
+				int current = part[node], best = current;
+				for (int p = 0; p < k; p++) {
+					if ( (p != current) && (loads[p] < capacity) && (affinity[p] > affinity[best]) ) {
+						best = p;
+					}
+				}
+				if (best != current) {
+					loads[current]--;
+					loads[best]++;
+					part[node] = best;
+					moved = true;
+				}
+			}
+			if ( ! moved) break;
+		}
+		return part;
+	}
+
+	/** Ordre topologique postfixe inverse d'un parcours en profondeur (itératif) :
+	 *  un noeud est suivi au plus près par ses successeurs.
+	 *  Le graphe doit être acyclique. */
+	protected static int[] depthFirstOrder(GraphCSR<?> graph) {
+		int n = graph.size();
+		int[] order = new int[n];
+		int position = n;
+		boolean[] visited = new boolean[n];
+
+		// Pile des noeuds en cours de visite, et pour chacun l'indice du prochain successeur à voir
+		int[] stack = new int[n];
+		int[] nextEdge = new int[n];
+		// Racines prises à rebours : la première racine se retrouve en tête de l'ordre
+		for (int root = n - 1; root >= 0; root--) {
+			if (visited[root] || (graph.inDegree(root) != 0)) continue;
+			int top = 0;
+			stack[top] = root;
+			nextEdge[top++] = 0;
+			visited[root] = true;
+			while (top > 0) {
+				int node = stack[top - 1];
+				if (nextEdge[top - 1] < graph.outDegree(node)) {
+					int next = graph.outNeighbor(node, nextEdge[top - 1]++);
+					if ( ! visited[next]) {
+						visited[next] = true;
+						stack[top] = next;
+						nextEdge[top++] = 0;
+					}
+				} else {
+					order[--position] = node;
+					top--;
+				}
+			}
+		}
+		return order;
+	}
+
+	/** Poids total des arcs coupés par un découpage (même définition des poids que partition). */
+	public static long cutWeight(GraphCSR<?> graph, int[] part, long[] weights) {
+		long cut = 0;
+		for (int node = 0; node < graph.size(); node++) {
+			for (int j = 0, d = graph.outDegree(node); j < d; j++) {
+				if (part[graph.outNeighbor(node, j)] != part[node]) {
+					cut += weight(weights, node);
+				}
+			}
+		}
+		return cut;
+	}
+
+	/** Poids d'un noeud, 1 s'il est inconnu. */
+	protected static long weight(long[] weights, int node) {
+		if ( (weights == null) || (weights[node] <= 0) ) return 1;
+		return weights[node];
+	}
+
+}
@@ -0,0 +1,103 @@
+package srcs.workflow.graph;
+
+import java.util.BitSet;
+import java.util.Set;
+
+
+/**
+ *  Index d'accessibilité (fermeture transitive) d'un graphe figé.
+ *  Pour chaque noeud, l'ensemble des noeuds accessibles est stocké dans un BitSet indexé par
+ *  les identifiants du GraphCSR : canReach est en O(1) et accessible renvoie une vue sur le
+ *  BitSet, sans recopie.
+ *
+ *  Si le graphe est acyclique, la fermeture est calculée en un seul passage dans l'ordre
+ *  topologique inverse : accessibles(v) = union, pour chaque successeur w, de {w} et accessibles(w).
+ *  Sinon (cas rare pour un graphe de tâches), chaque ligne est calculée par un parcours depuis le noeud.
+ *
+ *  La mémoire occupée est de l'ordre de size()² bits : c'est pour cela que les graphes ne
+ *  construisent l'index que sur demande (reachability), quand les requêtes sont nombreuses.
+ */
+public class ReachabilityIndex<T> {
+
+	/** Taille (en nombre de noeuds) au delà de laquelle les algorithmes (réduction transitive)
+	 *  ne construisent pas d'index : 16384 noeuds représentent déjà 32 Mo de BitSet. */
+	public static final int MAX_INDEXED_SIZE = 1 << 14;
+
+	/** Graphe indexé */
+	protected final GraphCSR<T> graph;
+
+	/** reach[id] : noeuds accessibles depuis le noeud id */
+	protected final BitSet[] reach;
+
+	public ReachabilityIndex(GraphCSR<T> graph) {
+		this.graph = graph;
+		int n = graph.size();
+		reach = new BitSet[n];
+
+		int[] order = graph.topologicalOrderIds();
+		if (order != null) {
+			// Ordre topologique inverse : les successeurs sont traités avant leurs prédécesseurs
+			for (int i = n - 1; i >= 0; i--) {
+				int node = order[i];
+				BitSet row = new BitSet(n);
+				for (int k = 0, d = graph.outDegree(node); k < d; k++) {
+					int next = graph.outNeighbor(node, k);
+					row.set(next);
+					row.or(reach[next]);
+				}
+				reach[node] = row;
+			}
+		} else {
+			for (int node = 0; node < n; node++) {
+				reach[node] = traverse(node);
+			}
+		}
+	}
+
+	/** Parcours itératif depuis un noeud (graphes cycliques uniquement). */
+	protected BitSet traverse(int from) {
+		BitSet row = new BitSet(graph.size());
+		int[] stack = new int[graph.size() + 1];
+		int top = 0;
+		stack[top++] = from;
+		while (top > 0) {
+			int node = stack[--top];
+			for (int k = 0, d = graph.outDegree(node); k < d; k++) {
+				int next = graph.outNeighbor(node, k);
+				if ( ! row.get(next)) {
+					row.set(next);
+					stack[top++] = next;
+				}
+			}
+		}
+		return row;
+	}
+
+	/** Graphe indexé. */
+	public GraphCSR<T> getGraph() {
+		return graph;
+	}
+
+	/** Teste s'il existe un chemin (d'au moins un arc) du noeud from au noeud to.
+	 *  @param from  identifiant dans getGraph()
+	 *  @param to    identifiant dans getGraph()
+	 */
+	public boolean canReach(int from, int to) {
+		return reach[from].get(to);
+	}
+
+	/** Teste s'il existe un chemin (d'au moins un arc) de from à to.
+	 *  @throws IllegalArgumentException  si from ou to n'existe pas dans le graphe.
+	 */
+	public boolean canReach(T from, T to) throws IllegalArgumentException {
+		return canReach(graph.id(from), graph.id(to));
+	}
+
+	/** Noeuds accessibles depuis from : vue non modifiable sur l'index (aucune recopie).
+	 *  @throws IllegalArgumentException  si from n'existe pas dans le graphe.
+	 */
+	public Set<T> accessible(T from) throws IllegalArgumentException {
+		return new BitSetView<>(graph, reach[graph.id(from)]);
+	}
+
+}
@@ -0,0 +1,251 @@
+package srcs.workflow.job;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Appel direct des tâches d'une classe de job, sans tableau d'arguments ni MethodHandle
+ * générique : pour les types de job les plus sollicités.
+ *
+ * À la construction, chaque méthode @Task d'au plus MAX_DIRECT_ARITY paramètres est liée par
+ * LambdaMetafactory à une interface fonctionnelle d'arité fixe (Call0 ... Call4). La JVM génère
+ * pour cela une classe cachée (hidden class) par tâche, membre du nid de la classe du job, qui
+ * appelle la méthode directement (invokevirtual) en convertissant et déballant elle-même les
+ * arguments (Integer -> int...). dispatch(task, ...) choisit l'interface selon l'arité de la
+ * tâche et lit les arguments directement dans les tableaux de résultats et de contexte, d'après
+ * le plan de liaison de JobStructure.
+ *
+ * Les tâches de plus de MAX_DIRECT_ARITY paramètres, ou qui n'ont pas pu être liées (classe
+ * d'un module qui n'est pas ouvert...), passent par TaskInvoker.
+ *
+ * Si la classe du job a une table générée à la compilation (voir TaskTable), aucune classe
+ * n'est générée à l'exécution : toutes les tâches sont appelées via la table.
+ *
+ * Comme pour TaskInvoker, des arguments qui ne conviennent pas aux paramètres (nombre, type, null
+ * pour un paramètre primitif) sont signalés par une IllegalArgumentException, et seule une
+ * exception jetée par la tâche est enveloppée dans une InvocationTargetException : les
+ * arguments sont vérifiés avant l'appel, les conversions des classes générées et de la table
+ * ne pouvant pas être distinguées du corps de la tâche.
+ */
+public final class JobDispatcher {
+
+	/** Nombre maximal de paramètres d'une tâche appelée directement */
+	public static final int MAX_DIRECT_ARITY = 4;
+
+	/** Tâche sans paramètre */
+	@FunctionalInterface
+	public interface Call0 {
+		Object call(Job job) throws Throwable;
+	}
+
+	/** Tâche à un paramètre */
+	@FunctionalInterface
+	public interface Call1 {
+		Object call(Job job, Object a) throws Throwable;
+	}
+
+	/** Tâche à deux paramètres */
+	@FunctionalInterface
+	public interface Call2 {
+		Object call(Job job, Object a, Object b) throws Throwable;
+	}
+
+	/** Tâche à trois paramètres */
+	@FunctionalInterface
+	public interface Call3 {
+		Object call(Job job, Object a, Object b, Object c) throws Throwable;
+	}
+
+	/** Tâche à quatre paramètres */
+	@FunctionalInterface
+	public interface Call4 {
+		Object call(Job job, Object a, Object b, Object c, Object d) throws Throwable;
+	}
+
+	private static final Class<?>[] CALL_INTERFACES = { Call0.class, Call1.class, Call2.class, Call3.class, Call4.class };
+
+	/** Plan de liaison de chaque tâche (voir JobStructure.bindings) */
+	protected final int[][] bindings;
+
+	/** calls[task] : instance de Call<arité>, ou null si la tâche passe par la table ou par TaskInvoker */
+	protected final Object[] calls;
+
+	/** Méthode de chaque tâche */
+	protected final Method[] methods;
+
+	/** parameterTypes[task] : types des paramètres de la méthode de la tâche */
+	protected final Class<?>[][] parameterTypes;
+
+	/** boxedTypes[task] : comme parameterTypes, les types primitifs étant emballés (int -> Integer) */
+	protected final Class<?>[][] boxedTypes;
+
+	/** Structure du job, pour le repli sur TaskInvoker (voir JobStructure.getInvoker) */
+	protected final JobStructure structure;
+
+	/** Table générée à la compilation (voir TaskTable), ou null */
+	protected final TaskTable table;
+
+	JobDispatcher(JobStructure structure, Class<?> jobClass, Method[] methods, int[][] bindings, TaskTable table) {
+		this.structure = structure;
+		this.bindings = bindings;
+		this.methods = methods;
+		this.table = table;
+		calls = new Object[methods.length];
+		parameterTypes = new Class<?>[methods.length][];
+		boxedTypes = new Class<?>[methods.length][];
+		for (int task = 0; task < methods.length; task++) {
+			parameterTypes[task] = methods[task].getParameterTypes();
+			boxedTypes[task] = MethodType.methodType(void.class, parameterTypes[task]).wrap().parameterArray();
+		}
+
+		// Avec une table, les tâches sont appelées par son dispatch : aucune classe n'est générée
+		if (table != null) return;
+
+		MethodHandles.Lookup lookup;
+		try {
+			// Accès complet à la classe du job : les classes générées font partie de son nid
+			lookup = MethodHandles.privateLookupIn(jobClass, MethodHandles.lookup());
+		} catch (IllegalAccessException | RuntimeException e) {
+			return; // toutes les tâches passeront par TaskInvoker
+		}
+		for (int task = 0; task < methods.length; task++) {
+			if (methods[task].getParameterCount() <= MAX_DIRECT_ARITY) {
+				calls[task] = bind(lookup, jobClass, methods[task]);
+			}
+		}
+	}
+
+	/** Appel direct d'une méthode via LambdaMetafactory, ou null si la méthode n'est pas accessible ou pas convertible. */
+	private static Object bind(MethodHandles.Lookup lookup, Class<?> jobClass, Method method) {
+		int arity = method.getParameterCount();
+		Class<?> callInterface = CALL_INTERFACES[arity];
+		try {
+			MethodHandle target = lookup.unreflect(method);
+
+			// Forme effacée de l'interface : (Job, Object...)Object
+			MethodType erased = MethodType.genericMethodType(arity).insertParameterTypes(0, Job.class);
+
+			// Forme réelle : (classe du job, types des paramètres)type de retour, primitifs emballés
+			MethodType instantiated = target.type().wrap().changeParameterType(0, jobClass);
+
+			CallSite site = LambdaMetafactory.metafactory(lookup, "call", MethodType.methodType(callInterface),
+					erased, target, instantiated);
+			return site.getTarget().invoke();
+		} catch (LambdaConversionException | IllegalAccessException e) {
+			return null; // la tâche passera par TaskInvoker
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable t) {
+			// La fabrique d'une lambda sans capture ne jette pas d'exception vérifiée
+			throw new IllegalStateException("Fabrique de l'appel de " + method + " en échec.", t);
+		}
+	}
+
+	/** Vrai si la tâche est appelée directement (classe générée par LambdaMetafactory, ou TaskTable). */
+	public boolean isDirect(int task) {
+		return (calls[task] != null) || (table != null);
+	}
+
+	/**
+	 * Exécute une tâche, ses arguments étant lus d'après son plan de liaison.
+	 * @param task  identifiant de la tâche (dans JobStructure.getTaskGraph())
+	 * @param job
+	 * @param results  results[id] = résultat de la tâche id (ceux des dépendances doivent être présents)
+	 * @param contextValues  valeurs renvoyées par JobStructure.contextValues(job)
+	 * @return le résultat de la tâche
+	 * @throws InvocationTargetException  si la tâche a jeté une exception.
+	 * @throws IllegalArgumentException  si un résultat ou une valeur du contexte ne convient pas
+	 *         au paramètre qui le reçoit.
+	 */
+	public Object dispatch(int task, Job job, Object[] results, Object[] contextValues)
+			throws InvocationTargetException, IllegalArgumentException {
+		Object call = calls[task];
+		if (call == null) {
+			return dispatchWithArguments(task, job, JobStructure.bind(bindings[task], results, contextValues));
+		}
+		// Arguments lus et vérifiés avant l'appel : seule la tâche peut jeter une exception ensuite
+		int[] b = bindings[task];
+		int n = b.length;
+		Object a0 = (n > 0) ? arg(task, 0, b[0], results, contextValues) : null;
+		Object a1 = (n > 1) ? arg(task, 1, b[1], results, contextValues) : null;
+		Object a2 = (n > 2) ? arg(task, 2, b[2], results, contextValues) : null;
+		Object a3 = (n > 3) ? arg(task, 3, b[3], results, contextValues) : null;
+		try {
+			switch (n) {
+			case 0: return ((Call0) call).call(job);
+			case 1: return ((Call1) call).call(job, a0);
+			case 2: return ((Call2) call).call(job, a0, a1);
+			case 3: return ((Call3) call).call(job, a0, a1, a2);
+			default: return ((Call4) call).call(job, a0, a1, a2, a3);
+			}
+		} catch (Throwable t) {
+			throw new InvocationTargetException(t);
+		}
+	}
+
+	/**
+	 * Exécute une tâche avec des arguments déjà prêts (TaskTracker, qui les reçoit du Master).
+	 * @param task  identifiant de la tâche (dans JobStructure.getTaskGraph())
+	 * @param job
+	 * @param args  autant que de paramètres
+	 * @throws InvocationTargetException  si la tâche a jeté une exception.
+	 * @throws IllegalArgumentException  si les arguments ne conviennent pas aux paramètres (nombre,
+	 *         types, null pour un paramètre primitif).
+	 */
+	public Object dispatchWithArguments(int task, Job job, Object[] args)
+			throws InvocationTargetException, IllegalArgumentException {
+		Object call = calls[task];
+		if ( (call == null) && (table == null) ) return structure.getInvoker(task).invoke(job, args);
+		if (args.length != parameterTypes[task].length) {
+			throw new IllegalArgumentException("Nombre d'arguments incompatible avec la méthode " + methods[task]
+					+ " : " + args.length + ".");
+		}
+		for (int k = 0; k < args.length; k++) {
+			checkArgument(task, k, args[k]);
+		}
+		if (call == null) {
+			try {
+				// Numéro dans la table == identifiant de la tâche (voir JobStructure)
+				return table.dispatch(task, job, args);
+			} catch (Throwable t) {
+				throw new InvocationTargetException(t);
+			}
+		}
+		try {
+			switch (args.length) {
+			case 0: return ((Call0) call).call(job);
+			case 1: return ((Call1) call).call(job, args[0]);
+			case 2: return ((Call2) call).call(job, args[0], args[1]);
+			case 3: return ((Call3) call).call(job, args[0], args[1], args[2]);
+			default: return ((Call4) call).call(job, args[0], args[1], args[2], args[3]);
+			}
+		} catch (Throwable t) {
+			throw new InvocationTargetException(t);
+		}
+	}
+
+	/** Argument k de la tâche, lu dans les résultats ou le contexte d'après source, et vérifié. */
+	private Object arg(int task, int k, int source, Object[] results, Object[] contextValues) {
+		Object value = (source >= 0) ? results[source] : contextValues[-source - 1];
+		checkArgument(task, k, value);
+		return value;
+	}
+
+	/**
+	 * Vérifie que value peut être passé au paramètre k de la tâche, comme le font les conversions
+	 * des classes générées et de la table (sans élargissement : un Short ne va pas dans un int).
+	 */
+	private void checkArgument(int task, int k, Object value) throws IllegalArgumentException {
+		if ( (value == null) ? parameterTypes[task][k].isPrimitive() : ! boxedTypes[task][k].isInstance(value) ) {
+			throw new IllegalArgumentException("Argument " + k + " incompatible avec la méthode " + methods[task] + " : "
+					+ ( (value == null) ? "null" : value.getClass().getName() ) + ".");
+		}
+	}
+
+}
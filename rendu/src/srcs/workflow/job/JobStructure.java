@@ -0,0 +1,569 @@
+package srcs.workflow.job;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import srcs.workflow.graph.Graph;
+import srcs.workflow.graph.GraphCSR;
+import srcs.workflow.graph.GraphHashImpl;
+
+/**
+ * Partie "structurelle" de la validation d'un job : tout ce qui ne dépend que de la classe
+ * du job, et pas de l'instance (tâches, méthodes, arcs @LinkFrom, graphe, compatibilité
+ * des types entre tâches).
+ *
+ * Elle est calculée une seule fois par classe (ClassValue) : un même type de job soumis des
+ * milliers de fois (JobTrackerMaster.executeJob...) ne refait ni getDeclaredMethods, ni le
+ * parcours des annotations, ni la construction du graphe. Pour chaque job, il ne reste
+ * que les vérifications du contexte (voir JobValidator).
+ *
+ * Si la classe a été compilée avec JobProcessor, la structure est construite à partir de la
+ * table générée (voir TaskTable), sans les vérifications déjà faites à la compilation. La table
+ * est d'abord comparée aux annotations de la classe : une table périmée (compilation
+ * incrémentale après une modification d'un @Task ou d'un @LinkFrom) est ignorée.
+ *
+ * Une instance est immuable, et donc partagée sans risque entre les threads.
+ */
+public final class JobStructure {
+
+	/**
+	 * Cache par classe de job. La structure référence la classe (ses Method, les classes cachées
+	 * du dispatcher) : son chargeur de classes est donc retenu, et une classe de job mise en cache
+	 * n'est jamais déchargée. Sans conséquence tant que les jobs sont chargés par le chargeur de
+	 * l'application ; un chargeur de classes jetable (plugins...) ne serait pas libéré.
+	 */
+	private static final ClassValue<JobStructure> CACHE = new ClassValue<JobStructure>() {
+		@Override
+		protected JobStructure computeValue(Class<?> type) {
+			return new JobStructure(type);
+		}
+	};
+
+	/**
+	 * Paramètre annoté @Context : vérifié pour chaque job, puisque le contexte
+	 * dépend de l'instance.
+	 */
+	public static final class ContextRequirement {
+		/** Clé dans le contexte du job */
+		public final String ref;
+		/** Type attendu par le paramètre */
+		public final Class<?> type;
+		/** Paramètre et méthode, pour le message d'erreur */
+		public final String paramName, methodName;
+
+		ContextRequirement(String ref, Class<?> type, String paramName, String methodName) {
+			this.ref = ref;
+			this.type = type;
+			this.paramName = paramName;
+			this.methodName = methodName;
+		}
+	}
+
+	protected final Class<?> jobClass;
+
+	/** Association identifiant de tâche -> méthode (non modifiable) */
+	protected final Map<String, Method> taskMethods;
+
+	/** Graphe des tâches, figé */
+	protected final GraphCSR<String> taskGraph;
+
+	/**
+	 * Réduction transitive du graphe des tâches (c'est celle qu'utilisent les JobExecutor).
+	 * Calculée au premier appel de getReducedTaskGraph() : elle n'est pas linéaire, et la
+	 * validation seule (JobValidator) n'en a pas besoin.
+	 */
+	private volatile GraphCSR<String> reducedTaskGraph;
+
+	/** Paramètres @Context de toutes les tâches */
+	protected final List<ContextRequirement> contextRequirements;
+
+	/**
+	 * Plan de liaison des arguments, par identifiant de tâche (dans getTaskGraph()) :
+	 * bindings[task][i] indique d'où vient le i-ème argument de la tâche,
+	 * - s'il est >= 0 : c'est le résultat de la tâche d'identifiant bindings[task][i] ;
+	 * - sinon : c'est l'objet du contexte de clé contextKeys[-bindings[task][i] - 1].
+	 * Construire les arguments n'est ainsi qu'une boucle sur des indices, sans réflexion.
+	 */
+	protected final int[][] bindings;
+
+	/** Méthode de chaque tâche, par identifiant */
+	protected final Method[] methodsById;
+
+	/**
+	 * Appel de chaque tâche, par identifiant, résolu au premier appel de getInvoker(task).
+	 * TaskInvoker n'a que des champs final : un thread qui lit ce tableau sans lock y trouve null
+	 * (et résout l'invoker à nouveau, depuis le cache de TaskInvoker) ou un invoker complet.
+	 */
+	private final TaskInvoker[] invokersById;
+
+	/** Ordre topologique des tâches (identifiants de getTaskGraph()), calculé au premier appel de getTopologicalOrder() */
+	private volatile int[] topologicalOrder;
+
+	/** Appel direct des tâches (voir JobDispatcher), créé au premier appel de getDispatcher() :
+	 *  il génère une classe par tâche, ce dont la validation seule n'a pas besoin */
+	private volatile JobDispatcher dispatcher;
+
+	/** Table générée à la compilation (voir TaskTable), ou null */
+	protected final TaskTable table;
+
+	/** Identifiant de chaque tâche, par signature de sa méthode ("nom(type1,type2)") */
+	protected final Map<String, Integer> idsBySignature;
+
+	/** Clés du contexte utilisées par au moins une tâche (sans doublon) */
+	protected final String[] contextKeys;
+
+	/**
+	 * Erreurs de structure, si la classe n'est pas un job conforme (les autres champs sont alors null),
+	 * toutes relevées en une passe. Liste vide si la classe est conforme.
+	 */
+	protected final List<String> violations;
+
+	/**
+	 * Structure (mise en cache) d'une classe de job.
+	 * @param jobClass
+	 * @return
+	 * @throws ValidationException  si la classe n'est pas un job conforme (une nouvelle exception,
+	 *         avec le message de la première erreur, est jetée à chaque appel).
+	 */
+	public static JobStructure of(Class<? extends Job> jobClass) throws ValidationException {
+		return of(jobClass, false);
+	}
+
+	/**
+	 * Structure (mise en cache) d'une classe de job.
+	 * @param jobClass
+	 * @param collectAll  si vrai, l'exception rapporte toutes les erreurs de la classe
+	 *        (voir ValidationException.getViolations()), sinon seulement la première.
+	 * @return
+	 * @throws ValidationException  si la classe n'est pas un job conforme.
+	 */
+	public static JobStructure of(Class<? extends Job> jobClass, boolean collectAll) throws ValidationException {
+		JobStructure structure = CACHE.get(jobClass);
+		if ( ! structure.violations.isEmpty()) {
+			throw collectAll ? new ValidationException(structure.violations)
+					: new ValidationException(structure.violations.get(0));
+		}
+		return structure;
+	}
+
+	private JobStructure(Class<?> jobClass) {
+		this.jobClass = jobClass;
+		// Dans l'ordre de getDeclaredMethods : les violations sont relevées dans cet ordre, quelle que soit la JVM
+		Map<String, Method> methods = new LinkedHashMap<>();
+		Graph<String> graph = new GraphHashImpl<>();
+		List<ContextRequirement> requirements = new ArrayList<>();
+
+		// Source de chaque paramètre de chaque tâche : valeur du @LinkFrom ou du @Context (l'autre est null)
+		Map<String, String[]> links = new HashMap<>();
+		Map<String, String[]> contexts = new HashMap<>();
+
+		// Table générée à la compilation (voir TaskTable), si elle existe et correspond à la classe
+		TaskTable loaded = loadTable(jobClass);
+		Method[] tableMethods = (loaded == null) ? null : tableMethods(loaded);
+		table = (tableMethods == null) ? null : loaded;
+
+		List<String> errors = new ArrayList<>();
+		if (table != null) {
+			try {
+				buildFromTable(table, tableMethods, methods, graph, requirements, links, contexts);
+			} catch (ValidationException e) {
+				errors.add(e.getMessage());
+			}
+		} else {
+			build(methods, graph, requirements, links, contexts, errors);
+		}
+		violations = Collections.unmodifiableList(errors);
+		if (errors.isEmpty()) {
+			taskMethods = Collections.unmodifiableMap(methods);
+			taskGraph = new GraphCSR<>(graph);
+			contextRequirements = Collections.unmodifiableList(requirements);
+
+			// Plans de liaison
+			int n = taskGraph.size();
+			bindings = new int[n][];
+			methodsById = new Method[n];
+			invokersById = new TaskInvoker[n];
+			idsBySignature = new HashMap<>();
+			// Numéro de chaque clé du contexte, dans l'ordre de première utilisation
+			Map<String, Integer> keys = new LinkedHashMap<>();
+			for (int task = 0; task < n; task++) {
+				String taskID = taskGraph.value(task);
+				Method method = methods.get(taskID);
+				methodsById[task] = method;
+				idsBySignature.put(TaskInvoker.signature(method.getName(), method.getParameterTypes()), task);
+				String[] taskLinks = links.get(taskID), taskContexts = contexts.get(taskID);
+				bindings[task] = new int[taskLinks.length];
+				for (int i = 0; i < taskLinks.length; i++) {
+					if (taskLinks[i] != null) {
+						bindings[task][i] = taskGraph.id(taskLinks[i]);
+					} else {
+						int k = keys.computeIfAbsent(taskContexts[i], key -> keys.size());
+						bindings[task][i] = -k - 1;
+					}
+				}
+			}
+			contextKeys = keys.keySet().toArray(new String[0]);
+		} else {
+			taskMethods = null;
+			taskGraph = null;
+			contextRequirements = null;
+			bindings = null;
+			methodsById = null;
+			invokersById = null;
+			idsBySignature = null;
+			contextKeys = null;
+		}
+	}
+
+	/**
+	 * Table générée à la compilation pour une classe de job (voir TaskTable).
+	 * @return la table, ou null si la classe n'a pas été compilée avec JobProcessor.
+	 */
+	protected static TaskTable loadTable(Class<?> jobClass) {
+		String name = TaskTable.tableName(jobClass.getName());
+		try {
+			Class<?> tableClass = Class.forName(name, true, jobClass.getClassLoader());
+			if ( ! TaskTable.class.isAssignableFrom(tableClass)) return null;
+			return (TaskTable) tableClass.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Méthodes des tâches d'une table, si elle correspond aux annotations de la classe : mêmes
+	 * méthodes @Task (nombre, identifiants, signatures) et mêmes @LinkFrom et @Context sur chaque
+	 * paramètre. Une table périmée par une compilation incrémentale est ainsi écartée au lieu
+	 * d'exécuter un autre graphe que celui des annotations.
+	 * @return methods[numéro dans la table], ou null si la table ne correspond pas à la classe
+	 */
+	private Method[] tableMethods(TaskTable table) {
+		String[] ids = table.taskIds();
+		String[] names = table.methodNames();
+		Class<?>[][] types = table.parameterTypes();
+		String[][] tableLinks = table.linkFrom();
+		String[][] tableContexts = table.context();
+
+		int taskCount = 0;
+		for (Method method : jobClass.getDeclaredMethods()) {
+			if (method.isAnnotationPresent(Task.class)) taskCount++;
+		}
+		if (taskCount != ids.length) return null;
+
+		Method[] tableMethods = new Method[ids.length];
+		for (int task = 0; task < ids.length; task++) {
+			Method method;
+			try {
+				method = jobClass.getDeclaredMethod(names[task], types[task]);
+			} catch (NoSuchMethodException e) {
+				return null;
+			}
+			Task annotation = method.getAnnotation(Task.class);
+			if ( (annotation == null) || ! annotation.value().equals(ids[task]) ) return null;
+			Annotation[][] paramAnnotations = method.getParameterAnnotations();
+			for (int p = 0; p < paramAnnotations.length; p++) {
+				String from = null, context = null;
+				for (Annotation a : paramAnnotations[p]) {
+					if (a instanceof LinkFrom) from = ((LinkFrom) a).value();
+					else if (a instanceof Context) context = ((Context) a).value();
+				}
+				if ( ! Objects.equals(from, tableLinks[task][p]) || ! Objects.equals(context, tableContexts[task][p]) ) {
+					return null;
+				}
+			}
+			tableMethods[task] = method;
+		}
+		return tableMethods;
+	}
+
+	/**
+	 * Structure à partir de la table générée à la compilation : les vérifications de
+	 * checkJobValidity() qui ne dépendent pas du contexte ont déjà été faites par JobProcessor.
+	 * L'absence de cycle est tout de même revérifiée (c'est peu coûteux).
+	 * @param tableMethods  méthodes des tâches de la table (voir tableMethods)
+	 */
+	private void buildFromTable(TaskTable table, Method[] tableMethods, Map<String, Method> methods, Graph<String> graph,
+			List<ContextRequirement> requirements, Map<String, String[]> links, Map<String, String[]> contexts)
+			throws ValidationException {
+		String[] ids = table.taskIds();
+		String[] names = table.methodNames();
+		Class<?>[][] types = table.parameterTypes();
+		String[][] tableLinks = table.linkFrom();
+		String[][] tableContexts = table.context();
+
+		// Les noeuds sont ajoutés dans l'ordre de la table : identifiant dans le graphe == numéro dans la table
+		for (int task = 0; task < ids.length; task++) {
+			methods.put(ids[task], tableMethods[task]);
+			graph.addNode(ids[task]);
+			links.put(ids[task], tableLinks[task]);
+			contexts.put(ids[task], tableContexts[task]);
+		}
+		for (int task = 0; task < ids.length; task++) {
+			for (int i = 0; i < tableLinks[task].length; i++) {
+				if (tableLinks[task][i] != null) {
+					if ( ! graph.existEdge(tableLinks[task][i], ids[task])) graph.addEdge(tableLinks[task][i], ids[task]);
+				} else {
+					requirements.add(new ContextRequirement(tableContexts[task][i], types[task][i],
+							"#" + i, names[task]));
+				}
+			}
+		}
+		List<String> cycle = graph.findCycle();
+		if ( ! cycle.isEmpty()) {
+			throw new ValidationException("Le graphe contient au moins un cycle : " + String.join(" -> ", cycle));
+		}
+	}
+
+	/**
+	 * Vérifie les conditions de JobValidator.checkJobValidity() qui ne dépendent pas du contexte,
+	 * et relève les paramètres @Context.
+	 * Toutes les violations sont relevées dans violations (pas d'arrêt à la première) : c'est la
+	 * ValidationException finale qui décide d'en rapporter une seule ou toutes (voir of(Class, boolean)).
+	 * Le coût est linéaire en nombre de tâches + nombre de paramètres : chaque accès est un accès haché.
+	 */
+	private void build(Map<String, Method> methods, Graph<String> graph, List<ContextRequirement> requirements,
+			Map<String, String[]> links, Map<String, String[]> contexts, List<String> violations) {
+
+		// Ajout de toutes les méthodes annotées @Task à methods.
+		for (Method method : jobClass.getDeclaredMethods()) {
+			// Une méthode ne peut être annotée @Task qu'une seule fois (annotation non répétable).
+			Task task = method.getAnnotation(Task.class);
+			if (task == null) continue;
+
+			// Deux méthodes annotées Task ne doivent pas avoir le même identifiant de tâche
+			if (methods.containsKey(task.value())) {
+				violations.add("Les méthodes annotées via @Task doivent avoir un identifiant unique (" + task.value() + ").");
+				continue;
+			}
+			methods.put(task.value(), method);
+			graph.addNode(task.value());
+		}
+
+		if (methods.isEmpty()) {
+			violations.add("La classe n'a aucune méthode annotée @Task.");
+			return;
+		}
+
+		// Pour chaque couple (nom annotation @Task), (méthode associée)
+		for (Map.Entry<String, Method> methodEntry : methods.entrySet()) {
+			Method method = methodEntry.getValue();
+			String taskName = methodEntry.getKey(); // /!\ taskName n'est en général pas égal au nom de la méthode !
+
+			// Les méthodes annotées Task doivent être des méthodes d’instance
+			if ((method.getModifiers() & Modifier.ABSTRACT) != 0) {
+				violations.add("Les méthodes annotées via @Task ne peuvent pas être abstraites."
+							+ " (Elles doivent être des méthodes concrètes d'instance)");
+			}
+			if ((method.getModifiers() & Modifier.STATIC) != 0) {
+				violations.add("Les méthodes annotées via @Task ne peuvent pas être statiques."
+						+ " (Elles doivent être des méthodes concrètes d'instance)");
+			}
+
+			// Les méthodes annotées Task ne doivent pas renvoyer void
+			if (method.getReturnType().equals(void.class)) {
+				violations.add("Les méthodes annotées via @Task ne peuvent renvoyer void."
+						+ " (Elles doivent renvoyer un résultat réel.)");
+			}
+
+			// Tout paramètre d’une méthode annotée Task doit être soit annoté par Context ou par LinkFrom
+			Parameter[] params = method.getParameters();
+			// Une seule lecture des annotations de tous les paramètres (Parameter.getAnnotation les relit toutes à chaque appel)
+			Annotation[][] paramAnnotations = method.getParameterAnnotations();
+			String[] taskLinks = new String[params.length], taskContexts = new String[params.length];
+			links.put(taskName, taskLinks);
+			contexts.put(taskName, taskContexts);
+			for (int p = 0; p < params.length; p++) {
+				Parameter param = params[p];
+				LinkFrom from = null;
+				Context context = null;
+				for (Annotation a : paramAnnotations[p]) {
+					if (a instanceof LinkFrom) from = (LinkFrom) a;
+					else if (a instanceof Context) context = (Context) a;
+				}
+
+				if ( (from != null) && (context != null) ) {
+					// Le paramètre a été annoté @Context ET @LinkFrom, c'est impossible.
+					violations.add("Tout paramètre d'une méthode annotée via @Task"
+							+ "doit être annoté @Context OU (exclusif) @LinkFrom.");
+					continue;
+				}
+				if ( (from == null) && (context == null) ) {
+					violations.add("Un paramètre d'une méthode annotée via @Task"
+							+ "doit être obligatoirement annoté via @Context ou @LinkFrom.");
+					continue;
+				}
+
+				if (from != null) {
+					Method previousTaskMethod = methods.get(from.value());
+
+					// Toute annotation LinkFrom doit référencer une tâche existante
+					if (previousTaskMethod == null) {
+						violations.add("La tâche " + taskName + " fait référence la tâche "
+								+ from.value() + " qui n'a pas été déclarée dans cette classe.");
+						continue;
+					}
+
+					// Deux paramètres peuvent provenir de la même tâche : un seul arc
+					if ( ! graph.existEdge(from.value(), taskName)) {
+						graph.addEdge(from.value(), taskName);
+					}
+					taskLinks[p] = from.value();
+
+					/* Il doit y avoir une compatibilité de type entre un paramètre annoté LinkFrom et le retour de
+					 * la méthode correspondante.
+					 * i.e la valeur de retour de la méthode doit être un sous-type de la valeur attendue. */
+					Class<?> expected = param.getType();
+					Class<?> given = previousTaskMethod.getReturnType();
+
+					// Attention, Byte ne peut pas être casté en Integer par exemple, mais Byte ou Integer -> Number sans souci.
+					if ( ! expected.isAssignableFrom(given)) {
+						violations.add("Assignation impossible.");
+					}
+				} else {
+					// La présence et le type de l'objet du contexte sont vérifiés pour chaque job
+					requirements.add(new ContextRequirement(context.value(), param.getType(),
+							param.getName(), method.getName()));
+					taskContexts[p] = context.value();
+				}
+			}
+		} // fin "pour chaque méthode"
+
+		// Le graphe de tâches doit être acyclique. Le cycle trouvé est indiqué dans le message
+		// pour que l'erreur soit facile à corriger (ex : "A -> B -> A").
+		List<String> cycle = graph.findCycle();
+		if ( ! cycle.isEmpty()) {
+			violations.add("Le graphe contient au moins un cycle : " + String.join(" -> ", cycle));
+		}
+	}
+
+	/** Association identifiant de tâche -> méthode (non modifiable). */
+	public Map<String, Method> getTaskMethods() {
+		return taskMethods;
+	}
+
+	/** Graphe des tâches, immuable. */
+	public GraphCSR<String> getTaskGraph() {
+		return taskGraph;
+	}
+
+	/** Réduction transitive du graphe des tâches, immuable, avec les mêmes identifiants que getTaskGraph(). */
+	public GraphCSR<String> getReducedTaskGraph() {
+		GraphCSR<String> reduced = reducedTaskGraph;
+		if (reduced == null) {
+			synchronized (this) {
+				reduced = reducedTaskGraph;
+				if (reduced == null) {
+					reduced = taskGraph.transitiveReduction();
+					reducedTaskGraph = reduced;
+				}
+			}
+		}
+		return reduced;
+	}
+
+	/**
+	 * Ordre topologique des tâches : chaque tâche y apparaît après toutes celles dont elle dépend.
+	 * Calculé une seule fois par classe de job (c'est l'ordre suivi par JobExecutorSequential).
+	 * Le tableau est partagé : il ne doit pas être modifié.
+	 * @return les identifiants (dans getTaskGraph()) des tâches, dans l'ordre
+	 */
+	public int[] getTopologicalOrder() {
+		int[] order = topologicalOrder;
+		if (order == null) {
+			// Le graphe a été vérifié acyclique : pas de null ici. Plusieurs threads peuvent le calculer
+			// en même temps, ils obtiennent le même résultat.
+			order = taskGraph.topologicalOrderIds();
+			topologicalOrder = order;
+		}
+		return order;
+	}
+
+	/** Paramètres @Context de toutes les tâches (non modifiable). */
+	public List<ContextRequirement> getContextRequirements() {
+		return contextRequirements;
+	}
+
+	/** Méthode de la tâche d'identifiant task (dans getTaskGraph()). */
+	public Method getMethod(int task) {
+		return methodsById[task];
+	}
+
+	/**
+	 * Appel de la tâche d'identifiant task (dans getTaskGraph()), via un MethodHandle.
+	 * Résolu une fois par tâche : les appels suivants ne sont qu'une lecture de tableau.
+	 */
+	public TaskInvoker getInvoker(int task) {
+		TaskInvoker invoker = invokersById[task];
+		if (invoker == null) {
+			invoker = TaskInvoker.of(methodsById[task]);
+			invokersById[task] = invoker;
+		}
+		return invoker;
+	}
+
+	/**
+	 * Objets du contexte d'un job utilisés par les tâches, dans l'ordre attendu par bindArguments.
+	 * À calculer une fois par exécution.
+	 */
+	public Object[] contextValues(Job job) {
+		Object[] values = new Object[contextKeys.length];
+		for (int k = 0; k < contextKeys.length; k++) {
+			values[k] = job.getContext().get(contextKeys[k]);
+		}
+		return values;
+	}
+
+	/**
+	 * Arguments d'une tâche, d'après son plan de liaison.
+	 * @param task  identifiant de la tâche (dans getTaskGraph())
+	 * @param results  results[id] = résultat de la tâche id (ceux des dépendances doivent être présents)
+	 * @param contextValues  valeurs renvoyées par contextValues(job)
+	 * @return le tableau d'arguments, prêt pour l'appel de la méthode
+	 */
+	public Object[] bindArguments(int task, Object[] results, Object[] contextValues) {
+		return bind(bindings[task], results, contextValues);
+	}
+
+	static Object[] bind(int[] binding, Object[] results, Object[] contextValues) {
+		Object[] args = new Object[binding.length];
+		for (int i = 0; i < binding.length; i++) {
+			int source = binding[i];
+			args[i] = (source >= 0) ? results[source] : contextValues[-source - 1];
+		}
+		return args;
+	}
+
+	/** Appel direct des tâches de cette classe de job (créé au premier appel). */
+	public JobDispatcher getDispatcher() {
+		JobDispatcher d = dispatcher;
+		if (d == null) {
+			synchronized (this) {
+				d = dispatcher;
+				if (d == null) {
+					d = new JobDispatcher(this, jobClass, methodsById, bindings, table);
+					dispatcher = d;
+				}
+			}
+		}
+		return d;
+	}
+
+	/**
+	 * Identifiant de la tâche dont la méthode a ce nom et ces types de paramètres.
+	 * @return l'identifiant (dans getTaskGraph()), ou -1 si aucune tâche ne correspond.
+	 */
+	public int taskIdOf(String methodName, Class<?>[] paramTypes) {
+		Integer id = idsBySignature.get(TaskInvoker.signature(methodName, paramTypes));
+		return (id == null) ? -1 : id;
+	}
+
+}
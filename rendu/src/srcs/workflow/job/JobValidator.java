@@ -1,34 +1,49 @@
 package srcs.workflow.job;
 
-import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
-import java.lang.reflect.Parameter;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import srcs.workflow.graph.Graph;
-import srcs.workflow.graph.GraphImpl;
+import srcs.workflow.graph.GraphCSR;
 
 public class JobValidator {
 	
 	protected final Job job;
+	
+	/** Si vrai, toutes les violations sont relevées avant de jeter l'exception (voir JobValidator(Job, boolean)) */
+	protected final boolean collectAll;
+	
 	protected Graph<String> taskGraph;
 	
+	/** Partie structurelle de la validation, partagée par tous les jobs de la même classe */
+	protected JobStructure structure;
+	
 	/**
 	 * Map des tâches (valeurs renseignées dans @Task("value") + la méthode associée)
 	 * J'ai trouvé ça beaucoup plus simle de faire une Map plutôt que deux List, pour directement avoir
 	 * le paramètre de l'annotation @Task associé à la mathode courante.
 	 */
-	protected Map<String, Method> taskMethods = new HashMap<>();
+	protected Map<String, Method> taskMethods;
 	
 	/** 
 	 * Constructeur qui prend un Job en paramètre et qui jette une ValidationException (classe
 	 * à définir) si le job n’est pas conforme. La construction d’un JobValidator ne peut donc aboutir
 	 * si le job passé en paramètre n’est pas conforme. */
 	public JobValidator(Job job) throws ValidationException {
+		this(job, false);
+	}
+	
+	/**
+	 * Comme JobValidator(job), mais si collectAll est vrai, la validation ne s'arrête pas à la
+	 * première violation : la ValidationException rapporte toutes celles du job
+	 * (voir ValidationException.getViolations()). Utile pour les gros jobs générés, corrigés
+	 * en une seule fois.
+	 */
+	public JobValidator(Job job, boolean collectAll) throws ValidationException {
 		this.job = job;
-		taskGraph = new GraphImpl<String>();
+		this.collectAll = collectAll;
 		
 		// vérification de la conformité du job, throw si problème :
 		checkJobValidity();
@@ -36,11 +51,24 @@ public class JobValidator {
 	
 	/** 
 	 * Renvoie le graphe de tâches correspondant
-	 * au job. Dans le graphe les tâches sont référencées par leur identifiant. */
+	 * au job. Dans le graphe les tâches sont référencées par leur identifiant.
+	 * Ce graphe est partagé entre tous les jobs de la même classe : il est immuable. */
 	public Graph<String> getTaskGraph() {
 		return taskGraph;
 	}
 	
+	/**
+	 * Réduction transitive du graphe de tâches, figée (partagée entre tous les jobs
+	 * de la même classe) : c'est le graphe qu'utilisent les JobExecutor pour l'ordonnancement. */
+	public GraphCSR<String> getReducedTaskGraph() {
+		return structure.getReducedTaskGraph();
+	}
+	
+	/** Partie structurelle (indépendante du contexte) du job validé. */
+	public JobStructure getStructure() {
+		return structure;
+	}
+	
 	/**
 	 * Pour un identifiant de tâche donné, renvoie
 	 * sa méthode dans la classe d’implantation du job. */
@@ -72,126 +100,43 @@ public class JobValidator {
 		- il doit y avoir une compatibilité de type entre un paramètre annoté Context et l’objet corres-
 		pondant dans le contexte
 		- le graphe de tâches doit être acyclique
+	 * Seules les conditions portant sur le contexte sont vérifiées à chaque fois :
+	 * les autres sont vérifiées une fois pour toutes par JobStructure.
 	 */
 	protected void checkJobValidity() throws ValidationException {
-		Method[] methods = job.getClass().getDeclaredMethods();
+		// Conditions qui ne dépendent que de la classe du job : calculées une seule fois par classe
+		// (en cas d'erreur de structure, on ne sait pas quels paramètres @Context vérifier : on s'arrête là)
+		structure = JobStructure.of(job.getClass(), collectAll);
+		taskGraph = structure.getTaskGraph();
+		taskMethods = structure.getTaskMethods();
 		
-		// Ajout de toutes les méthodes annotées @Task à taskMethods.
-		for (Method method : methods) {
-			Annotation[] annotations = method.getAnnotations();
-			if (annotations.length == 0) continue;
+		// Conditions qui dépendent du contexte, donc de ce job en particulier
+		List<String> violations = new ArrayList<>();
+		for (JobStructure.ContextRequirement param : structure.getContextRequirements()) {
+			Object objLink = job.getContext().get(param.ref);
 			
-			for (Annotation annotation : annotations) {
-				if (annotation.annotationType().equals(Task.class)) {
-					// Deux méthodes annotées Task ne doivent pas avoir le même identifiant de tâche
-					Task task = (Task) annotation;
-					if (taskMethods.containsKey(task.value())) {
-						throw new ValidationException("Les méthodes annotées via @Task doivent avoir un identifiant unique.");
-					}
-					taskMethods.put(task.value(), method);
-					taskGraph.addNode(task.value());
-					// Au passage, une méthode ne peut être annotée @Task qu'une seule fois.
-				}
-			}
-		}
-
-		if (taskMethods.isEmpty()) throw new ValidationException("La classe n'a aucune méthode annotée @Task.");
-		
-		// Pour chaque couple (nom annotation @Task), (méthode associée)
-		for (Map.Entry<String, Method> methodEntry : taskMethods.entrySet()) {
-			Method method = methodEntry.getValue();
-			String taskName = methodEntry.getKey(); // /!\ taskName n'est en général pas égal au nom de la méthode !
-			
-			// Les méthodes annotées Task doivent être des méthodes d’instance
-			if ((method.getModifiers() & Modifier.ABSTRACT) != 0) {
-				throw new ValidationException("Les méthodes annotées via @Task ne peuvent pas être abstraites."
-							+ " (Elles doivent être des méthodes concrètes d'instance)");
-			}
-			if ((method.getModifiers() & Modifier.STATIC) != 0) {
-				throw new ValidationException("Les méthodes annotées via @Task ne peuvent pas être statiques."
-						+ " (Elles doivent être des méthodes concrètes d'instance)");
-			}
-			
-			// Les méthodes annotées Task ne doivent pas renvoyer void
-			if (method.getReturnType().equals(void.class)) {
-				throw new ValidationException("Les méthodes annotées via @Task ne peuvent renvoyer void."
-						+ " (Elles doivent renvoyer un résultat réel.)");
+			// Toute annotation Context doit référencer un objet existant dans le contexte du job
+			if (objLink == null) {
+				violation(violations, "Le paramètre " + param.paramName + " de la méthode " + param.methodName
+						+ " fait référence à l'objet '" + param.ref + "' qui n'existe pas dans le counexte du job.");
+				continue;
 			}
 			
-			// Tout paramètre d’une méthode annotée Task doit être soit annoté par Context ou par LinkFrom
-			for (Parameter param : method.getParameters()) {
-				Annotation[] pannots = param.getAnnotations();
-				
-				boolean valid = false;
-				
-				for (Annotation a : pannots) {
-					if (a.annotationType().equals(Context.class)
-					||  a.annotationType().equals(LinkFrom.class)) {
-						// Si déjà "valid", c'est que le paramètre a été annoté @Context ET @LinkFrom, c'est impossible.
-						if (valid) throw new ValidationException("Tout paramètre d'une méthode annotée via @Task"
-								+ "doit être annoté @Context OU (exclusif) @LinkFrom.");
-						valid = true;
-					}
-					
-					if (a.annotationType().equals(LinkFrom.class)) {
-						LinkFrom from = (LinkFrom) a;
-						
-						Method previousTaskMethod = taskMethods.get(from.value());
-						
-						// Toute annotation LinkFrom doit référencer une tâche existante
-						if (previousTaskMethod == null) { //( ! taskMethods.containsKey(lf.value())) {
-							throw new ValidationException("La tâche " + taskName + " fait référence la tâche "
-									+ from.value() + " qui n'a pas été déclarée dans cette classe.");
-						}
-						
-						taskGraph.addEdge(from.value(), taskName);
-						
-						/* Il doit y avoir une compatibilité de type entre un paramètre annoté LinkFrom et le retour de
-						 * la méthode correspondante. 
-						 * i.e la valeur de retour de la méthode doit être un sous-type de la valeur attendue. */
-						Class<?> expected = param.getType();
-						Class<?> given = previousTaskMethod.getReturnType();
-						
-						// Attention, Byte ne peut pas être casté en Integer par exemple, mais Byte ou Integer -> Number sans souci.
-						if ( ! expected.isAssignableFrom(given)) {
-							throw new ValidationException("Assignation impossible.");
-						}
-					}
-					
-					if (a.annotationType().equals(Context.class)) {
-						
-						String ref = ((Context) a).value();
-						Object objLink = job.getContext().get(ref);
-						
-						// Toute annotation Context doit référencer un objet existant dans le contexte du job
-						if (objLink == null) {
-							throw new ValidationException("Le paramètre " + param.getName() + " de la méthode " + method.getName()
-									+ " fait référence à l'objet '" + ref + "' qui n'existe pas dans le counexte du job.");
-						}
-						
-						/* Il doit y avoir une compatibilité de type entre un paramètre annoté Context et l’objet
-						 * correspondant dans le contexte
-						 * i.e. la valeur dans le contexte du job doit être castable en cette valeur.*/
-						Class<?> expected = param.getType();
-						
-						if (! expected.isInstance(objLink)) {
-							throw new ValidationException("Assignation impossible via l'objet du contexte.");
-						}
-					}
-				}
-				
-				if ( ! valid) {
-					throw new ValidationException("Un paramètre d'une méthode annotée via @Task"
-							+ "doit être obligatoirement annoté via @Context ou @LinkFrom.");
-				}
+			/* Il doit y avoir une compatibilité de type entre un paramètre annoté Context et l’objet
+			 * correspondant dans le contexte
+			 * i.e. la valeur dans le contexte du job doit être castable en cette valeur.*/
+			if (! param.type.isInstance(objLink)) {
+				violation(violations, "Assignation impossible via l'objet du contexte (paramètre " + param.paramName
+						+ " de la méthode " + param.methodName + ").");
 			}
-		} // fin "pour chaque méthode"
-		
-		if ( ! taskGraph.isDAG()) {
-			throw new ValidationException("Le graphe contient au moins un cycle.");
 		}
+		if ( ! violations.isEmpty()) throw new ValidationException(violations);
+	}
+	
+	/** Relève une violation, ou la jette immédiatement si on ne les collecte pas toutes. */
+	private void violation(List<String> violations, String message) throws ValidationException {
+		if ( ! collectAll) throw new ValidationException(message);
+		violations.add(message);
 	}
 	
 }
-
-
@@ -0,0 +1,152 @@
+package srcs.workflow.job;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Appel d'une méthode @Task via un MethodHandle, résolu une seule fois par méthode.
+ *
+ * Method.invoke refait à chaque appel les vérifications d'accès, l'emballage des arguments
+ * et celui des exceptions. Ici, la méthode est convertie une fois pour toutes en un
+ * MethodHandle de forme uniforme (Job, Object[])Object (receveur, tableau d'arguments
+ * "étalé" sur les paramètres, types adaptés), appelé par invokeExact : un chemin que le JIT
+ * peut compiler et mettre en ligne comme un appel direct.
+ *
+ * Comme pour Method.invoke, une exception jetée par la tâche est renvoyée enveloppée dans
+ * une InvocationTargetException, et des arguments qui ne conviennent pas (nombre, type, null
+ * pour un paramètre primitif) sont signalés par une IllegalArgumentException.
+ *
+ * Les invokers sont mis en cache par classe (ClassValue) puis par signature de méthode :
+ * les JobExecutor locaux et les TaskTracker (qui ne reçoivent que le nom et le type des
+ * paramètres de la méthode) ne résolvent chaque méthode qu'une fois.
+ */
+public final class TaskInvoker {
+
+	/** Type uniforme de tous les handles */
+	private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Job.class, Object[].class);
+
+	/** Handle de wrap : enveloppe les exceptions jetées par la méthode elle-même */
+	private static final MethodHandle WRAP;
+	static {
+		try {
+			WRAP = MethodHandles.lookup().findStatic(TaskInvoker.class, "wrap",
+					MethodType.methodType(Object.class, Throwable.class));
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/**
+	 * Invokers déjà résolus, par classe puis par signature ("nom(type1,type2)").
+	 * Comme pour le cache de JobStructure, les invokers référencent la classe (Method, handles) :
+	 * une classe de job mise en cache n'est jamais déchargée.
+	 */
+	private static final ClassValue<Map<String, TaskInvoker>> CACHE = new ClassValue<Map<String, TaskInvoker>>() {
+		@Override
+		protected Map<String, TaskInvoker> computeValue(Class<?> type) {
+			return new ConcurrentHashMap<>();
+		}
+	};
+
+	protected final Method method;
+
+	/** Handle de type (Job, Object[])Object */
+	protected final MethodHandle handle;
+
+	private TaskInvoker(Method method) {
+		this.method = method;
+		try {
+			// Les jobs sont souvent des classes internes ou anonymes, non publiques
+			method.setAccessible(true);
+			MethodHandle target = MethodHandles.lookup().unreflect(method);
+			// Les exceptions de la méthode sont enveloppées avant l'adaptation des arguments :
+			// celles de l'adaptation (ClassCastException...) ne le sont pas (voir invoke)
+			target = MethodHandles.catchException(target, Throwable.class,
+					WRAP.asType(MethodType.methodType(target.type().returnType(), Throwable.class)));
+			int arity = method.getParameterCount();
+			handle = target
+					.asType(MethodType.genericMethodType(arity + 1))
+					.asSpreader(Object[].class, arity)
+					.asType(INVOKER_TYPE);
+		} catch (IllegalAccessException | RuntimeException e) {
+			throw new IllegalArgumentException("Impossible d'accéder à la méthode " + method + ".", e);
+		}
+	}
+
+	/**
+	 * Invoker d'une méthode de tâche (mis en cache).
+	 * @param method  méthode d'instance d'une classe de job
+	 * @return
+	 * @throws IllegalArgumentException  si la méthode n'est pas accessible.
+	 */
+	public static TaskInvoker of(Method method) throws IllegalArgumentException {
+		return CACHE.get(method.getDeclaringClass())
+				.computeIfAbsent(signature(method.getName(), method.getParameterTypes()), s -> new TaskInvoker(method));
+	}
+
+	/**
+	 * Invoker de la méthode publique methodName(paramTypes) d'une classe de job (mis en cache),
+	 * comme jobClass.getMethod(methodName, paramTypes).
+	 * @throws NoSuchMethodException  si la méthode n'existe pas.
+	 */
+	public static TaskInvoker of(Class<?> jobClass, String methodName, Class<?>[] paramTypes)
+			throws NoSuchMethodException {
+		Map<String, TaskInvoker> invokers = CACHE.get(jobClass);
+		String signature = signature(methodName, paramTypes);
+		TaskInvoker invoker = invokers.get(signature);
+		if (invoker == null) {
+			// getMethod peut jeter une exception vérifiée : pas de computeIfAbsent ici
+			invoker = new TaskInvoker(jobClass.getMethod(methodName, paramTypes));
+			TaskInvoker previous = invokers.putIfAbsent(signature, invoker);
+			if (previous != null) invoker = previous;
+		}
+		return invoker;
+	}
+
+	protected static String signature(String methodName, Class<?>[] paramTypes) {
+		StringBuilder sb = new StringBuilder(methodName).append('(');
+		for (int i = 0; i < paramTypes.length; i++) {
+			if (i != 0) sb.append(',');
+			sb.append(paramTypes[i].getName());
+		}
+		return sb.append(')').toString();
+	}
+
+	/** Méthode appelée. */
+	public Method getMethod() {
+		return method;
+	}
+
+	/**
+	 * Appelle la méthode sur job.
+	 * @param job  receveur (instance de la classe de la méthode)
+	 * @param args  arguments, autant que de paramètres
+	 * @return la valeur renvoyée par la méthode
+	 * @throws InvocationTargetException  si la méthode a jeté une exception.
+	 * @throws IllegalArgumentException  si les arguments ne conviennent pas aux paramètres (nombre,
+	 *         types, null pour un paramètre primitif), comme pour Method.invoke.
+	 */
+	public Object invoke(Job job, Object[] args) throws InvocationTargetException, IllegalArgumentException {
+		try {
+			return (Object) handle.invokeExact(job, args);
+		} catch (InvocationTargetException e) {
+			throw e; // jetée par la méthode (voir wrap)
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable t) {
+			// ClassCastException, NullPointerException (déballage) ou IllegalArgumentException (nombre)
+			throw new IllegalArgumentException("Arguments incompatibles avec la méthode " + method + ".", t);
+		}
+	}
+
+	/** Enveloppe une exception jetée par la méthode appelée. */
+	private static Object wrap(Throwable t) throws InvocationTargetException {
+		throw new InvocationTargetException(t);
+	}
+
+}
@@ -0,0 +1,65 @@
+package srcs.workflow.job;
+
+/**
+ * Table des tâches d'une classe de job, générée à la compilation par
+ * srcs.workflow.processor.JobProcessor (classe tableName(<Job>), dans le paquetage du job).
+ *
+ * Le job a alors déjà été vérifié à la compilation (identifiants uniques, pas de void,
+ * annotations des paramètres, types des @LinkFrom, absence de cycle) : JobStructure
+ * construit sa structure à partir de cette table, sans refaire ces vérifications, et appelle
+ * les tâches via dispatch. La table n'est utilisée que si elle correspond encore aux
+ * annotations de la classe (mêmes tâches, mêmes @LinkFrom et @Context) ; sinon, JobStructure
+ * revient à la réflexion.
+ *
+ * Tous les tableaux sont indexés par le numéro de la tâche dans la table (0..n-1).
+ */
+public interface TaskTable {
+
+	/** Suffixe du nom des classes générées */
+	String SUFFIX = "_TaskTable";
+
+	/**
+	 * Nom complet de la table d'une classe de job : le nom de la classe après son paquetage, où
+	 * '_' devient "_1" et '$' (classe imbriquée) "_0", suivi de SUFFIX. Deux classes différentes
+	 * ont des tables différentes : par exemple Foo$Bar donne Foo_0Bar_TaskTable et Foo_Bar
+	 * donne Foo_1Bar_TaskTable.
+	 * @param jobBinaryName  nom binaire de la classe (Class.getName())
+	 */
+	static String tableName(String jobBinaryName) {
+		int start = jobBinaryName.lastIndexOf('.') + 1;
+		StringBuilder sb = new StringBuilder(jobBinaryName.length() + SUFFIX.length()).append(jobBinaryName, 0, start);
+		for (int i = start; i < jobBinaryName.length(); i++) {
+			char c = jobBinaryName.charAt(i);
+			if (c == '_') sb.append("_1");
+			else if (c == '$') sb.append("_0");
+			else sb.append(c);
+		}
+		return sb.append(SUFFIX).toString();
+	}
+
+	/** Identifiant (@Task) de chaque tâche. */
+	String[] taskIds();
+
+	/** Nom de la méthode de chaque tâche. */
+	String[] methodNames();
+
+	/** Types des paramètres de la méthode de chaque tâche. */
+	Class<?>[][] parameterTypes();
+
+	/** Pour chaque paramètre de chaque tâche : valeur de son @LinkFrom, ou null si c'est un @Context. */
+	String[][] linkFrom();
+
+	/** Pour chaque paramètre de chaque tâche : valeur de son @Context, ou null si c'est un @LinkFrom. */
+	String[][] context();
+
+	/**
+	 * Appel direct (sans réflexion) de la méthode d'une tâche.
+	 * @param task  numéro de la tâche dans la table
+	 * @param job  instance de la classe du job
+	 * @param args  arguments, autant que de paramètres
+	 * @return le résultat de la tâche
+	 * @throws Exception  l'exception jetée par la tâche
+	 */
+	Object dispatch(int task, Job job, Object[] args) throws Exception;
+
+}
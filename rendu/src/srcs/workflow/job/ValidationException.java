@@ -1,17 +1,38 @@
 package srcs.workflow.job;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * ValidationException : si le job n’est pas conforme.
+ * En mode "toutes les erreurs" (voir JobValidator(Job, boolean)), l'exception rapporte
+ * toutes les violations du job, une par ligne du message.
  */
 public class ValidationException extends Exception {
 	private static final long serialVersionUID = -3521285058008180968L;
 	
+	/** Toutes les violations rapportées par cette exception */
+	private final List<String> violations;
+	
 	public ValidationException() {
-		
+		violations = Collections.emptyList();
 	}
 	
 	public ValidationException(String message) {
         super(message);
+        violations = Collections.singletonList(message);
     }
+	
+	/** Exception qui rapporte plusieurs violations (au moins une). */
+	public ValidationException(List<String> violations) {
+		super(String.join("\n", violations));
+		this.violations = Collections.unmodifiableList(new ArrayList<>(violations));
+	}
+	
+	/** Violations rapportées par cette exception (une seule, sauf en mode "toutes les erreurs"). */
+	public List<String> getViolations() {
+		return violations;
+	}
 
 }
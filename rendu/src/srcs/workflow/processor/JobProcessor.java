@@ -0,0 +1,338 @@
+package srcs.workflow.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+import srcs.workflow.graph.Graph;
+import srcs.workflow.graph.GraphHashImpl;
+import srcs.workflow.job.Context;
+import srcs.workflow.job.Job;
+import srcs.workflow.job.LinkFrom;
+import srcs.workflow.job.Task;
+import srcs.workflow.job.TaskTable;
+
+/**
+ * Processeur d'annotations : vérifie les jobs à la compilation, et génère pour chacun une
+ * table des tâches (classe TaskTable.tableName(<Job>), voir TaskTable) que JobStructure charge à
+ * l'exécution au lieu de parcourir la classe par réflexion.
+ *
+ * Vérifications (les mêmes que JobValidator, sauf celles qui portent sur le contexte,
+ * qui n'est connu qu'à l'exécution) :
+ * - les méthodes annotées @Task sont déclarées dans une sous-classe de Job ;
+ * - les méthodes annotées @Task sont des méthodes d'instance concrètes, qui ne renvoient pas void ;
+ * - deux tâches d'une même classe n'ont pas le même identifiant ;
+ * - chaque paramètre est annoté @Context ou (exclusif) @LinkFrom ;
+ * - chaque @LinkFrom référence une tâche de la classe, dont le type de retour est compatible ;
+ * - le graphe des tâches est acyclique.
+ * Chaque violation est une erreur de compilation, placée sur l'élément fautif.
+ *
+ * La table n'est générée que si elle peut appeler toutes les tâches directement : classe du job
+ * et méthodes non privées, classe ni locale ni anonyme. Sinon, le job est seulement vérifié
+ * (et JobStructure garde le parcours par réflexion).
+ *
+ * Utilisation : javac -processor srcs.workflow.processor.JobProcessor ... lors de la compilation
+ * des jobs. Le processeur n'est volontairement pas déclaré comme service
+ * (META-INF/services) : les tests contiennent des jobs invalides, qui doivent compiler.
+ */
+@SupportedAnnotationTypes("srcs.workflow.job.Task")
+public class JobProcessor extends AbstractProcessor {
+
+	/** Une tâche, telle que déclarée dans le source */
+	protected static class TaskInfo {
+		final String id;
+		final ExecutableElement method;
+		/** Par paramètre : valeur du @LinkFrom, ou null */
+		final String[] links;
+		/** Par paramètre : valeur du @Context, ou null */
+		final String[] contexts;
+
+		TaskInfo(String id, ExecutableElement method) {
+			this.id = id;
+			this.method = method;
+			int n = method.getParameters().size();
+			links = new String[n];
+			contexts = new String[n];
+		}
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		// Méthodes @Task regroupées par classe de job (dans l'ordre du source)
+		Map<TypeElement, List<ExecutableElement>> byJob = new LinkedHashMap<>();
+		for (Element element : roundEnv.getElementsAnnotatedWith(Task.class)) {
+			if (element.getKind() != ElementKind.METHOD) continue;
+			TypeElement job = (TypeElement) element.getEnclosingElement();
+			byJob.computeIfAbsent(job, k -> new ArrayList<>()).add((ExecutableElement) element);
+		}
+		for (Map.Entry<TypeElement, List<ExecutableElement>> entry : byJob.entrySet()) {
+			List<TaskInfo> tasks = check(entry.getKey(), entry.getValue());
+			if ( (tasks != null) && canGenerate(entry.getKey(), tasks) ) {
+				generate(entry.getKey(), tasks);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Vérifie les tâches d'une classe de job.
+	 * @return les tâches, ou null si au moins une erreur a été signalée.
+	 */
+	protected List<TaskInfo> check(TypeElement job, List<ExecutableElement> methods) {
+		Messager messager = processingEnv.getMessager();
+		Types types = processingEnv.getTypeUtils();
+		boolean ok = true;
+
+		TypeElement jobType = processingEnv.getElementUtils().getTypeElement(Job.class.getCanonicalName());
+		if ( (jobType != null) && ! types.isSubtype(types.erasure(job.asType()), types.erasure(jobType.asType()))) {
+			messager.printMessage(Diagnostic.Kind.ERROR, "Les méthodes annotées via @Task doivent être déclarées dans"
+					+ " une sous-classe de " + Job.class.getName() + " (" + job.getQualifiedName() + " n'en est pas une).", job);
+			return null;
+		}
+
+		Map<String, TaskInfo> tasks = new LinkedHashMap<>();
+		for (ExecutableElement method : methods) {
+			String id = method.getAnnotation(Task.class).value();
+			if (tasks.containsKey(id)) {
+				messager.printMessage(Diagnostic.Kind.ERROR,
+						"Les méthodes annotées via @Task doivent avoir un identifiant unique (" + id + ").", method);
+				ok = false;
+				continue;
+			}
+			tasks.put(id, new TaskInfo(id, method));
+
+			if (method.getModifiers().contains(Modifier.ABSTRACT) || method.getModifiers().contains(Modifier.STATIC)) {
+				messager.printMessage(Diagnostic.Kind.ERROR,
+						"Les méthodes annotées via @Task doivent être des méthodes concrètes d'instance.", method);
+				ok = false;
+			}
+			if (method.getReturnType().getKind() == TypeKind.VOID) {
+				messager.printMessage(Diagnostic.Kind.ERROR,
+						"Les méthodes annotées via @Task ne peuvent renvoyer void.", method);
+				ok = false;
+			}
+		}
+
+		for (TaskInfo task : tasks.values()) {
+			List<? extends VariableElement> params = task.method.getParameters();
+			for (int i = 0; i < params.size(); i++) {
+				VariableElement param = params.get(i);
+				LinkFrom from = param.getAnnotation(LinkFrom.class);
+				Context context = param.getAnnotation(Context.class);
+				if ( (from == null) == (context == null) ) {
+					messager.printMessage(Diagnostic.Kind.ERROR,
+							"Un paramètre d'une méthode annotée via @Task doit être annoté @Context OU (exclusif) @LinkFrom.", param);
+					ok = false;
+					continue;
+				}
+				if (context != null) {
+					task.contexts[i] = context.value();
+					continue;
+				}
+				task.links[i] = from.value();
+				TaskInfo previous = tasks.get(from.value());
+				if (previous == null) {
+					messager.printMessage(Diagnostic.Kind.ERROR, "La tâche " + task.id + " fait référence la tâche "
+							+ from.value() + " qui n'a pas été déclarée dans cette classe.", param);
+					ok = false;
+				} else if ( ! assignable(types, previous.method.getReturnType(), param.asType())) {
+					messager.printMessage(Diagnostic.Kind.ERROR, "Assignation impossible : la tâche " + from.value()
+							+ " renvoie " + previous.method.getReturnType() + ".", param);
+					ok = false;
+				}
+			}
+		}
+		if ( ! ok) return null;
+
+		List<String> cycle = findCycle(tasks);
+		if ( ! cycle.isEmpty()) {
+			messager.printMessage(Diagnostic.Kind.ERROR,
+					"Le graphe contient au moins un cycle : " + String.join(" -> ", cycle), job);
+			return null;
+		}
+		return new ArrayList<>(tasks.values());
+	}
+
+	/**
+	 * Même règle qu'à l'exécution (Class.isAssignableFrom) : un type primitif n'est compatible
+	 * qu'avec lui-même, sinon le type renvoyé doit être un sous-type du type attendu.
+	 */
+	protected static boolean assignable(Types types, TypeMirror given, TypeMirror expected) {
+		if (given.getKind().isPrimitive() || expected.getKind().isPrimitive()) {
+			return types.isSameType(given, expected);
+		}
+		return types.isAssignable(types.erasure(given), types.erasure(expected));
+	}
+
+	/**
+	 * Recherche d'un cycle (parcours en profondeur itératif de GraphHashImpl : pas de récursion,
+	 * quelle que soit la longueur des chaînes de tâches), sous la forme [n0, ..., nk, n0].
+	 */
+	protected static List<String> findCycle(Map<String, TaskInfo> tasks) {
+		Graph<String> graph = new GraphHashImpl<>();
+		for (String id : tasks.keySet()) graph.addNode(id);
+		for (TaskInfo task : tasks.values()) {
+			for (String from : task.links) {
+				// Une tâche peut lire plusieurs fois le même résultat
+				if ( (from != null) && ! graph.existEdge(from, task.id)) graph.addEdge(from, task.id);
+			}
+		}
+		return graph.findCycle();
+	}
+
+	/**
+	 * La table ne peut être générée que si elle peut nommer la classe et appeler toutes les méthodes
+	 * (ni classe ni méthode privée, pas de classe locale ou anonyme, pas de throws Throwable).
+	 */
+	protected boolean canGenerate(TypeElement job, List<TaskInfo> tasks) {
+		Types types = processingEnv.getTypeUtils();
+		TypeMirror exception = processingEnv.getElementUtils().getTypeElement("java.lang.Exception").asType();
+		for (Element e = job; e instanceof TypeElement; e = e.getEnclosingElement()) {
+			TypeElement type = (TypeElement) e;
+			if ( (type.getNestingKind() == NestingKind.ANONYMOUS) || (type.getNestingKind() == NestingKind.LOCAL) ) return false;
+			if (type.getModifiers().contains(Modifier.PRIVATE)) return false;
+		}
+		for (TaskInfo task : tasks) {
+			if (task.method.getModifiers().contains(Modifier.PRIVATE)) return false;
+			// TaskTable.dispatch ne propage que des Exception
+			for (TypeMirror thrown : task.method.getThrownTypes()) {
+				if ( ! types.isSubtype(thrown, exception)) return false;
+			}
+		}
+		return true;
+	}
+
+	/** Génère la classe TaskTable.tableName(<Job>) dans le paquetage du job. */
+	protected void generate(TypeElement job, List<TaskInfo> tasks) {
+		Types types = processingEnv.getTypeUtils();
+		String binaryName = processingEnv.getElementUtils().getBinaryName(job).toString();
+		String packageName = processingEnv.getElementUtils().getPackageOf(job).getQualifiedName().toString();
+		String qualifiedTable = TaskTable.tableName(binaryName);
+		String simpleTable = qualifiedTable.substring(qualifiedTable.lastIndexOf('.') + 1);
+		String jobType = types.erasure(job.asType()).toString();
+
+		StringBuilder src = new StringBuilder();
+		if ( ! packageName.isEmpty()) src.append("package ").append(packageName).append(";\n\n");
+		src.append("/** Table des tâches de ").append(jobType).append(", générée par ")
+			.append(JobProcessor.class.getName()).append(" : ne pas modifier. */\n");
+		src.append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n");
+		src.append("public final class ").append(simpleTable).append(" implements ").append(TaskTable.class.getName()).append(" {\n\n");
+
+		src.append("\tpublic String[] taskIds() {\n\t\treturn new String[] {");
+		for (int t = 0; t < tasks.size(); t++) src.append(t == 0 ? "" : ", ").append(literal(tasks.get(t).id));
+		src.append("};\n\t}\n\n");
+
+		src.append("\tpublic String[] methodNames() {\n\t\treturn new String[] {");
+		for (int t = 0; t < tasks.size(); t++) {
+			src.append(t == 0 ? "" : ", ").append(literal(tasks.get(t).method.getSimpleName().toString()));
+		}
+		src.append("};\n\t}\n\n");
+
+		src.append("\tpublic Class<?>[][] parameterTypes() {\n\t\treturn new Class<?>[][] {\n");
+		for (TaskInfo task : tasks) {
+			src.append("\t\t\t{");
+			List<? extends VariableElement> params = task.method.getParameters();
+			for (int i = 0; i < params.size(); i++) {
+				src.append(i == 0 ? "" : ", ").append(types.erasure(params.get(i).asType())).append(".class");
+			}
+			src.append("},\n");
+		}
+		src.append("\t\t};\n\t}\n\n");
+
+		src.append("\tpublic String[][] linkFrom() {\n\t\treturn new String[][] {\n");
+		for (TaskInfo task : tasks) appendStrings(src, task.links);
+		src.append("\t\t};\n\t}\n\n");
+
+		src.append("\tpublic String[][] context() {\n\t\treturn new String[][] {\n");
+		for (TaskInfo task : tasks) appendStrings(src, task.contexts);
+		src.append("\t\t};\n\t}\n\n");
+
+		src.append("\tpublic Object dispatch(int task, srcs.workflow.job.Job job, Object[] args) throws Exception {\n");
+		src.append("\t\t").append(jobType).append(" j = (").append(jobType).append(") job;\n");
+		src.append("\t\tswitch (task) {\n");
+		for (int t = 0; t < tasks.size(); t++) {
+			ExecutableElement method = tasks.get(t).method;
+			src.append("\t\tcase ").append(t).append(": return j.").append(method.getSimpleName()).append('(');
+			List<? extends VariableElement> params = method.getParameters();
+			for (int i = 0; i < params.size(); i++) {
+				src.append(i == 0 ? "" : ", ").append('(').append(types.erasure(params.get(i).asType()))
+					.append(") args[").append(i).append(']');
+			}
+			src.append(");\n");
+		}
+		src.append("\t\tdefault: throw new IllegalArgumentException(\"Tâche inconnue : \" + task);\n");
+		src.append("\t\t}\n\t}\n\n}\n");
+
+		try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedTable, job).openWriter()) {
+			writer.write(ascii(src));
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+					"Impossible de générer " + qualifiedTable + " : " + e.getMessage(), job);
+		}
+	}
+
+	private static void appendStrings(StringBuilder src, String[] values) {
+		src.append("\t\t\t{");
+		for (int i = 0; i < values.length; i++) {
+			src.append(i == 0 ? "" : ", ").append(literal(values[i]));
+		}
+		src.append("},\n");
+	}
+
+	/** Source en ASCII (échappements unicode) : indépendant de l'encodage du Filer. */
+	private static String ascii(CharSequence src) {
+		StringBuilder sb = new StringBuilder(src.length());
+		for (int i = 0; i < src.length(); i++) {
+			char c = src.charAt(i);
+			if (c < 0x80) sb.append(c);
+			else sb.append(String.format("\\u%04x", (int) c));
+		}
+		return sb.toString();
+	}
+
+	/** Littéral Java d'une chaîne (ou null). */
+	private static String literal(String value) {
+		if (value == null) return "null";
+		StringBuilder sb = new StringBuilder("\"");
+		for (char c : value.toCharArray()) {
+			switch (c) {
+			case '"': sb.append("\\\""); break;
+			case '\\': sb.append("\\\\"); break;
+			case '\n': sb.append("\\n"); break;
+			case '\r': sb.append("\\r"); break;
+			case '\t': sb.append("\\t"); break;
+			default:
+				if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+				else sb.append(c);
+			}
+		}
+		return sb.append('"').toString();
+	}
+
+}
@@ -5,10 +5,12 @@ import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import srcs.workflow.executor.JobExecutor;
 import srcs.workflow.executor.JobExecutorNotification;
+import srcs.workflow.executor.RemoteJobCompletion;
 import srcs.workflow.job.Job;
 
 /**
@@ -28,26 +30,75 @@ public class JobExecutorRemoteCentral extends JobExecutor implements JobExecutor
 	@Override
 	public Map<String, Object> execute() throws RemoteException, Exception {
 		
-		// Je récupère le registry
-		Registry registry = LocateRegistry.getRegistry("localhost");
+		startExecution();
 		
-		// Je récupère le tracker exporté dans ce registry
-		JobTrackerCentralInterface tracker = (JobTrackerCentralInterface) registry.lookup("JobTrackerCentralSingleton");
+		// Résultats à publier à mesure que les tâches se terminent (resultPublisher), ou futurs de
+		// tâches en attente (taskFuture) : le serveur doit les transmettre un par un, ce que fait
+		// l'exécution asynchrone
+		if (hasResultPublisher() || ! taskFutures.isEmpty()) return await(executeAsync());
 		
-		/* J'exporte cet objet JobExecutorRemoteCentral
-		 * pour pouvoir appeler taskFinished() à chaque tâche terminée.
-		 * (il serait serializé sinon) */
-		UnicastRemoteObject.exportObject(this, 0);
-		
-		// Exécution du job à distance
-		Map<String,Object> result = tracker.executeJob(job, this);
-		
-		// Je n'ai plus besoin d'avoir mon objet exporté
-		UnicastRemoteObject.unexportObject(this, true);
+		Map<String,Object> result;
+		try {
+			// Je récupère le registry
+			Registry registry = LocateRegistry.getRegistry("localhost");
+			
+			// Je récupère le tracker exporté dans ce registry
+			JobTrackerCentralInterface tracker = (JobTrackerCentralInterface) registry.lookup("JobTrackerCentralSingleton");
+			
+			/* J'exporte cet objet JobExecutorRemoteCentral
+			 * pour pouvoir appeler taskFinished() à chaque tâche terminée.
+			 * (il serait serializé sinon) */
+			UnicastRemoteObject.exportObject(this, 0);
+			
+			// Exécution du job à distance
+			// Seuls les résultats demandés sont gardés et renvoyés par le serveur (voir setReturnedTasks)
+			try {
+				result = tracker.executeJob(job, returnedTasks, returnOnlySinks, this);
+			} finally {
+				// Je n'ai plus besoin d'avoir mon objet exporté
+				UnicastRemoteObject.unexportObject(this, true);
+			}
+		} catch (Exception e) {
+			jobFailed(e);
+			throw e;
+		}
 		
+		// Résultats reçus d'un bloc : futurs et taskListener des tâches renvoyées, puis fin du job
+		resultsReceived(result);
 		return result;
 	}
 	
+	/**
+	 * Exécution asynchrone : le serveur rend la main aussitôt et rappelle ce client à chaque
+	 * fin de tâche (futurs de taskFuture) puis à la fin du job. Aucun thread n'attend, ni ici
+	 * ni sur le serveur.
+	 */
+	@Override
+	public CompletableFuture<Map<String, Object>> executeAsync() {
+		startExecution();
+		RemoteJobCompletion completion;
+		try {
+			completion = new RemoteJobCompletion(this);
+		} catch (RemoteException e) {
+			jobFailed(e);
+			return CompletableFuture.failedFuture(e);
+		}
+		try {
+			Registry registry = LocateRegistry.getRegistry("localhost");
+			JobTrackerCentralInterface tracker = (JobTrackerCentralInterface) registry.lookup("JobTrackerCentralSingleton");
+			
+			// Comme pour execute(), pour taskFinished(String) à chaque tâche terminée
+			UnicastRemoteObject.exportObject(this, 0);
+			completion.unexportWhenDone(this);
+			
+			// Seules les valeurs attendues ici (futurs, flux de résultats) sont transmises une à une
+			tracker.executeJobAsync(job, returnedTasks, returnOnlySinks, streamedTasks(), this, completion);
+		} catch (Exception e) {
+			completion.fail(e);
+		}
+		return completion.getFuture();
+	}
+	
 	@Override
 	public void taskFinished(String taskID) throws RemoteException {
 		System.out.println("" + finishedTaskCount.addAndGet(1));
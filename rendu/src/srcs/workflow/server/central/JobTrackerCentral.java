@@ -5,10 +5,16 @@ import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import srcs.workflow.executor.JobExecutor;
+import srcs.workflow.executor.JobExecutorCallback;
 import srcs.workflow.executor.JobExecutorNotification;
 import srcs.workflow.executor.JobExecutorParallel;
+import srcs.workflow.executor.ResultStore;
+import srcs.workflow.executor.SpillingResultStore;
+import srcs.workflow.executor.TaskExecutors;
 import srcs.workflow.job.Job;
 
 import java.rmi.AlreadyBoundException;
@@ -19,13 +25,47 @@ import java.rmi.AlreadyBoundException;
  */
 public class JobTrackerCentral implements JobTrackerCentralInterface {
 	
+	/** ExecutorService partagé par tous les jobs reçus, ou null (un nouveau thread par tâche) */
+	protected final ExecutorService executorService;
+	
+	/** Stockage des résultats des jobs reçus (voir JobExecutorParallelAbstract.setResultStore), ou null (en mémoire) */
+	protected final ResultStore.Factory resultStoreFactory;
+	
+	/** Taille à partir de laquelle un résultat peut être écrit sur disque, si main le demande */
+	protected static final long SPILL_THRESHOLD = 1 << 20;
+	
 	public JobTrackerCentral() throws RemoteException {
-		
+		this(null);
+	}
+	
+	/**
+	 * @param executorService  ExecutorService partagé par tous les jobs reçus (voir TaskExecutors),
+	 *        ou null pour un nouveau thread par tâche
+	 */
+	public JobTrackerCentral(ExecutorService executorService) throws RemoteException {
+		this(executorService, null);
+	}
+	
+	/**
+	 * @param executorService  ExecutorService partagé par tous les jobs reçus (voir TaskExecutors),
+	 *        ou null pour un nouveau thread par tâche
+	 * @param resultStoreFactory  stockage des résultats de chaque job (voir SpillingResultStore.factory),
+	 *        ou null pour les garder en mémoire
+	 */
+	public JobTrackerCentral(ExecutorService executorService, ResultStore.Factory resultStoreFactory) throws RemoteException {
+		this.executorService = executorService;
+		this.resultStoreFactory = resultStoreFactory;
 	}
 	
 	/**
 	 * Déploie le service d'exécution de job.
-	 * @param args  n'attend pas d'argument
+	 * @param args  optionnel : "virtual" pour un thread virtuel par tâche (Java 21 et plus),
+	 *        ou un nombre n pour un pool de n threads partagé par tous les jobs.
+	 *        Sans argument (ou "thread"), un nouveau thread par tâche.
+	 *        Second argument optionnel : nombre m de Mo de gros résultats (1 Mo et plus) gardés en
+	 *        mémoire par job, les autres étant écrits sur disque (voir SpillingResultStore).
+	 *        Les résultats non demandés par le client (voir JobExecutor.setReturnedTasks) sont
+	 *        libérés dès qu'ils ne sont plus lus, et seuls ceux demandés sont relus à la fin du job.
 	 * @throws RemoteException 
 	 * @throws InterruptedException 
 	 * @throws AlreadyBoundException 
@@ -40,7 +80,16 @@ public class JobTrackerCentral implements JobTrackerCentralInterface {
 		final Registry registry = LocateRegistry.getRegistry();
 		
 		// Service d'exécution du job
-		JobTrackerCentral tracker = new JobTrackerCentral();
+		ExecutorService executorService = null;
+		if ( (args.length > 0) && ! args[0].equals("thread") ) {
+			executorService = args[0].equals("virtual") ? TaskExecutors.virtualThreadPerTask()
+					: TaskExecutors.boundedPool(Integer.parseInt(args[0]));
+		}
+		ResultStore.Factory resultStoreFactory = null;
+		if (args.length > 1) {
+			resultStoreFactory = SpillingResultStore.factory(SPILL_THRESHOLD, Long.parseLong(args[1]) << 20);
+		}
+		JobTrackerCentral tracker = new JobTrackerCentral(executorService, resultStoreFactory);
 		
 		// Export de l'objet (sinon, il est serialisé)
 		UnicastRemoteObject.exportObject(tracker, 0);
@@ -53,11 +102,33 @@ public class JobTrackerCentral implements JobTrackerCentralInterface {
 	}
 
 	@Override
-	public Map<String, Object> executeJob(Job job, JobExecutorNotification notificationMethod) throws RemoteException, Exception {
+	public Map<String, Object> executeJob(Job job, Set<String> returnedTasks, boolean returnOnlySinks,
+			JobExecutorNotification notificationMethod) throws RemoteException, Exception {
 		// Lors de la réception d'un job, l'exécuter via JobExecutorParallel.
-		JobExecutor j = new JobExecutorParallel(job);
+		JobExecutor j = newJobExecutor(job, returnedTasks, returnOnlySinks);
 		j.setNotificationMethod(notificationMethod);
 		return j.execute();
 	}
 	
+	@Override
+	public void executeJobAsync(Job job, Set<String> returnedTasks, boolean returnOnlySinks, Set<String> streamedTasks,
+			JobExecutorNotification notificationMethod, JobExecutorCallback callback) throws RemoteException {
+		// Le thread RMI rend la main dès les premières tâches lancées
+		JobExecutor j = newJobExecutor(job, returnedTasks, returnOnlySinks);
+		j.setNotificationMethod(notificationMethod);
+		j.executeAsync(callback, streamedTasks);
+	}
+	
+	/**
+	 * JobExecutor d'un job reçu : exécution parallèle, sur executorService et avec resultStoreFactory.
+	 * Seuls les résultats demandés par le client sont gardés jusqu'à la fin du job.
+	 */
+	protected JobExecutor newJobExecutor(Job job, Set<String> returnedTasks, boolean returnOnlySinks) {
+		JobExecutorParallel j = new JobExecutorParallel(job, executorService);
+		j.setResultStore(resultStoreFactory);
+		if (returnOnlySinks) j.setReturnOnlySinks();
+		else j.setReturnedTasks(returnedTasks);
+		return j;
+	}
+	
 }
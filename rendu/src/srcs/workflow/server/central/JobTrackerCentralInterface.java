@@ -3,7 +3,9 @@ package srcs.workflow.server.central;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
 import java.util.Map;
+import java.util.Set;
 
+import srcs.workflow.executor.JobExecutorCallback;
 import srcs.workflow.executor.JobExecutorNotification;
 import srcs.workflow.job.Job;
 
@@ -16,11 +18,30 @@ public interface JobTrackerCentralInterface extends Remote {
 	/**
 	 * Exécute un job.
 	 * @param job  job à exécuter. Doit être Serializable s'il est exécuté à distance via RMI.
+	 * @param returnedTasks  tâches dont le résultat est gardé et renvoyé, null pour toutes
+	 *        (voir JobExecutor.setReturnedTasks)
+	 * @param returnOnlySinks  vrai pour ne renvoyer que les résultats finaux (returnedTasks est alors ignoré)
 	 * @param notificationMethod  objet dont la méthode taskFinished sera appelée à chaque fin de tâche du job.
 	 * @return  un Map associant l'ID de la tâche avec le résultat retourné.
 	 * @throws Exception
 	 * @throws RemoteException
 	 */
-	public Map<String, Object> executeJob(Job job, JobExecutorNotification notificationMethod) throws Exception, RemoteException;
+	public Map<String, Object> executeJob(Job job, Set<String> returnedTasks, boolean returnOnlySinks,
+			JobExecutorNotification notificationMethod) throws Exception, RemoteException;
+	
+	/**
+	 * Lance l'exécution d'un job et rend la main aussitôt : l'avancement et le résultat sont
+	 * envoyés à callback (aucun thread n'attend la fin du job, ni ici ni chez le client).
+	 * @param job  job à exécuter. Doit être Serializable.
+	 * @param returnedTasks  comme pour executeJob
+	 * @param returnOnlySinks  comme pour executeJob
+	 * @param streamedTasks  tâches dont la valeur est envoyée à callback dès leur fin, null pour
+	 *        toutes. Pour les autres, seuls l'identifiant et les mesures de temps sont envoyés.
+	 * @param notificationMethod  objet dont la méthode taskFinished sera appelée à chaque fin de tâche du job, ou null.
+	 * @param callback  objet exporté par le client, appelé à chaque fin de tâche puis à la fin du job.
+	 * @throws RemoteException
+	 */
+	public void executeJobAsync(Job job, Set<String> returnedTasks, boolean returnOnlySinks, Set<String> streamedTasks,
+			JobExecutorNotification notificationMethod, JobExecutorCallback callback) throws RemoteException;
 	
 }
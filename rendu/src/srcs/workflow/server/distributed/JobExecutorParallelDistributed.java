@@ -1,6 +1,7 @@
 package srcs.workflow.server.distributed;
 
 import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
 
 import srcs.workflow.executor.JobExecutorParallelAbstract;
 import srcs.workflow.job.Job;
@@ -22,11 +23,18 @@ import srcs.workflow.job.Job;
  * JobExecutorParallelDistributed.execute() est géré par le Master dans un thread généré par RMI,
  * c'est pour ça qu'il est possible d'avoir plusieurs jobs exécutés simultanément sur Master.</br></br>
  * 
+ * Priorité : les tâches sont ordonnées par chemin critique (setPriorityScheduling), d'après les
+ * durées mesurées par le Master sur les trackers. Quand les trackers n'ont plus de slot libre,
+ * les slots qui se libèrent vont aux tâches de plus haute priorité, tous jobs confondus.</br></br>
+ * 
  * Améliorations possibles :</br>
+ * - Les résultats transitent toujours par le Master. Un cache de résultats sur les trackers
+ *   permettrait d'exécuter les tâches d'une même partie du graphe (Graph.partition) sur un
+ *   même tracker sans renvoyer leurs résultats intermédiaires ; sans ce cache, préférer un
+ *   tracker ne ferait que déséquilibrer la charge</br>
  * - Le job est serialisé à chaque réalisation d'une tâche</br>
- * - Il n'y a pas de priorité dans le traîtement des tâches, ainsi, même si un job ancien a une plus
- *   grande probabilité d'avoir ses tâches exécutées (du fait de l'ordonnanceur de la JVM), rien ne 
- *   garantit parfaitement l'équité.
+ * - Les priorités de jobs différents sont comparées telles quelles : un job aux tâches longues
+ *   passe avant un job aux tâches courtes (à priorité égale, la tâche la plus ancienne passe en premier).
  * 
  */
 public class JobExecutorParallelDistributed extends JobExecutorParallelAbstract {
@@ -43,14 +51,38 @@ public class JobExecutorParallelDistributed extends JobExecutorParallelAbstract
 	public JobExecutorParallelDistributed(Job job, JobTrackerMaster master) {
 		super(job);
 		this.master = master;
+		setPriorityScheduling(master.getDurationHistory());
 	}
 	
 
+	/**
+	 * La tâche est mise en attente d'un slot dans la file du Master, avec son identifiant et sa
+	 * priorité : aucun thread n'attend qu'un tracker se libère (voir JobTrackerMaster.submitTaskOnFreeTracker).
+	 * Avec un store, les résultats lus doivent rester épinglés pendant l'exécution : la tâche
+	 * occupe alors un thread de executorService, comme en local (voir executeTask).
+	 */
+	@Override
+	protected CompletableFuture<Object> startTask(int task) {
+		if (store != null) return super.startTask(task);
+		startNanos[task] = System.nanoTime();
+		Method method = validator.getStructure().getMethod(task);
+		double priority = (priorities == null) ? 0 : priorities[task];
+		return master.submitTaskOnFreeTracker(job, graph.value(task), prepareTaskArgs(task), method.getName(),
+				method.getParameterTypes(), priority);
+	}
+	
+	/** Exécution bloquante par le Master (seulement avec un store, voir startTask). */
 	@Override
-	protected Object executeMethod(Method method, Object[] args) throws Exception {
-		return master.executeTaskOnFreeTracker(job, args, method.getName(), method.getParameterTypes());
-		// remplace le method.invoke(job, args); de l'exo 4
+	protected Object executeTask(int task) throws Exception {
+		Method method = validator.getStructure().getMethod(task);
+		double priority = (priorities == null) ? 0 : priorities[task];
+		return master.executeTaskOnFreeTracker(job, graph.value(task), prepareTaskArgs(task), method.getName(),
+				method.getParameterTypes(), priority);
 	}
 	
+	/** La durée est enregistrée par le Master, sans le temps passé à attendre un slot libre. */
+	@Override
+	protected void recordDuration(int task, long durationNanos) {
+	}
 	
 }
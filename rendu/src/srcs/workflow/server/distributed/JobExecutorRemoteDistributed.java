@@ -2,9 +2,12 @@ package srcs.workflow.server.distributed;
 
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
+import java.rmi.RemoteException;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import srcs.workflow.executor.JobExecutor;
+import srcs.workflow.executor.RemoteJobCompletion;
 import srcs.workflow.job.Job;
 
 /**
@@ -27,15 +30,59 @@ public class JobExecutorRemoteDistributed extends JobExecutor {
 	@Override
 	public Map<String, Object> execute() throws Exception {
 		
-		// Accès au registery
-		final Registry registry = LocateRegistry.getRegistry();
+		startExecution();
 		
-		// Je me connecte au Master, il va répartir les tâches
-		JobTrackerMasterInterface master =  (JobTrackerMasterInterface) registry.lookup("Alexander the Great");
+		// Résultats à publier à mesure que les tâches se terminent (resultPublisher), ou futurs de
+		// tâches en attente (taskFuture) : le Master doit les transmettre un par un, ce que fait
+		// l'exécution asynchrone
+		if (hasResultPublisher() || ! taskFutures.isEmpty()) return await(executeAsync());
 		
-		// L'exécution depuis le master
-		// le job ne pouvant pas être exporté, il est serializé (donc une copie en est envoyé au Master)
-		return master.executeJob(job);
+		Map<String, Object> results;
+		try {
+			// Accès au registery
+			final Registry registry = LocateRegistry.getRegistry();
+			
+			// Je me connecte au Master, il va répartir les tâches
+			JobTrackerMasterInterface master =  (JobTrackerMasterInterface) registry.lookup("Alexander the Great");
+			
+			// L'exécution depuis le master
+			// le job ne pouvant pas être exporté, il est serializé (donc une copie en est envoyé au Master)
+			// Seuls les résultats demandés sont gardés et renvoyés par le Master (voir setReturnedTasks)
+			results = master.executeJob(job, returnedTasks, returnOnlySinks);
+		} catch (Exception e) {
+			jobFailed(e);
+			throw e;
+		}
+		
+		// Résultats reçus d'un bloc : futurs et taskListener des tâches renvoyées, puis fin du job
+		resultsReceived(results);
+		return results;
+	}
+	
+	/**
+	 * Exécution asynchrone : le Master rend la main aussitôt et rappelle ce client à chaque
+	 * fin de tâche (futurs de taskFuture) puis à la fin du job. Des milliers de jobs peuvent
+	 * ainsi être en cours sans qu'aucun thread n'attende, ni ici ni sur le Master.
+	 */
+	@Override
+	public CompletableFuture<Map<String, Object>> executeAsync() {
+		startExecution();
+		RemoteJobCompletion completion;
+		try {
+			completion = new RemoteJobCompletion(this);
+		} catch (RemoteException e) {
+			jobFailed(e);
+			return CompletableFuture.failedFuture(e);
+		}
+		try {
+			final Registry registry = LocateRegistry.getRegistry();
+			JobTrackerMasterInterface master =  (JobTrackerMasterInterface) registry.lookup("Alexander the Great");
+			// Seules les valeurs attendues ici (futurs, flux de résultats) sont transmises une à une
+			master.executeJobAsync(job, returnedTasks, returnOnlySinks, streamedTasks(), completion);
+		} catch (Exception e) {
+			completion.fail(e);
+		}
+		return completion.getFuture();
 	}
 
 }
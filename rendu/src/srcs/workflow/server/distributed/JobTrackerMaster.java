@@ -9,8 +9,16 @@ import java.rmi.server.UnicastRemoteObject;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 
+import srcs.workflow.executor.JobExecutorCallback;
+import srcs.workflow.executor.TaskDurationHistory;
+import srcs.workflow.executor.TaskExecutors;
 import srcs.workflow.job.Job;
 import sylvain.debug.DebugLog;
 
@@ -68,6 +76,28 @@ public class JobTrackerMaster implements JobTrackerMasterInterface {
 	/** Pour garantir l'unicité des ID, c'est Master qui donne leurs identifiants aux trackers. */
 	protected volatile int nextTrackerUniqueID = 1;
 	
+	/**
+	 * Durée d'exécution de chaque tâche sur les trackers (appel RMI compris, attente d'un slot
+	 * libre non comprise), lors des exécutions précédentes.
+	 * Sert à ordonner les tâches par priorité (voir JobExecutorParallelDistributed). */
+	protected final TaskDurationHistory durationHistory = new TaskDurationHistory();
+	
+	/**
+	 * Tâches en attente d'un slot libre, la plus prioritaire en tête (protégé par trackersLock).
+	 * Seule la tâche en tête peut prendre un slot : quand les slots sont comptés, les tâches du
+	 * chemin critique passent avant les autres, et à priorité égale, la plus ancienne passe en premier.
+	 * Une tâche en attente n'occupe aucun thread : elle est lancée par launchWaitingTasks, appelé
+	 * à chaque arrivée de tâche, libération de slot et enregistrement de tracker. */
+	protected final PriorityQueue<WaitingTask> waitingTasks = new PriorityQueue<>();
+	
+	/** Numéro d'arrivée de la prochaine tâche en attente (protégé par trackersLock). */
+	protected long nextWaitingRank = 0;
+	
+	/**
+	 * Threads des appels aux trackers. Un thread n'est pris qu'une fois un slot réservé, le temps
+	 * de l'appel RMI (bloquant) : leur nombre est borné par la capacité totale des trackers. */
+	protected final ExecutorService trackerCalls = TaskExecutors.threadPerTask();
+	
 	/**
 	 * Démarrage de la JVM Master
 	 * @param args  n'attend aucun argument
@@ -104,10 +134,9 @@ public class JobTrackerMaster implements JobTrackerMasterInterface {
 	}
 	
 	/**
-	 * Exéction d'une tâche sur un tracker libre. Cette exécution est bloquante,
-	 * l'exécution d'un Job étant dans un thread propre géré par l'appel RMI à la méthode
-	 * executeJob de la classe JobTrackerMaster. Le thread a d'ailleurs une description
-	 * qui ressemble à ça : Thread[RMI TCP Connection(n°connexion)-127.0.0.1,5,RMI Runtime] </br></br>
+	 * Exéction d'une tâche sur un tracker libre. Cette exécution est bloquante : le thread
+	 * appelant attend le résultat (voir submitTaskOnFreeTracker pour une exécution qui
+	 * n'occupe aucun thread en attendant). </br></br>
 	 * 
 	 * Malheureusement, et c'est pas super optimisé comme je le fais là,
 	 * le job est à nouveau serializé à chaque fois que j'envoie une tâche.
@@ -120,112 +149,220 @@ public class JobTrackerMaster implements JobTrackerMasterInterface {
 	 * @throws InterruptedException 
 	 */
 	public Object executeTaskOnFreeTracker(Job job, Object[] params, String methodName, Class<?>[] methodParamTypes) throws Exception {
+		return executeTaskOnFreeTracker(job, null, params, methodName, methodParamTypes, 0);
+	}
+	
+	/**
+	 * Comme executeTaskOnFreeTracker, avec une priorité (voir submitTaskOnFreeTracker).
+	 * @param taskID  identifiant (@Task) de la tâche, null pour ne pas enregistrer sa durée
+	 * @param priority  rang ascendant de la tâche (voir TaskDurationHistory.upwardRanks), 0 si aucune priorité
+	 */
+	public Object executeTaskOnFreeTracker(Job job, String taskID, Object[] params, String methodName,
+			Class<?>[] methodParamTypes, double priority) throws Exception {
+		CompletableFuture<Object> future = submitTaskOnFreeTracker(job, taskID, params, methodName,
+				methodParamTypes, priority);
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			// La tâche n'est pas lancée si elle attend encore un slot (voir launchWaitingTasks)
+			future.cancel(false);
+			throw e;
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception) throw (Exception) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw e;
+		}
+	}
+	
+	/**
+	 * Exécution d'une tâche sur un tracker libre, sans attendre : la tâche est mise en attente
+	 * d'un slot dans waitingTasks, par priorité décroissante, et lancée dès qu'un slot se libère.
+	 * Aucun thread n'attend ce slot ; seul l'appel RMI au tracker occupe un thread (trackerCalls).
+	 * Si le tracker tombe en panne pendant l'appel, la tâche est remise en attente, avec son
+	 * numéro d'arrivée. La durée d'exécution de la tâche sur le tracker (sans l'attente d'un slot)
+	 * est enregistrée dans durationHistory.
+	 * @param taskID  identifiant (@Task) de la tâche, null pour ne pas enregistrer sa durée
+	 * @param priority  rang ascendant de la tâche (voir TaskDurationHistory.upwardRanks), 0 si aucune priorité
+	 * @return le futur résultat de la tâche, complété dans un thread de trackerCalls (ou dans le
+	 *         thread appelant, en échec, s'il n'y a aucun tracker)
+	 */
+	public CompletableFuture<Object> submitTaskOnFreeTracker(Job job, String taskID, Object[] params, String methodName,
+			Class<?>[] methodParamTypes, double priority) {
+		WaitingTask task;
+		synchronized (trackersLock) {
+			task = new WaitingTask(job, taskID, params, methodName, methodParamTypes,
+					priority, nextWaitingRank++);
+			waitingTasks.add(task);
+		}
+		launchWaitingTasks();
+		return task.future;
+	}
+	
+	/**
+	 * Attribue les slots libres aux tâches en attente, dans l'ordre de waitingTasks : tant que la
+	 * tâche en tête obtient un slot, elle est lancée dans un thread de trackerCalls. Quand elle
+	 * n'en obtient pas, elle et les suivantes attendent le prochain appel.
+	 * S'il n'y a plus aucun tracker, les tâches en attente échouent.
+	 */
+	protected void launchWaitingTasks() {
+		List<WaitingTask> launched = new ArrayList<>();
+		List<WaitingTask> failed = new ArrayList<>();
 		
-		//DebugLog.info("Recherche d'un tracker libre...");
-		
-		boolean taskComplete = false;
-		
-		while ( ! taskComplete) {
-			
-			TaskTrackerRefOnMaster foundTracker = null;
-			
-			// J'essaie de trouver un tracker qui peut accepter une tâche.
-			
-			// Ce JobTrackerMaster est un singleton, comme j'ai pris le lock trackersLock,
-			// je suis assuré qu'aucune autre tâche ne peut être soumise jusqu'à ce que
-			// je sorte du block synchronized.
-			// La seule chose qui peut arriver, c'est qu'un tracker finisse un tâche, jamais le contraire.
-			// Je réserve un slot via tracker.acquireTaskSlot(), qui permet de conserver
-			// la place (pour une future tâche) même en dehors du bloc synchronized.
-			synchronized (trackersLock) {
-				
-				if (trackers.size() == 0) throw new Exception("Aucun tracker enregistré, tâche non exécutée.");
-				
-				if (forceTrackerEquity) {
-					// Cas de la recherche équitable :
-					// recherche du tracker le moins occupé (en proportion)
-					// Je recherche le ratio le plus petit, non égal à 1
-					float minRatio = 1;
-					for (TaskTrackerRefOnMaster tracker : trackers) {
-						float ratio = tracker.getCapacityRatio();
-						if (ratio == 1) continue;
-						if (ratio < minRatio) {
-							minRatio = ratio;
-							foundTracker = tracker;
-						}
-					}
-					if (foundTracker != null ) {
-						// Si je ne peux pas réserver une place sur le tracker, je recommence la recherche.
-						if ( ! foundTracker.acquireTaskSlot()) {
-							foundTracker = null;
-						}
-					}
+		// Ce JobTrackerMaster est un singleton, comme j'ai pris le lock trackersLock,
+		// je suis assuré qu'aucune autre tâche ne peut être soumise jusqu'à ce que
+		// je sorte du block synchronized.
+		// Je réserve un slot via tracker.acquireTaskSlot(), qui permet de conserver
+		// la place (pour une future tâche) même en dehors du bloc synchronized.
+		synchronized (trackersLock) {
+			while ( ! waitingTasks.isEmpty()) {
+				WaitingTask head = waitingTasks.peek();
+				if (head.future.isDone()) {
+					waitingTasks.poll(); // annulée (voir executeTaskOnFreeTracker)
+				} else if (trackers.size() == 0) {
+					failed.add(waitingTasks.poll());
 				} else {
-					// Cas de la recherche non équitable : FirstFit, je prends le premier qui peut gérer ma tâche
-					for (TaskTrackerRefOnMaster tracker : trackers) {
-						if (tracker.acquireTaskSlot()) {
-							foundTracker = tracker;
-							break;
-						}
+					TaskTrackerRefOnMaster tracker = acquireTaskSlot();
+					if (tracker == null) {
+						DebugLog.info("------- Aucun tracker libre, " + waitingTasks.size() + " tâche(s) en attente.");
+						break;
 					}
-				}
-				
-				// Si aucun tracker trouvé, j'attends qu'un slot se libère pour l'exécution
-				if (foundTracker == null) {
-					DebugLog.info("------- Aucun racker trouvé, je m'endors... size = " + trackers.size());
-					trackersLock.wait();
+					waitingTasks.poll();
+					head.tracker = tracker;
+					launched.add(head);
 				}
 			}
-			
-			if (foundTracker == null) continue; // je recommence la recherche de tracker libre
-			
-			Object result = null;
-			boolean mustFreeSlot = false;
-			try {
-				DebugLog.info("Exécution d'une tâche sur le tracker " + foundTracker.getName() + "  (ratio " + foundTracker.getCapacityRatio()+")");
-				result = foundTracker.getProxy().executeTask(job, params, methodName, methodParamTypes);
-				taskComplete = true;
-				mustFreeSlot = true;
-				return result;
-			} catch (RemoteException re) {
-				// Tracker probablement déconnecté
-				// (Ne libère pas de slot sur le tracker vu que le tracker n'est plus là !)
-				synchronized (trackersLock) {
-					// Supprime le tracker de la liste s'il n'a pas déjà été supprimé
-					trackers.remove(foundTracker);
-					DebugLog.info("Tracker {"+foundTracker.getName()+"} probablement down. Nombre de trackers restant : " + (trackers.size()));
-					foundTracker = null;
-					continue;
-				}
-			} catch (Exception e) {
-				mustFreeSlot = true;
-				// Erreur dans l'exécution de la fonction, système instable.
-				// => erreur critique lors de l'exécution du job.
-				throw e; // Renvoi de l'exception au JobHandler
-			} finally {
-				if (mustFreeSlot) {
-					// Libération du slot occupé par la tâche
-					foundTracker.releaseTaskSlot();
-					// Réveil des threads en attente d'un tracker libre
-					synchronized (trackersLock) {
-						trackersLock.notifyAll();
-					}
+		}
+		
+		for (WaitingTask task : failed) {
+			task.future.completeExceptionally(new Exception("Aucun tracker enregistré, tâche non exécutée."));
+		}
+		for (WaitingTask task : launched) {
+			trackerCalls.execute( () -> runOnTracker(task) );
+		}
+	}
+	
+	/**
+	 * Réserve un slot sur le tracker le moins occupé (ou le premier libre, voir forceTrackerEquity).
+	 * Doit être appelé en possession de trackersLock.
+	 * @return le tracker dont un slot est réservé, ou null si aucun n'a de slot libre
+	 */
+	protected TaskTrackerRefOnMaster acquireTaskSlot() {
+		if (forceTrackerEquity) {
+			// Cas de la recherche équitable :
+			// recherche du tracker le moins occupé (en proportion)
+			// Je recherche le ratio le plus petit, non égal à 1
+			TaskTrackerRefOnMaster foundTracker = null;
+			float minRatio = 1;
+			for (TaskTrackerRefOnMaster tracker : trackers) {
+				float ratio = tracker.getCapacityRatio();
+				if (ratio == 1) continue;
+				if (ratio < minRatio) {
+					minRatio = ratio;
+					foundTracker = tracker;
 				}
 			}
+			// Sous trackersLock, personne d'autre ne réserve de slot : la réservation réussit
+			return ( (foundTracker != null) && foundTracker.acquireTaskSlot() ) ? foundTracker : null;
+		}
+		// Cas de la recherche non équitable : FirstFit, je prends le premier qui peut gérer ma tâche
+		for (TaskTrackerRefOnMaster tracker : trackers) {
+			if (tracker.acquireTaskSlot()) return tracker;
+		}
+		return null;
+	}
+	
+	/**
+	 * Exécute une tâche sur le tracker dont un slot lui a été réservé (appel RMI bloquant, dans un
+	 * thread de trackerCalls), libère le slot et relance les tâches en attente, puis complète le
+	 * futur de la tâche : la suite du job s'exécute dans ce thread, une fois le slot rendu.
+	 */
+	protected void runOnTracker(WaitingTask task) {
+		TaskTrackerRefOnMaster tracker = task.tracker;
+		Object result = null;
+		Throwable failure = null;
+		try {
+			DebugLog.info("Exécution d'une tâche sur le tracker " + tracker.getName() + "  (ratio " + tracker.getCapacityRatio()+")");
+			long start = System.nanoTime();
+			result = tracker.getProxy().executeTask(task.job, task.params, task.methodName, task.methodParamTypes);
+			if (task.taskID != null) durationHistory.record(task.job.getClass(), task.taskID, System.nanoTime() - start);
+		} catch (RemoteException re) {
+			// Tracker probablement déconnecté
+			// (Ne libère pas de slot sur le tracker vu que le tracker n'est plus là !)
+			synchronized (trackersLock) {
+				// Supprime le tracker de la liste s'il n'a pas déjà été supprimé
+				trackers.remove(tracker);
+				DebugLog.info("Tracker {"+tracker.getName()+"} probablement down. Nombre de trackers restant : " + (trackers.size()));
+				// Remise en attente, avec son numéro d'arrivée : elle garde sa place
+				task.tracker = null;
+				waitingTasks.add(task);
+			}
+			launchWaitingTasks();
+			return;
+		} catch (Throwable e) {
+			// Erreur dans l'exécution de la fonction, système instable.
+			// => erreur critique lors de l'exécution du job (renvoyée au JobExecutor).
+			failure = e;
+		}
+		// Libération du slot occupé par la tâche, qui va à la prochaine tâche en attente
+		tracker.releaseTaskSlot();
+		launchWaitingTasks();
+		if (failure == null) {
+			task.future.complete(result);
+		} else {
+			task.future.completeExceptionally(failure);
 		}
-		throw new Exception("Exception qui ne devrait jamais arriver.");
 	}
 
+	/** Durées d'exécution observées des tâches, partagées par tous les jobs. */
+	public TaskDurationHistory getDurationHistory() {
+		return durationHistory;
+	}
+	
+	/** Tâche en attente d'un slot libre : la plus prioritaire d'abord, puis la plus ancienne. */
+	protected static class WaitingTask implements Comparable<WaitingTask> {
+		protected final Job job;
+		protected final String taskID;
+		protected final Object[] params;
+		protected final String methodName;
+		protected final Class<?>[] methodParamTypes;
+		protected final double priority;
+		protected final long arrival;
+		
+		/** Futur résultat de la tâche */
+		protected final CompletableFuture<Object> future = new CompletableFuture<>();
+		
+		/** Tracker dont un slot est réservé pour la tâche, null tant qu'elle attend (protégé par trackersLock) */
+		protected TaskTrackerRefOnMaster tracker;
+		
+		protected WaitingTask(Job job, String taskID, Object[] params, String methodName, Class<?>[] methodParamTypes,
+				double priority, long arrival) {
+			this.job = job;
+			this.taskID = taskID;
+			this.params = params;
+			this.methodName = methodName;
+			this.methodParamTypes = methodParamTypes;
+			this.priority = priority;
+			this.arrival = arrival;
+		}
+		
+		@Override
+		public int compareTo(WaitingTask other) {
+			int byPriority = Double.compare(other.priority, priority);
+			return (byPriority != 0) ? byPriority : Long.compare(arrival, other.arrival);
+		}
+	}
 	
 	@Override
-	public Map<String, Object> executeJob(Job job) throws RemoteException, Exception {
+	public Map<String, Object> executeJob(Job job, Set<String> returnedTasks, boolean returnOnlySinks)
+			throws RemoteException, Exception {
 		// Soumet des tâches aux trackers en fonction de leur disponibilité
 		
 		//DebugLog.info("Exécution du job sur le master...");
 		
 		// Création d'un objet handler qui gèrera le job
 		JobExecutorParallelDistributed handler;
-		handler = new JobExecutorParallelDistributed(job, this);
+		handler = newJobExecutor(job, returnedTasks, returnOnlySinks);
 		
 		// Exécution bloquante : l'appel executeJob est dans un thread géré par RMI.
 		// Plusieurs exécutions de executeJob sont ainsi possibles, grâce à RMI.
@@ -234,6 +371,22 @@ public class JobTrackerMaster implements JobTrackerMasterInterface {
 		return result;
 	}
 
+	@Override
+	public void executeJobAsync(Job job, Set<String> returnedTasks, boolean returnOnlySinks, Set<String> streamedTasks,
+			JobExecutorCallback callback) throws RemoteException {
+		// Les tâches se lancent les unes les autres (voir JobExecutorParallelAbstract) :
+		// le thread RMI rend la main dès les premières tâches lancées.
+		newJobExecutor(job, returnedTasks, returnOnlySinks).executeAsync(callback, streamedTasks);
+	}
+	
+	/** JobExecutor d'un job reçu, qui ne garde jusqu'à la fin du job que les résultats demandés par le client. */
+	protected JobExecutorParallelDistributed newJobExecutor(Job job, Set<String> returnedTasks, boolean returnOnlySinks) {
+		JobExecutorParallelDistributed handler = new JobExecutorParallelDistributed(job, this);
+		if (returnOnlySinks) handler.setReturnOnlySinks();
+		else handler.setReturnedTasks(returnedTasks);
+		return handler;
+	}
+
 	@Override
 	public String getUniqueTrackerName() throws RemoteException {
 		int result;
@@ -277,6 +430,8 @@ public class JobTrackerMaster implements JobTrackerMasterInterface {
 		synchronized (trackersLock) {
 			trackers.add(ref);
 		}
+		// Ses slots vont aux tâches en attente
+		launchWaitingTasks();
 	}
 	
 }
\ No newline at end of file
@@ -4,7 +4,9 @@ import java.rmi.NotBoundException;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
 import java.util.Map;
+import java.util.Set;
 
+import srcs.workflow.executor.JobExecutorCallback;
 import srcs.workflow.job.Job;
 
 public interface JobTrackerMasterInterface extends Remote {
@@ -16,11 +18,29 @@ public interface JobTrackerMasterInterface extends Remote {
 	 * Cette exécution est donc à partir d'un thread propre et est bloquante.
 	 * Au passage, le thread ressemble un peu à ça : Thread[RMI TCP Connection(n°connexion)-127.0.0.1,5,RMI Runtime]
 	 * @param job
+	 * @param returnedTasks  tâches dont le résultat est gardé et renvoyé, null pour toutes
+	 *        (voir JobExecutor.setReturnedTasks)
+	 * @param returnOnlySinks  vrai pour ne renvoyer que les résultats finaux (returnedTasks est alors ignoré)
 	 * @return
 	 * @throws RemoteException
 	 * @throws Exception
 	 */
-	public Map<String, Object> executeJob(Job job) throws RemoteException, Exception;
+	public Map<String, Object> executeJob(Job job, Set<String> returnedTasks, boolean returnOnlySinks)
+			throws RemoteException, Exception;
+	
+	/**
+	 * Comme executeJob, mais rend la main aussitôt : l'avancement et le résultat du job sont
+	 * envoyés à callback. Aucun thread RMI n'est occupé pendant l'exécution du job.
+	 * @param job
+	 * @param returnedTasks  comme pour executeJob
+	 * @param returnOnlySinks  comme pour executeJob
+	 * @param streamedTasks  tâches dont la valeur est envoyée à callback dès leur fin, null pour
+	 *        toutes. Pour les autres, seuls l'identifiant et les mesures de temps sont envoyés.
+	 * @param callback  objet exporté par le client (voir RemoteJobCompletion)
+	 * @throws RemoteException
+	 */
+	public void executeJobAsync(Job job, Set<String> returnedTasks, boolean returnOnlySinks, Set<String> streamedTasks,
+			JobExecutorCallback callback) throws RemoteException;
 	
 	/** Récupérer un nom de tracker unique dans un objet JobTrackerMaster. */
 	public String getUniqueTrackerName() throws RemoteException;
@@ -1,7 +1,6 @@
 package srcs.workflow.server.distributed;
 
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.rmi.AlreadyBoundException;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
@@ -10,6 +9,9 @@ import java.rmi.registry.Registry;
 import java.rmi.server.UnicastRemoteObject;
 
 import srcs.workflow.job.Job;
+import srcs.workflow.job.JobStructure;
+import srcs.workflow.job.TaskInvoker;
+import srcs.workflow.job.ValidationException;
 import sylvain.debug.DebugLog;
 
 
@@ -78,9 +80,17 @@ public class TaskTracker implements TaskTrackerInterface {
 		// Il est nécessaire d'avoir réservé une exécution via canAcceptTask() avant d'appeler cette fonction.
 		long t = System.currentTimeMillis();
 		
-		// Je trouve la méthode sur la VM actuelle à partir de son nom et
-		// du type de ses paramètres
-		Method method = job.getClass().getMethod(methodName, methodParamTypes);
+		// Je trouve la tâche sur la VM actuelle à partir du nom et du type des paramètres de sa
+		// méthode. La classe du job n'est analysée qu'une fois par tracker (voir JobStructure) :
+		// la tâche est alors appelée directement (JobDispatcher).
+		// Sinon (ne devrait pas arriver, le job a été validé sur le Master), simple appel via TaskInvoker.
+		JobStructure structure = null;
+		int task = -1;
+		try {
+			structure = JobStructure.of(job.getClass());
+			task = structure.taskIdOf(methodName, methodParamTypes);
+		} catch (ValidationException e) { }
+		TaskInvoker invoker = (task < 0) ? TaskInvoker.of(job.getClass(), methodName, methodParamTypes) : null;
 		
 		// L'exécution est donc bien sur ce tracker : le job est serializé (malheuseusement à chaque tâche,
 		// du coup c'est pas super niveau activité réseau)
@@ -90,7 +100,11 @@ public class TaskTracker implements TaskTrackerInterface {
 		// Une exception est levée si la méthode rencontre un problème en elle-même (i.e. pas RemoteException)
 		// ce n'est pas le cas dans les tests, mais si c'était le cas, ça serait une erreur de programmation
 		// et le job tout entier devrait être arrêté.
-		result = method.invoke(job, params);
+		if (invoker == null) {
+			result = structure.getDispatcher().dispatchWithArguments(task, job, params);
+		} else {
+			result = invoker.invoke(job, params);
+		}
 		
 		if (sleepOnEveryTaskMs != 0) {
 			try {
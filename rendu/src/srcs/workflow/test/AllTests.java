@@ -7,9 +7,19 @@ import org.junit.runners.Suite.SuiteClasses;
 @RunWith(Suite.class)
 @SuiteClasses({ 
 	TestGraph.class,
+	TestGraphHash.class,
+	TestGraphCSR.class,
+	TestGraphDAG.class,
+	TestGraphParallel.class,
+	TestGraphPartitioner.class,
+	TestGraphCopyOnWrite.class,
 	TestJobValidator.class,
+	TestTaskInvoker.class,
+	TestJobDispatcher.class,
+	TestJobProcessor.class,
 	TestJobLocalSequential.class,
 	TestJobLocalParallel.class,
+	TestJobLocalForkJoin.class,
 	TestJobRemoteCentral.class,
 	TestJobRemoteCentralFeedback.class,
 	TestJobRemoteDistributed.class,
@@ -5,6 +5,8 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -19,17 +21,22 @@ import srcs.workflow.graph.GraphImpl;
 
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
 public class TestGraph {
+	
+	/** Implémentation de Graph testée, redéfinie par les classes de test des autres implémentations. */
+	protected <T> Graph<T> newGraph() {
+		return new GraphImpl<>();
+	}
 
 	@Test
 	public void test1() {
-		Graph<Object> g = new GraphImpl<>();
+		Graph<Object> g = newGraph();
 		assertTrue(g.isEmpty());
 		assertEquals(0,g.size());
 	}
 	
 	@Test
 	public void test2() {
-		Graph<String> g = new GraphImpl<>();
+		Graph<String> g = newGraph();
 		g.addNode("A");
 		assertTrue(g.existNode("A"));
 		assertFalse(g.existNode("B"));
@@ -38,7 +45,7 @@ public class TestGraph {
 	
 	@Test
 	public void test3() {
-		Graph<String> g = new GraphImpl<>();
+		Graph<String> g = newGraph();
 		Map<String,Integer> map = new HashMap<>();
 		g.addNode("A"); map.put("A", 0);
 		g.addNode("B"); map.put("B", 0);
@@ -53,7 +60,7 @@ public class TestGraph {
 		
 	@Test
 	public void test4() {
-		Graph<String> g = new GraphImpl<>();
+		Graph<String> g = newGraph();
 		g.addNode("A");
 		g.addNode("B");
 		g.addNode("C");
@@ -67,20 +74,20 @@ public class TestGraph {
 	
 	@Test
 	public void test5() {
-		Graph<String> g = new GraphImpl<>();
+		Graph<String> g = newGraph();
 		assertThrows(IllegalArgumentException.class, ()->g.addEdge("A", "B"));
 	}
 	
 	@Test
 	public void test6() {
-		Graph<String> g = new GraphImpl<>();
+		Graph<String> g = newGraph();
 		g.addNode("A");
 		assertThrows(IllegalArgumentException.class, ()->g.addEdge("A", "B"));
 	}
 	
 	@Test
 	public void test7() {
-		Graph<String> g = new GraphImpl<>();
+		Graph<String> g = newGraph();
 		g.addNode("A");
 		g.addNode("B");
 		g.addEdge("A", "B");
@@ -89,7 +96,7 @@ public class TestGraph {
 	
 	@Test
 	public void test8() {
-		Graph<String> g = new GraphImpl<>();
+		Graph<String> g = newGraph();
 		g.addNode("A");
 		g.addNode("B");
 		g.addNode("C");
@@ -138,7 +145,7 @@ public class TestGraph {
 	
 	@Test
 	public void test9() {
-		Graph<String> g = new GraphImpl<>();
+		Graph<String> g = newGraph();
 		g.addNode("A");
 		g.addNode("B");
 		g.addNode("C");
@@ -188,7 +195,7 @@ public class TestGraph {
 	
 	@Test
 	public void test10() {
-		Graph<String> g = new GraphImpl<>();
+		Graph<String> g = newGraph();
 		g.addNode("A");
 		g.addNode("B");
 		g.addNode("C");
@@ -208,4 +215,175 @@ public class TestGraph {
 		
 		
 	}
+	
+	@Test
+	public void test11() {
+		Graph<String> g = newGraph();
+		g.addNode("E");
+		g.addNode("D");
+		g.addNode("C");
+		g.addNode("B");
+		g.addNode("A");
+		g.addEdge("A", "B");
+		g.addEdge("A", "C");
+		g.addEdge("B", "D");
+		g.addEdge("C", "D");
+		g.addEdge("D", "E");
+		
+		List<String> order = g.topologicalOrder();
+		assertEquals(5, order.size());
+		for (String from : g) {
+			for (String to : g.getNeighborsOut(from)) {
+				assertTrue(order.indexOf(from) < order.indexOf(to));
+			}
+		}
+		assertTrue(g.findCycle().isEmpty());
+		
+		g.addEdge("E", "C");
+		assertThrows(IllegalStateException.class, ()-> g.topologicalOrder());
+		List<String> cycle = g.findCycle();
+		assertEquals(4, cycle.size());
+		assertEquals(cycle.get(0), cycle.get(3));
+		for (int i = 0; i < 3; i++) {
+			assertTrue(g.existEdge(cycle.get(i), cycle.get(i + 1)));
+		}
+	}
+	
+	@Test
+	public void test12() {
+		// Longue chaîne : les parcours ne doivent pas être récursifs
+		Graph<Integer> g = newGraph();
+		int n = 10_000;
+		for (int i = 0; i < n; i++) {
+			g.addNode(i);
+			if (i > 0) g.addEdge(i - 1, i);
+		}
+		assertTrue(g.isDAG());
+		assertEquals(n - 1, g.accessible(0).size());
+		assertEquals(Integer.valueOf(0), g.topologicalOrder().get(0));
+		
+		g.addEdge(n - 1, 0);
+		assertFalse(g.isDAG());
+		assertEquals(n + 1, g.findCycle().size());
+	}
+	
+	@Test
+	public void test13() {
+		Graph<String> g = newGraph();
+		g.addNode("A");
+		g.addNode("B");
+		g.addNode("C");
+		g.addNode("D");
+		g.addEdge("A", "B");
+		g.addEdge("B", "C");
+		
+		assertTrue(g.canReach("A", "C"));
+		assertFalse(g.canReach("C", "A"));
+		assertFalse(g.canReach("A", "A"));
+		assertFalse(g.canReach("A", "D"));
+		assertEquals(2, g.accessible("A").size());
+		assertThrows(IllegalArgumentException.class, ()-> g.canReach("A", "Z"));
+		assertThrows(IllegalArgumentException.class, ()-> g.canReach("Z", "A"));
+		
+		// Le résultat doit suivre les modifications du graphe
+		g.addEdge("C", "D");
+		assertTrue(g.canReach("A", "D"));
+		assertTrue(g.accessible("A").contains("D"));
+		g.addEdge("D", "A");
+		assertTrue(g.canReach("A", "A"));
+		assertEquals(4, g.accessible("B").size());
+	}
+	
+	@Test
+	public void test14() {
+		Graph<String> g = newGraph();
+		g.addNode("A");
+		g.addNode("B");
+		g.addNode("C");
+		g.addEdge("A", "B");
+		
+		Collection<String> outA = g.getNeighborsOutView("A");
+		Collection<String> inC = g.getNeighborsInView("C");
+		assertEquals(1, outA.size());
+		assertEquals(0, inC.size());
+		assertThrows(UnsupportedOperationException.class, ()-> outA.add("C"));
+		
+		// Les vues suivent les modifications du graphe
+		g.addEdge("A", "C");
+		assertEquals(2, outA.size());
+		assertTrue(outA.contains("C"));
+		assertTrue(inC.contains("A"));
+		
+		assertEquals(2, g.outDegree("A"));
+		assertEquals(0, g.inDegree("A"));
+		assertEquals(1, g.inDegree("C"));
+		
+		List<String> visited = new ArrayList<>();
+		g.forEachNeighborOut("A", visited::add);
+		assertEquals(g.getNeighborsOut("A"), visited);
+		visited.clear();
+		g.forEachNeighborIn("B", visited::add);
+		assertEquals(g.getNeighborsIn("B"), visited);
+		
+		assertThrows(IllegalArgumentException.class, ()-> g.getNeighborsOutView("Z"));
+		assertThrows(IllegalArgumentException.class, ()-> g.forEachNeighborIn("Z", visited::add));
+		assertThrows(IllegalArgumentException.class, ()-> g.inDegree("Z"));
+	}
+	
+	@Test
+	public void test15() {
+		Graph<String> g = newGraph();
+		g.addNode("A");
+		g.addNode("B");
+		g.addNode("C");
+		g.addNode("D");
+		g.addEdge("A", "B");
+		g.addEdge("B", "C");
+		g.addEdge("A", "C"); // redondant (A -> B -> C)
+		g.addEdge("C", "D");
+		g.addEdge("A", "D"); // redondant
+		g.addEdge("B", "D"); // redondant
+		
+		Graph<String> r = g.transitiveReduction();
+		assertEquals(4, r.size());
+		assertTrue(r.existEdge("A", "B"));
+		assertTrue(r.existEdge("B", "C"));
+		assertTrue(r.existEdge("C", "D"));
+		assertFalse(r.existEdge("A", "C"));
+		assertFalse(r.existEdge("A", "D"));
+		assertFalse(r.existEdge("B", "D"));
+		
+		// Le graphe d'origine n'est pas modifié
+		assertTrue(g.existEdge("A", "D"));
+		
+		g.addEdge("D", "A");
+		assertThrows(IllegalStateException.class, ()-> g.transitiveReduction());
+	}
+	
+	@Test
+	public void test16() {
+		// Deux chaînes A1 -> A2 -> A3 et B1 -> B2 -> B3, reliées par un seul arc A1 -> B3
+		Graph<String> g = newGraph();
+		for (String n : new String[] {"A1", "B1", "A2", "B2", "A3", "B3"}) g.addNode(n);
+		g.addEdge("A1", "A2");
+		g.addEdge("A2", "A3");
+		g.addEdge("B1", "B2");
+		g.addEdge("B2", "B3");
+		g.addEdge("A1", "B3");
+		
+		Map<String, Integer> part = g.partition(2, null);
+		assertEquals(6, part.size());
+		assertEquals(part.get("A1"), part.get("A2"));
+		assertEquals(part.get("A2"), part.get("A3"));
+		assertEquals(part.get("B1"), part.get("B2"));
+		assertEquals(part.get("B2"), part.get("B3"));
+		assertFalse(part.get("A1").equals(part.get("B1")));
+		
+		// Une seule partie : tout le monde dans la partie 0
+		for (int p : g.partition(1, null).values()) assertEquals(0, p);
+		assertThrows(IllegalArgumentException.class, ()-> g.partition(0, null));
+		
+		g.addEdge("A3", "A1");
+		assertThrows(IllegalStateException.class, ()-> g.partition(2, null));
+	}
 }
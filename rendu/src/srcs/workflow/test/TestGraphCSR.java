@@ -0,0 +1,103 @@
+package srcs.workflow.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import srcs.workflow.graph.Graph;
+import srcs.workflow.graph.GraphCSR;
+import srcs.workflow.graph.GraphHashImpl;
+
+public class TestGraphCSR {
+	
+	private static Graph<String> diamond() {
+		Graph<String> g = new GraphHashImpl<>();
+		g.addNode("A");
+		g.addNode("B");
+		g.addNode("C");
+		g.addNode("D");
+		g.addEdge("A", "B");
+		g.addEdge("A", "C");
+		g.addEdge("B", "D");
+		g.addEdge("C", "D");
+		return g;
+	}
+	
+	@Test
+	public void test1() {
+		GraphCSR<String> g = new GraphCSR<>(diamond());
+		assertEquals(4, g.size());
+		assertEquals(4, g.edgeCount());
+		
+		// Identifiants denses, dans l'ordre d'itération du graphe source
+		assertEquals(0, g.id("A"));
+		assertEquals(3, g.id("D"));
+		assertEquals("C", g.value(2));
+		assertThrows(IllegalArgumentException.class, ()-> g.id("Z"));
+		
+		int a = g.id("A"), d = g.id("D");
+		assertEquals(2, g.outDegree(a));
+		assertEquals(0, g.inDegree(a));
+		assertEquals(2, g.inDegree(d));
+		assertEquals(g.id("B"), g.inNeighbor(d, 0));
+		assertEquals(g.id("C"), g.inNeighbor(d, 1));
+		assertEquals(g.id("B"), g.outNeighbor(a, 0));
+		
+		assertTrue(g.existEdge("A", "B"));
+		assertFalse(g.existEdge("B", "A"));
+		assertEquals(3, g.accessible("A").size());
+		assertTrue(g.isDAG());
+		assertEquals("A", g.topologicalOrder().get(0));
+		assertEquals("D", g.topologicalOrder().get(3));
+	}
+	
+	@Test
+	public void test2() {
+		Graph<String> source = diamond();
+		GraphCSR<String> g = new GraphCSR<>(source);
+		
+		// Le graphe figé est immuable et indépendant du graphe source
+		assertThrows(UnsupportedOperationException.class, ()-> g.addNode("E"));
+		assertThrows(UnsupportedOperationException.class, ()-> g.addEdge("D", "A"));
+		source.addEdge("D", "A");
+		assertTrue(g.isDAG());
+		
+		GraphCSR<String> cyclic = new GraphCSR<>(source);
+		assertFalse(cyclic.isDAG());
+		assertNull(cyclic.topologicalOrderIds());
+		assertEquals(4, cyclic.findCycle().size());
+	}
+	
+	// Accessibilité par parcours, puis par l'index une fois demandé : mêmes réponses
+	@Test
+	public void test3() {
+		GraphHashImpl<String> source = new GraphHashImpl<>();
+		for (String n : new String[] {"A", "B", "C", "D"}) source.addNode(n);
+		source.addEdge("A", "B");
+		source.addEdge("B", "C");
+		GraphCSR<String> g = new GraphCSR<>(source);
+		assertTrue(g.canReach("A", "C"));
+		assertFalse(g.canReach("A", "A"));
+		assertFalse(g.canReach("A", "D"));
+		g.reachability();
+		assertTrue(g.canReach("A", "C"));
+		assertFalse(g.canReach("A", "D"));
+		assertEquals(2, g.accessible("A").size());
+		
+		// L'index du graphe modifiable ne sert que jusqu'à la modification suivante
+		source.reachability();
+		assertFalse(source.canReach("A", "D"));
+		source.addEdge("C", "D");
+		assertTrue(source.canReach("A", "D"));
+		source.addEdge("D", "A");
+		assertTrue(source.canReach("A", "A"));
+		source.reachability();
+		assertTrue(source.canReach("B", "B"));
+		assertEquals(4, source.accessible("A").size());
+	}
+	
+}
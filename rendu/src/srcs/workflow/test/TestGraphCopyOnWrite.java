@@ -0,0 +1,119 @@
+package srcs.workflow.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import srcs.workflow.graph.Graph;
+import srcs.workflow.graph.GraphCSR;
+import srcs.workflow.graph.GraphCopyOnWrite;
+
+/** Mêmes tests que TestGraph sur le graphe par copie à l'écriture, plus la concurrence. */
+public class TestGraphCopyOnWrite extends TestGraph {
+	
+	@Override
+	protected <T> Graph<T> newGraph() {
+		return new GraphCopyOnWrite<>();
+	}
+	
+	/** Même test que TestGraph.test12, mais en une seule mise à jour : ajoutés un par un,
+	 *  les 10 000 noeuds publieraient 20 000 versions du graphe (O(n²)). */
+	@Override
+	@Test
+	public void test12() {
+		GraphCopyOnWrite<Integer> g = new GraphCopyOnWrite<>();
+		int n = 10_000;
+		g.update(w -> {
+			for (int i = 0; i < n; i++) {
+				w.addNode(i);
+				if (i > 0) w.addEdge(i - 1, i);
+			}
+		});
+		assertTrue(g.isDAG());
+		assertEquals(n - 1, g.accessible(0).size());
+		assertEquals(Integer.valueOf(0), g.topologicalOrder().get(0));
+		
+		g.addEdge(n - 1, 0);
+		assertFalse(g.isDAG());
+		assertEquals(n + 1, g.findCycle().size());
+	}
+	
+	@Test
+	public void test20() {
+		GraphCopyOnWrite<String> g = new GraphCopyOnWrite<>();
+		g.addNode("A");
+		GraphCSR<String> before = g.snapshot();
+		
+		g.update(w -> {
+			w.addNode("B");
+			w.addNode("C");
+			w.addEdge("A", "B");
+			w.addEdge("B", "C");
+		});
+		assertEquals(3, g.size());
+		assertTrue(g.canReach("A", "C"));
+		
+		// Un instantané ne voit pas les modifications suivantes
+		assertEquals(1, before.size());
+		
+		// Une mise à jour qui échoue n'est pas publiée, et n'est pas conservée
+		assertThrows(IllegalArgumentException.class, ()-> g.update(w -> {
+			w.addNode("D");
+			w.addEdge("A", "Z");
+		}));
+		assertFalse(g.existNode("D"));
+		g.addNode("D");
+		assertEquals(4, g.size());
+	}
+	
+	@Test
+	public void test21() throws InterruptedException {
+		// Un écrivain ajoute une chaîne pendant que des lecteurs l'interrogent :
+		// chaque instantané lu doit être cohérent (une chaîne complète, de la taille lue).
+		GraphCopyOnWrite<Integer> g = new GraphCopyOnWrite<>();
+		AtomicBoolean done = new AtomicBoolean(false);
+		List<Throwable> errors = new ArrayList<>();
+		
+		List<Thread> readers = new ArrayList<>();
+		for (int r = 0; r < 4; r++) {
+			Thread reader = new Thread(() -> {
+				try {
+					while ( ! done.get()) {
+						GraphCSR<Integer> s = g.snapshot();
+						int n = s.size();
+						assertEquals(Math.max(0, n - 1), s.edgeCount());
+						if (n > 1) assertTrue(s.existEdge(n - 2, n - 1));
+						assertTrue(s.isDAG());
+					}
+				} catch (Throwable e) {
+					synchronized (errors) {
+						errors.add(e);
+					}
+				}
+			});
+			reader.start();
+			readers.add(reader);
+		}
+		
+		for (int i = 0; i < 300; i++) {
+			final int node = i;
+			g.update(w -> {
+				w.addNode(node);
+				if (node > 0) w.addEdge(node - 1, node);
+			});
+		}
+		done.set(true);
+		for (Thread reader : readers) reader.join();
+		
+		assertTrue(errors.toString(), errors.isEmpty());
+		assertEquals(300, g.size());
+	}
+	
+}
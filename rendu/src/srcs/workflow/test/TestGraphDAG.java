@@ -0,0 +1,83 @@
+package srcs.workflow.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import srcs.workflow.graph.CycleException;
+import srcs.workflow.graph.Graph;
+import srcs.workflow.graph.GraphDAGImpl;
+import srcs.workflow.graph.GraphHashImpl;
+
+public class TestGraphDAG {
+	
+	private static <T> void assertTopological(Graph<T> g) {
+		List<T> order = g.topologicalOrder();
+		assertEquals(g.size(), order.size());
+		for (T from : g) {
+			for (T to : g.getNeighborsOut(from)) {
+				assertTrue(order.indexOf(from) < order.indexOf(to));
+			}
+		}
+	}
+	
+	@Test
+	public void test1() {
+		Graph<String> g = new GraphDAGImpl<>();
+		g.addNode("D");
+		g.addNode("C");
+		g.addNode("B");
+		g.addNode("A");
+		// Arcs à contre-sens de l'ordre d'insertion : réordonnancement
+		g.addEdge("A", "B");
+		g.addEdge("B", "C");
+		g.addEdge("C", "D");
+		assertTopological(g);
+		
+		assertThrows(IllegalArgumentException.class, ()-> g.addEdge("A", "B"));
+		assertThrows(IllegalArgumentException.class, ()-> g.addEdge("A", "Z"));
+		
+		CycleException e = assertThrows(CycleException.class, ()-> g.addEdge("D", "A"));
+		assertEquals(Arrays.asList("D", "A", "B", "C", "D"), e.getCycle());
+		assertThrows(CycleException.class, ()-> g.addEdge("B", "B"));
+		
+		// Le graphe n'a pas été modifié
+		assertFalse(g.existEdge("D", "A"));
+		assertTrue(g.isDAG());
+		assertTopological(g);
+	}
+	
+	@Test
+	public void test2() {
+		// Insertion aléatoire : le graphe doit rester identique à celui obtenu en
+		// n'ajoutant que les arcs qui ne créent pas de cycle.
+		Random rand = new Random(21_42_84);
+		int n = 200;
+		Graph<Integer> dag = new GraphDAGImpl<>();
+		Graph<Integer> reference = new GraphHashImpl<>();
+		for (int i = 0; i < n; i++) {
+			dag.addNode(i);
+			reference.addNode(i);
+		}
+		for (int k = 0; k < 2000; k++) {
+			int from = rand.nextInt(n), to = rand.nextInt(n);
+			if (reference.existEdge(from, to)) continue;
+			boolean createsCycle = (from == to) || reference.canReach(to, from);
+			if (createsCycle) {
+				assertThrows(CycleException.class, ()-> dag.addEdge(from, to));
+			} else {
+				dag.addEdge(from, to);
+				reference.addEdge(from, to);
+			}
+		}
+		assertTopological(dag);
+	}
+	
+}
@@ -0,0 +1,14 @@
+package srcs.workflow.test;
+
+import srcs.workflow.graph.Graph;
+import srcs.workflow.graph.GraphHashImpl;
+
+/** Mêmes tests que TestGraph, sur l'implémentation indexée par table de hachage. */
+public class TestGraphHash extends TestGraph {
+	
+	@Override
+	protected <T> Graph<T> newGraph() {
+		return new GraphHashImpl<>();
+	}
+	
+}
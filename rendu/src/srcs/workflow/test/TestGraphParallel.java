@@ -0,0 +1,99 @@
+package srcs.workflow.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+import srcs.workflow.graph.Graph;
+import srcs.workflow.graph.GraphCSR;
+import srcs.workflow.graph.GraphHashImpl;
+import srcs.workflow.graph.GraphParallel;
+
+public class TestGraphParallel {
+	
+	/** DAG aléatoire : chaque arc va d'un noeud vers un noeud de numéro plus grand. */
+	private static Graph<Integer> randomDAG(int n, int edgesPerNode, long seed) {
+		Random rand = new Random(seed);
+		Graph<Integer> g = new GraphHashImpl<>();
+		for (int i = 0; i < n; i++) {
+			g.addNode(i);
+		}
+		for (int i = 0; i < n - 1; i++) {
+			for (int k = 0; k < edgesPerNode; k++) {
+				int to = i + 1 + rand.nextInt(Math.min(n - i - 1, 100));
+				if ( ! g.existEdge(i, to)) g.addEdge(i, to);
+			}
+		}
+		return g;
+	}
+	
+	@Test
+	public void test1() {
+		GraphCSR<Integer> g = new GraphCSR<>(randomDAG(GraphParallel.PARALLEL_THRESHOLD + 1000, 3, 42));
+		int n = g.size();
+		
+		int[] degrees = GraphParallel.inDegrees(g);
+		for (int i = 0; i < n; i++) {
+			assertEquals(g.inDegree(i), degrees[i]);
+		}
+		
+		// Ordre topologique valide
+		int[] order = GraphParallel.topologicalOrderIds(g);
+		assertEquals(n, order.length);
+		int[] position = new int[n];
+		for (int i = 0; i < n; i++) {
+			position[order[i]] = i;
+		}
+		for (int node = 0; node < n; node++) {
+			for (int k = 0; k < g.outDegree(node); k++) {
+				assertTrue(position[node] < position[g.outNeighbor(node, k)]);
+			}
+		}
+		
+		// Même accessibilité qu'un parcours séquentiel
+		int from = n / 2;
+		BitSet parallel = GraphParallel.reachableFrom(g, from);
+		BitSet sequential = new BitSet(n);
+		int[] stack = new int[n];
+		int top = 0;
+		stack[top++] = from;
+		while (top > 0) {
+			int node = stack[--top];
+			for (int k = 0; k < g.outDegree(node); k++) {
+				int next = g.outNeighbor(node, k);
+				if ( ! sequential.get(next)) {
+					sequential.set(next);
+					stack[top++] = next;
+				}
+			}
+		}
+		assertEquals(sequential, parallel);
+		assertEquals(sequential.cardinality(), g.accessible(g.value(from)).size());
+	}
+	
+	@Test
+	public void test2() {
+		// Petits graphes et graphes cycliques
+		Graph<String> g = new GraphHashImpl<>();
+		g.addNode("A");
+		g.addNode("B");
+		g.addNode("C");
+		g.addEdge("A", "B");
+		g.addEdge("B", "C");
+		GraphCSR<String> csr = new GraphCSR<>(g);
+		assertArrayEquals(new int[] {0, 1, 2}, GraphParallel.topologicalOrderIds(csr));
+		assertEquals(2, GraphParallel.reachableFrom(csr, 0).cardinality());
+		
+		g.addEdge("C", "A");
+		csr = new GraphCSR<>(g);
+		assertNull(GraphParallel.topologicalOrderIds(csr));
+		assertTrue(GraphParallel.reachableFrom(csr, 0).get(0));
+	}
+	
+}
@@ -0,0 +1,90 @@
+package srcs.workflow.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import srcs.workflow.graph.Graph;
+import srcs.workflow.graph.GraphCSR;
+import srcs.workflow.graph.GraphHashImpl;
+import srcs.workflow.graph.GraphPartitioner;
+
+public class TestGraphPartitioner {
+	
+	/** k chaînes indépendantes de length noeuds, déclarées dans le désordre
+	 *  (noeud i de la chaîne c : c * length + i). */
+	private static GraphCSR<Integer> chains(int k, int length) {
+		Graph<Integer> g = new GraphHashImpl<>();
+		for (int i = 0; i < length; i++) {
+			for (int c = 0; c < k; c++) {
+				g.addNode(c * length + i);
+			}
+		}
+		for (int c = 0; c < k; c++) {
+			for (int i = 1; i < length; i++) {
+				g.addEdge(c * length + i - 1, c * length + i);
+			}
+		}
+		return new GraphCSR<>(g);
+	}
+	
+	@Test
+	public void test1() {
+		// Des chaînes indépendantes doivent être découpées sans aucun arc coupé
+		GraphCSR<Integer> g = chains(4, 25);
+		int[] part = GraphPartitioner.partition(g, 4, null);
+		assertEquals(0, GraphPartitioner.cutWeight(g, part, null));
+		
+		// Parties équilibrées
+		int[] loads = new int[4];
+		for (int p : part) loads[p]++;
+		for (int load : loads) assertEquals(25, load);
+	}
+	
+	@Test
+	public void test2() {
+		// Diamant A -> B, A -> C, B -> D, C -> D, en deux parties de deux noeuds :
+		// le résultat de B est énorme, B et D doivent rester ensemble.
+		Graph<String> source = new GraphHashImpl<>();
+		for (String n : new String[] {"A", "B", "C", "D"}) source.addNode(n);
+		source.addEdge("A", "B");
+		source.addEdge("A", "C");
+		source.addEdge("B", "D");
+		source.addEdge("C", "D");
+		GraphCSR<String> g = new GraphCSR<>(source);
+		
+		long[] weights = new long[4];
+		weights[g.id("B")] = 1_000_000;
+		int[] part = GraphPartitioner.partition(g, 2, weights);
+		assertEquals(part[g.id("B")], part[g.id("D")]);
+		assertTrue(GraphPartitioner.cutWeight(g, part, weights) < 1_000_000);
+	}
+	
+	@Test
+	public void test3() {
+		// Grand graphe en couches : le découpage reste équilibré et coupe bien moins
+		// d'arcs qu'une répartition en tourniquet.
+		int k = 8, layers = 200, width = 40;
+		Graph<Integer> source = new GraphHashImpl<>();
+		for (int i = 0; i < layers * width; i++) source.addNode(i);
+		for (int l = 1; l < layers; l++) {
+			for (int w = 0; w < width; w++) {
+				source.addEdge((l - 1) * width + w, l * width + w);
+				source.addEdge((l - 1) * width + (w + 1) % width, l * width + w);
+			}
+		}
+		GraphCSR<Integer> g = new GraphCSR<>(source);
+		int[] part = GraphPartitioner.partition(g, k, null);
+		
+		int[] loads = new int[k];
+		for (int p : part) loads[p]++;
+		int capacity = (int) Math.ceil(Math.ceil((double) g.size() / k) * (1 + GraphPartitioner.IMBALANCE));
+		for (int load : loads) assertTrue(load <= capacity);
+		
+		int[] roundRobin = new int[g.size()];
+		for (int i = 0; i < roundRobin.length; i++) roundRobin[i] = i % k;
+		assertTrue(GraphPartitioner.cutWeight(g, part, null) * 4 < GraphPartitioner.cutWeight(g, roundRobin, null));
+	}
+	
+}
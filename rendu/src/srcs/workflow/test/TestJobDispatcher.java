@@ -0,0 +1,112 @@
+package srcs.workflow.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import srcs.workflow.graph.GraphCSR;
+import srcs.workflow.job.Context;
+import srcs.workflow.job.Job;
+import srcs.workflow.job.JobDispatcher;
+import srcs.workflow.job.JobStructure;
+import srcs.workflow.job.JobValidator;
+import srcs.workflow.job.LinkFrom;
+import srcs.workflow.job.Task;
+
+public class TestJobDispatcher {
+	
+	@SuppressWarnings("serial")
+	private static class DispatchJob extends Job {
+		public DispatchJob(String name, Map<String, Object> context) {
+			super(name, context);
+		}
+		
+		@Task("A")
+		public int a(@Context("x") Integer x) {return x * 2;}
+		
+		@Task("B")
+		private String b(@LinkFrom("A") int a, @Context("s") String s) {return s + a;}
+		
+		@Task("C")
+		public Integer c(@LinkFrom("A") int a) {throw new IllegalStateException("échec " + a);}
+		
+		// Trop de paramètres pour un appel direct : repli sur TaskInvoker
+		@Task("D")
+		public int d(@LinkFrom("A") int a, @LinkFrom("B") String b, @Context("x") Integer x1,
+				@Context("x") Integer x2, @Context("s") String s) {return a + b.length() + x1 + x2 + s.length();}
+	}
+	
+	@Test
+	public void test1() throws Exception {
+		Map<String, Object> context = new HashMap<>();
+		context.put("x", 21);
+		context.put("s", "v");
+		Job job = new DispatchJob("Job", context);
+		JobStructure structure = new JobValidator(job).getStructure();
+		JobDispatcher dispatcher = structure.getDispatcher();
+		GraphCSR<String> graph = structure.getTaskGraph();
+		int a = graph.id("A"), b = graph.id("B"), c = graph.id("C"), d = graph.id("D");
+		
+		assertTrue(dispatcher.isDirect(a));
+		assertTrue(dispatcher.isDirect(b));
+		assertFalse(dispatcher.isDirect(d));
+		
+		Object[] results = new Object[graph.size()];
+		Object[] contextValues = structure.contextValues(job);
+		results[a] = dispatcher.dispatch(a, job, results, contextValues);
+		assertEquals(42, results[a]);
+		results[b] = dispatcher.dispatch(b, job, results, contextValues);
+		assertEquals("v42", results[b]);
+		assertEquals(42 + 3 + 21 + 21 + 1, dispatcher.dispatch(d, job, results, contextValues));
+		
+		// Arguments déjà prêts, comme sur un TaskTracker
+		int task = structure.taskIdOf("b", new Class<?>[] {int.class, String.class});
+		assertEquals(b, task);
+		assertEquals("w1", dispatcher.dispatchWithArguments(task, job, new Object[] {1, "w"}));
+		assertEquals(-1, structure.taskIdOf("b", new Class<?>[0]));
+		
+		// Comme Method.invoke : l'exception de la tâche est enveloppée
+		InvocationTargetException e = assertThrows(InvocationTargetException.class,
+				() -> dispatcher.dispatch(c, job, results, contextValues));
+		assertTrue(e.getCause() instanceof IllegalStateException);
+	}
+	
+	// Arguments qui ne conviennent pas : IllegalArgumentException, comme TaskInvoker ;
+	// une ClassCastException jetée par la tâche elle-même reste enveloppée
+	@Test
+	public void test2() throws Exception {
+		Map<String, Object> context = new HashMap<>();
+		context.put("x", 21);
+		context.put("s", "v");
+		Job job = new DispatchJob("Job", context);
+		JobStructure structure = new JobValidator(job).getStructure();
+		JobDispatcher dispatcher = structure.getDispatcher();
+		GraphCSR<String> graph = structure.getTaskGraph();
+		int a = graph.id("A"), b = graph.id("B"), c = graph.id("C");
+		Object[] results = new Object[graph.size()];
+		Object[] contextValues = structure.contextValues(job);
+		// Contexte modifié après la validation : "x" n'est plus un entier
+		for (int i = 0; i < contextValues.length; i++) {
+			if (contextValues[i] instanceof Integer) contextValues[i] = "pas un entier";
+		}
+		
+		assertThrows(IllegalArgumentException.class, () -> dispatcher.dispatch(a, job, results, contextValues));
+		// Résultat absent (null) pour un paramètre int
+		assertThrows(IllegalArgumentException.class, () -> dispatcher.dispatch(b, job, results, contextValues));
+		assertThrows(IllegalArgumentException.class, () -> dispatcher.dispatchWithArguments(b, job, new Object[] {"1", "w"}));
+		assertThrows(IllegalArgumentException.class, () -> dispatcher.dispatchWithArguments(b, job, new Object[] {1}));
+		
+		results[a] = 3;
+		InvocationTargetException e = assertThrows(InvocationTargetException.class,
+				() -> dispatcher.dispatch(c, job, results, contextValues));
+		assertTrue(e.getCause() instanceof IllegalStateException);
+	}
+	
+}
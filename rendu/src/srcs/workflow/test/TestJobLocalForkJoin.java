@@ -0,0 +1,73 @@
+package srcs.workflow.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import srcs.workflow.executor.JobExecutor;
+import srcs.workflow.executor.JobExecutorForkJoin;
+import srcs.workflow.job.Job;
+import srcs.workflow.job.LinkFrom;
+import srcs.workflow.job.Task;
+
+public class TestJobLocalForkJoin {
+
+	@Test
+	public void test() throws Exception {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for(JobTest jobtest : JobTests.jobtests()) {
+				JobForTest job = jobtest.getJob();
+				job.reset();
+				JobExecutor je = new JobExecutorForkJoin(job, pool);
+				Map<String,Object> res = je.execute();
+				jobtest.check(res);
+				
+				Integer my_pid = Integer.parseInt(ManagementFactory.getRuntimeMXBean().getName().split("@")[0]);
+				assertEquals(1,job.getMappingTaskPid().values().stream().distinct().count());
+				assertEquals(my_pid, job.getMappingTaskPid().get("A"));
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	// Une tâche qui échoue arrête l'exécution, l'exception est renvoyée par execute()
+	@Test(timeout = 10000)
+	public void test2() throws Exception {
+		Job job = new Job("Job", new HashMap<>()) {
+			private static final long serialVersionUID = 1L;
+			@Task("A")
+			public Integer a() {return 1;}
+			@Task("B")
+			public Integer b(@LinkFrom("A") Integer a) {throw new IllegalStateException("échec");}
+			@Task("C")
+			public Integer c(@LinkFrom("B") Integer b) {return b;}
+		};
+		assertThrows(Exception.class, () -> new JobExecutorForkJoin(job).execute());
+	}
+
+	// Une exception après la tâche (ici, du listener) arrête aussi l'exécution : pas de succès sans résultats
+	@Test(timeout = 10000)
+	public void test3() throws Exception {
+		Job job = new Job("Job", new HashMap<>()) {
+			private static final long serialVersionUID = 1L;
+			@Task("A")
+			public Integer a() {return 1;}
+			@Task("B")
+			public Integer b(@LinkFrom("A") Integer a) {return a + 1;}
+		};
+		JobExecutor je = new JobExecutorForkJoin(job);
+		je.setTaskListener(result -> {
+			if (result.getTaskID().equals("A")) throw new IllegalStateException("listener");
+		});
+		assertThrows(Exception.class, () -> je.execute());
+	}
+
+}
@@ -1,14 +1,43 @@
 package srcs.workflow.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
 
 import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Test;
 
 import srcs.workflow.executor.JobExecutor;
+import srcs.workflow.executor.JobExecutorCallback;
+import srcs.workflow.executor.JobExecutorForkJoin;
 import srcs.workflow.executor.JobExecutorParallel;
+import srcs.workflow.executor.JobExecutorSequential;
+import srcs.workflow.executor.SpillingResultStore;
+import srcs.workflow.executor.TaskDurationHistory;
+import srcs.workflow.executor.TaskExecutors;
+import srcs.workflow.executor.TaskResult;
+import srcs.workflow.graph.Graph;
+import srcs.workflow.job.Context;
+import srcs.workflow.job.Job;
+import srcs.workflow.job.JobValidator;
+import srcs.workflow.job.LinkFrom;
+import srcs.workflow.job.Task;
 
 public class TestJobLocalParallel {
 
@@ -31,5 +60,539 @@ public class TestJobLocalParallel {
 		
 		
 	}
+	
+	// Une tâche qui échoue arrête l'exécution, même si aucune autre tâche n'est en cours
+	@Test(timeout = 10000)
+	public void test2() throws Exception {
+		Job job = new Job("Job", new HashMap<>()) {
+			private static final long serialVersionUID = 1L;
+			@Task("A")
+			public Integer a() {throw new IllegalStateException("échec");}
+			@Task("B")
+			public Integer b(@LinkFrom("A") Integer a) {return a;}
+		};
+		assertThrows(Exception.class, () -> new JobExecutorParallel(job).execute());
+	}
+	
+	// Pool borné, partagé entre les jobs : au plus 2 threads, et au plus 1 tâche à la fois pour un job
+	@Test
+	public void test3() throws Exception {
+		ExecutorService pool = TaskExecutors.boundedPool(2);
+		try {
+			for(JobTest jobtest : JobTests.jobtests()) {
+				JobForTest job = jobtest.getJob();
+				job.reset();
+				JobExecutor je = new JobExecutorParallel(job, pool);
+				jobtest.check(je.execute());
+				assertTrue(job.getMappingTaskThread().values().stream().distinct().count() <= 2);
+				
+				job.reset();
+				JobExecutorParallel single = new JobExecutorParallel(job, pool);
+				single.setMaxParallelTasks(1);
+				jobtest.check(single.execute());
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	// Un thread virtuel par tâche (Java 21 et plus)
+	@Test
+	public void test4() throws Exception {
+		assumeTrue(TaskExecutors.supportsVirtualThreads());
+		ExecutorService virtual = TaskExecutors.virtualThreadPerTask();
+		try {
+			for(JobTest jobtest : JobTests.jobtests()) {
+				JobForTest job = jobtest.getJob();
+				job.reset();
+				jobtest.check(new JobExecutorParallel(job, virtual).execute());
+				assertEquals(job.getMappingTaskThread().size(),job.getMappingTaskThread().values().stream().distinct().count());
+			}
+		} finally {
+			virtual.shutdown();
+		}
+	}
+	
+	// executeAsync : plusieurs jobs en cours sans thread qui attend, futurs par tâche
+	@Test(timeout = 20000)
+	public void test5() throws Exception {
+		List<CompletableFuture<Map<String,Object>>> futures = new ArrayList<>();
+		List<CompletableFuture<Object>> firsts = new ArrayList<>();
+		List<JobTest> jobtests = JobTests.jobtests();
+		for(JobTest jobtest : jobtests) {
+			JobForTest job = jobtest.getJob();
+			job.reset();
+			JobExecutor je = new JobExecutorParallel(job);
+			firsts.add(je.taskFuture("A"));
+			futures.add(je.executeAsync());
+		}
+		for (int i = 0; i < futures.size(); i++) {
+			Map<String,Object> res = futures.get(i).get();
+			jobtests.get(i).check(res);
+			assertTrue(firsts.get(i).isDone());
+			assertEquals(res.get("A"), firsts.get(i).get());
+		}
+		
+		// Échec : le futur du job et ceux des tâches non terminées échouent
+		Job job = new Job("Job", new HashMap<>()) {
+			private static final long serialVersionUID = 1L;
+			@Task("A")
+			public Integer a() {throw new IllegalStateException("échec");}
+			@Task("B")
+			public Integer b(@LinkFrom("A") Integer a) {return a;}
+		};
+		JobExecutor je = new JobExecutorParallel(job);
+		CompletableFuture<Object> b = je.taskFuture("B");
+		CompletableFuture<Map<String,Object>> future = je.executeAsync();
+		assertThrows(ExecutionException.class, () -> future.get());
+		assertThrows(ExecutionException.class, () -> b.get());
+		assertFalse(future.isCancelled());
+		
+		// Tâche inconnue : le futur échoue, même si le job réussit
+		JobForTest valid = jobtests.get(0).getJob();
+		valid.reset();
+		JobExecutor other = new JobExecutorParallel(valid);
+		CompletableFuture<Object> unknown = other.taskFuture("Z");
+		other.execute();
+		ExecutionException e = assertThrows(ExecutionException.class, () -> unknown.get());
+		assertTrue(e.getCause() instanceof IllegalArgumentException);
+	}
+	
+	// resultPublisher : résultats publiés un par un, dans l'ordre de fin des tâches, puis fin du flux
+	@Test(timeout = 20000)
+	public void test6() throws Exception {
+		for(JobTest jobtest : JobTests.jobtests()) {
+			JobForTest job = jobtest.getJob();
+			job.reset();
+			JobExecutor je = new JobExecutorParallel(job);
+			ResultCollector collector = new ResultCollector();
+			je.resultPublisher().subscribe(collector);
+			Map<String,Object> res = je.execute();
+			collector.end.await();
+			assertEquals(null, collector.failure.get());
+			
+			// Un résultat par tâche, publié après ceux des tâches dont elle dépend
+			List<String> order = new ArrayList<>();
+			for (TaskResult r : collector.received) {
+				assertEquals(res.get(r.getTaskID()), r.getValue());
+				assertTrue(r.getDurationNanos() >= 0);
+				order.add(r.getTaskID());
+			}
+			assertEquals(res.size(), order.size());
+			Graph<String> graph = new JobValidator(job).getTaskGraph();
+			for (String task : graph) {
+				for (String dependency : graph.getNeighborsIn(task)) {
+					assertTrue(order.indexOf(dependency) < order.indexOf(task));
+				}
+			}
+		}
+		
+		// Échec : le flux se termine par l'exception du job (les résultats pas encore remis sont perdus)
+		Job job = new Job("Job", new HashMap<>()) {
+			private static final long serialVersionUID = 1L;
+			@Task("A")
+			public Integer a() {return 1;}
+			@Task("B")
+			public Integer b(@LinkFrom("A") Integer a) {throw new IllegalStateException("échec");}
+		};
+		JobExecutor je = new JobExecutorParallel(job);
+		ResultCollector collector = new ResultCollector();
+		je.resultPublisher().subscribe(collector);
+		Exception e = assertThrows(Exception.class, () -> je.execute());
+		collector.end.await();
+		assertEquals(e, collector.failure.get());
+		assertTrue(collector.received.size() <= 1);
+	}
+	
+	// Ordonnancement par chemin critique : avec une seule place, la longue chaîne passe en premier
+	@Test(timeout = 20000)
+	public void test7() throws Exception {
+		Job job = new Job("Job", new HashMap<>()) {
+			private static final long serialVersionUID = 1L;
+			@Task("S1")
+			public Integer s1() {return 1;}
+			@Task("S2")
+			public Integer s2() {return 2;}
+			@Task("L1")
+			public Integer l1() {return 10;}
+			@Task("L2")
+			public Integer l2(@LinkFrom("L1") Integer l1) {return l1 + 10;}
+			@Task("L3")
+			public Integer l3(@LinkFrom("L2") Integer l2) {return l2 + 10;}
+		};
+		
+		// Sans durée connue, le rang est la longueur du plus long chemin restant
+		TaskDurationHistory history = new TaskDurationHistory();
+		assertEquals(List.of("L1", "L2"), executionOrder(job, history).subList(0, 2));
+		
+		// Durées observées : S2 est maintenant plus longue que toute la chaîne
+		history = new TaskDurationHistory();
+		history.record(job.getClass(), "S1", 1_000);
+		history.record(job.getClass(), "S2", 100_000);
+		for (String l : List.of("L1", "L2", "L3")) history.record(job.getClass(), l, 10_000);
+		assertEquals(List.of("S2", "L1", "L2", "L3", "S1"), executionOrder(job, history));
+		
+		// Les durées mesurées sont enregistrées
+		JobExecutorParallel je = new JobExecutorParallel(job);
+		je.setMaxParallelTasks(1);
+		history = new TaskDurationHistory();
+		je.setPriorityScheduling(history);
+		je.execute();
+		assertTrue(history.estimate(job.getClass(), "L3") >= 0);
+		assertEquals(-1, history.estimate(job.getClass(), "inconnue"), 0);
+	}
+	
+	// Résultats renvoyés limités : les résultats intermédiaires sont libérés dès qu'ils ne sont plus lus
+	@Test(timeout = 20000)
+	public void test8() throws Exception {
+		Job job = new Job("Job", new HashMap<>()) {
+			private static final long serialVersionUID = 1L;
+			@Task("A")
+			public int[] a() {return new int[] {1, 2, 3};}
+			@Task("B")
+			public Integer b(@LinkFrom("A") int[] a) {return a.length;}
+			@Task("C")
+			public Integer c(@LinkFrom("A") int[] a, @LinkFrom("B") Integer b) {return a[0] + b;}
+			@Task("D")
+			public Integer d(@LinkFrom("B") Integer b) {return b * 2;}
+		};
+		
+		for (JobExecutor je : List.of(new JobExecutorSequential(job), new JobExecutorParallel(job), new JobExecutorForkJoin(job))) {
+			je.setReturnOnlySinks();
+			CompletableFuture<Object> a = je.taskFuture("A");
+			assertEquals(Map.of("C", 4, "D", 6), je.execute());
+			// Futur demandé avant l'exécution : le résultat est gardé
+			assertEquals(3, ((int[]) a.get()).length);
+			// Futur demandé après la fin de la tâche : le résultat a été libéré
+			assertThrows(ExecutionException.class, () -> je.taskFuture("B").get());
+		}
+		
+		JobExecutor je = new JobExecutorParallel(job);
+		je.setReturnedTasks(Set.of("B", "C"));
+		assertEquals(Map.of("B", 3, "C", 4), je.execute());
+		
+		// Tâche inconnue
+		JobExecutor unknown = new JobExecutorParallel(job);
+		unknown.setReturnedTasks(Set.of("Z"));
+		assertThrows(IllegalArgumentException.class, () -> unknown.execute());
+		
+		// Plus aucun résultat non renvoyé n'est gardé à la fin de l'exécution
+		InspectedExecutor inspected = new InspectedExecutor(job);
+		inspected.setReturnedTasks(Set.of("D"));
+		assertEquals(Map.of("D", 6), inspected.execute());
+		int kept = 0;
+		for (Object result : inspected.taskResults()) {
+			if (result != null) kept++;
+		}
+		assertEquals(1, kept);
+	}
+	
+	// SpillingResultStore : gros résultats écrits sur disque, au plus maxResidentBytes en mémoire
+	@Test
+	public void test9() throws Exception {
+		Object[] slots = new Object[3];
+		SpillingResultStore store = new SpillingResultStore(slots, 100, 1000);
+		store.put(0, new byte[800]);
+		assertTrue(slots[0] != null);
+		// Pas la place pour les deux : le moins récemment lu est oublié
+		store.put(1, new byte[800]);
+		assertEquals(null, slots[0]);
+		assertTrue(slots[1] != null);
+		// Relu pour être lu par une tâche, l'autre est oublié
+		store.pin(0);
+		assertEquals(800, ((byte[]) slots[0]).length);
+		assertEquals(null, slots[1]);
+		// Ni oublié tant qu'il est épinglé, ni gardé en mémoire par get
+		assertEquals(800, ((byte[]) store.get(1)).length);
+		assertTrue(slots[0] != null);
+		assertEquals(null, slots[1]);
+		store.unpin(0);
+		// Petit résultat : toujours en mémoire
+		store.put(2, "petit");
+		assertEquals("petit", slots[2]);
+		store.release(1);
+		assertEquals(null, store.get(1));
+		store.close();
+		
+		// Job dont tous les gros résultats sont sur disque (rien en mémoire entre deux tâches)
+		Job job = new Job("Job", new HashMap<>()) {
+			private static final long serialVersionUID = 1L;
+			@Task("A")
+			public int[] a() {return new int[10_000];}
+			@Task("B")
+			public int[] b(@LinkFrom("A") int[] a) {
+				int[] b = a.clone();
+				b[0] = 1;
+				return b;
+			}
+			@Task("C")
+			public double[] c(@LinkFrom("A") int[] a) {return new double[a.length];}
+			@Task("D")
+			public Integer d(@LinkFrom("B") int[] b, @LinkFrom("C") double[] c) {return b[0] + b.length + c.length;}
+		};
+		List<Path> directories = new ArrayList<>();
+		JobExecutorParallel je = new JobExecutorParallel(job);
+		je.setResultStore(taskResults -> new SpillingResultStore(taskResults, 1024, 0) {
+			@Override
+			protected synchronized Path directory() throws java.io.IOException {
+				Path directory = super.directory();
+				if ( ! directories.contains(directory)) directories.add(directory);
+				return directory;
+			}
+		});
+		CompletableFuture<Object> b = je.taskFuture("B");
+		Map<String, Object> res = je.execute();
+		assertEquals(20_001, res.get("D"));
+		assertEquals(10_000, ((int[]) res.get("A")).length);
+		assertEquals(1, ((int[]) b.get())[0]);
+		// Fichiers supprimés à la fin de l'exécution
+		assertEquals(1, directories.size());
+		assertFalse(Files.exists(directories.get(0)));
+		
+		// Avec seulement le résultat final renvoyé, les fichiers sont supprimés au fil de l'exécution
+		je = new JobExecutorParallel(job);
+		je.setResultStore(SpillingResultStore.factory(1024, 0));
+		je.setReturnOnlySinks();
+		assertEquals(Map.of("D", 20_001), je.execute());
+	}
+	
+	/** Donne accès aux résultats gardés par le JobExecutor */
+	private static class InspectedExecutor extends JobExecutorParallel {
+		InspectedExecutor(Job job) {
+			super(job);
+		}
+		Object[] taskResults() {
+			return taskResults;
+		}
+	}
+	
+	// Une exception après la tâche (ici, du listener) termine le job en échec, sans le bloquer
+	@Test(timeout = 10000)
+	public void test10() throws Exception {
+		Job job = new Job("Job", new HashMap<>()) {
+			private static final long serialVersionUID = 1L;
+			@Task("A")
+			public Integer a() {return 1;}
+			@Task("B")
+			public Integer b(@LinkFrom("A") Integer a) {return a + 1;}
+		};
+		JobExecutor je = new JobExecutorParallel(job);
+		je.setTaskListener(result -> {
+			if (result.getTaskID().equals("A")) throw new IllegalStateException("listener");
+		});
+		assertThrows(Exception.class, () -> je.execute());
+	}
+	
+	// Un même JobExecutor peut relancer son job : l'échec et le flux fermé de l'exécution précédente sont oubliés
+	@Test(timeout = 10000)
+	public void test11() throws Exception {
+		Map<String, Object> context = new HashMap<>();
+		context.put("fail", true);
+		Job job = new Job("Job", context) {
+			private static final long serialVersionUID = 1L;
+			@Task("A")
+			public Integer a(@Context("fail") Boolean fail) {
+				if (fail) throw new IllegalStateException("échec");
+				return 1;
+			}
+		};
+		JobExecutor je = new JobExecutorParallel(job);
+		ResultCollector first = new ResultCollector();
+		je.resultPublisher().subscribe(first);
+		assertThrows(Exception.class, () -> je.execute());
+		first.end.await();
+		assertTrue(first.failure.get() != null);
+		
+		// Demandé avant la relance : le flux fermé est remplacé par celui de la prochaine exécution
+		context.put("fail", false);
+		ResultCollector collector = new ResultCollector();
+		je.resultPublisher().subscribe(collector);
+		CompletableFuture<Map<String, Object>> second = je.executeAsync();
+		assertEquals(1, second.get().get("A"));
+		collector.end.await();
+		assertEquals(null, collector.failure.get());
+		assertEquals(1, collector.received.size());
+		assertEquals(1, je.taskFuture("A").get());
+	}
+	
+	// Relance : les futurs des tâches suivent la nouvelle exécution
+	@Test(timeout = 10000)
+	public void test12() throws Exception {
+		Map<String, Object> context = new HashMap<>();
+		context.put("x", 1);
+		Job job = new Job("Job", context) {
+			private static final long serialVersionUID = 1L;
+			@Task("A")
+			public Integer a(@Context("x") Integer x) {return x;}
+		};
+		JobExecutor je = new JobExecutorParallel(job);
+		je.execute();
+		assertEquals(1, je.taskFuture("A").get());
+		
+		context.put("x", 2);
+		CompletableFuture<Object> a = je.taskFuture("A"); // demandé avant la relance : celui de la première exécution
+		assertEquals(2, je.execute().get("A"));
+		assertEquals(1, a.get());
+		assertEquals(2, je.taskFuture("A").get());
+	}
+
+	// SpillingResultStore : taille des objets d'après leur sérialisation, épinglages simultanés
+	@Test(timeout = 10000)
+	public void test13() throws Exception {
+		Object[] slots = new Object[3];
+		SpillingResultStore store = new SpillingResultStore(slots, 1000, 0);
+		// Moins de 1000 octets sérialisés, non sérialisable : en mémoire
+		ArrayList<Integer> small = new ArrayList<>(List.of(1, 2, 3));
+		store.put(0, small);
+		assertTrue(slots[0] == small);
+		Object notSerializable = new Object();
+		store.put(1, notSerializable);
+		assertTrue(slots[1] == notSerializable);
+		// Plus de 1000 octets : sur disque (rien en mémoire)
+		ArrayList<Integer> big = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) big.add(i);
+		store.put(2, big);
+		assertEquals(null, slots[2]);
+
+		// Plusieurs tâches épinglent le résultat en même temps : toutes le trouvent en mémoire
+		ExecutorService executor = TaskExecutors.boundedPool(8);
+		try {
+			List<CompletableFuture<Object>> pinned = new ArrayList<>();
+			for (int k = 0; k < 8; k++) {
+				pinned.add(CompletableFuture.supplyAsync( () -> {
+					try {
+						store.pin(2);
+					} catch (Exception e) {
+						throw new RuntimeException(e);
+					}
+					return slots[2];
+				}, executor));
+			}
+			for (CompletableFuture<Object> p : pinned) assertEquals(big, p.get());
+		} finally {
+			executor.shutdown();
+		}
+		// Oublié au dernier désépinglage seulement
+		for (int k = 0; k < 7; k++) store.unpin(2);
+		assertTrue(slots[2] != null);
+		store.unpin(2);
+		assertEquals(null, slots[2]);
+		assertEquals(big, store.get(2));
+		store.close();
+	}
+
+	// Job invalide : échec du job, prévenu aux futurs des tâches et aux abonnés comme tout autre échec
+	@Test(timeout = 10000)
+	public void test14() throws Exception {
+		Job job = new Job("Job", new HashMap<>()) {
+			private static final long serialVersionUID = 1L;
+			@Task("A")
+			public Integer a(@LinkFrom("Z") Integer z) {return z;}
+		};
+		for (JobExecutor je : List.of(new JobExecutorSequential(job), new JobExecutorParallel(job), new JobExecutorForkJoin(job))) {
+			CompletableFuture<Object> a = je.taskFuture("A");
+			ResultCollector collector = new ResultCollector();
+			je.resultPublisher().subscribe(collector);
+			assertThrows(Exception.class, () -> je.execute());
+			assertThrows(ExecutionException.class, () -> a.get());
+			collector.end.await();
+			assertTrue(collector.failure.get() != null);
+		}
+	}
+
+	// Exécution pour un client distant : seules les valeurs demandées sont transmises une à une
+	@Test(timeout = 10000)
+	public void test15() throws Exception {
+		Job job = new Job("Job", new HashMap<>()) {
+			private static final long serialVersionUID = 1L;
+			@Task("A")
+			public Integer a() {return 1;}
+			@Task("B")
+			public Integer b(@LinkFrom("A") Integer a) {return a + 1;}
+		};
+		List<TaskResult> received = new ArrayList<>();
+		CompletableFuture<Map<String, Object>> end = new CompletableFuture<>();
+		JobExecutorCallback callback = new JobExecutorCallback() {
+			@Override
+			public void taskFinished(TaskResult result) {received.add(result);}
+			@Override
+			public void jobFinished(Map<String, Object> results) {end.complete(results);}
+			@Override
+			public void jobFailed(Exception cause) {end.completeExceptionally(cause);}
+		};
+		new JobExecutorParallel(job).executeAsync(callback, Set.of("B")).get();
+		assertEquals(Map.of("A", 1, "B", 2), end.get());
+		assertEquals(2, received.size());
+		for (TaskResult result : received) {
+			boolean streamed = result.getTaskID().equals("B");
+			assertEquals(streamed, result.hasValue());
+			assertEquals(streamed ? 2 : null, result.getValue());
+			assertTrue(result.getDurationNanos() >= 0);
+		}
+	}
+
+	// SpillingResultStore : un résultat que rien ne lit plus n'est pas écrit, gros fichiers relus comme un flux
+	@Test(timeout = 20000)
+	public void test16() throws Exception {
+		Job job = new Job("Job", new HashMap<>()) {
+			private static final long serialVersionUID = 1L;
+			@Task("A")
+			public int[] a() {return new int[300_000];}
+			@Task("B")
+			public int[] b(@LinkFrom("A") int[] a) {return new int[a.length];}
+		};
+		List<Integer> written = new ArrayList<>();
+		JobExecutorParallel je = new JobExecutorParallel(job);
+		je.setResultStore(taskResults -> new SpillingResultStore(taskResults, 1024, 0) {
+			@Override
+			public void put(int task, Object value) throws java.io.IOException {
+				synchronized (written) {
+					written.add(task);
+				}
+				super.put(task, value);
+			}
+		});
+		je.setReturnedTasks(Set.of("A"));
+		Map<String, Object> res = je.execute();
+		assertEquals(300_000, ((int[]) res.get("A")).length);
+		// Seul A est écrit (plus de READ_ALL_MAX octets : relu comme un flux par B, puis à la fin)
+		assertEquals(1, written.size());
+	}
+
+	/** Ordre d'exécution des tâches avec une seule tâche à la fois, par priorité */
+	private static List<String> executionOrder(Job job, TaskDurationHistory history) throws Exception {
+		JobExecutorParallel je = new JobExecutorParallel(job);
+		je.setMaxParallelTasks(1);
+		je.setPriorityScheduling(history);
+		List<String> order = new ArrayList<>();
+		je.setTaskListener(result -> order.add(result.getTaskID()));
+		je.execute();
+		return order;
+	}
+	
+	/** Abonné qui garde les résultats reçus, dans l'ordre */
+	private static class ResultCollector implements Flow.Subscriber<TaskResult> {
+		final List<TaskResult> received = new ArrayList<>();
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		final CountDownLatch end = new CountDownLatch(1);
+		
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			subscription.request(Long.MAX_VALUE);
+		}
+		@Override
+		public void onNext(TaskResult item) {
+			received.add(item);
+		}
+		@Override
+		public void onError(Throwable throwable) {
+			failure.set(throwable);
+			end.countDown();
+		}
+		@Override
+		public void onComplete() {
+			end.countDown();
+		}
+	}
 
 }
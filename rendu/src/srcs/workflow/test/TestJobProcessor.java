@@ -0,0 +1,259 @@
+package srcs.workflow.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import srcs.workflow.executor.JobExecutorSequential;
+import srcs.workflow.graph.GraphCSR;
+import srcs.workflow.job.Job;
+import srcs.workflow.job.JobDispatcher;
+import srcs.workflow.job.JobStructure;
+import srcs.workflow.job.JobValidator;
+import srcs.workflow.job.TaskTable;
+import srcs.workflow.processor.JobProcessor;
+
+public class TestJobProcessor {
+
+	private static final String HEADER = "package gen;\n"
+			+ "import java.util.Map;\n"
+			+ "import srcs.workflow.job.*;\n";
+
+	private static final String VALID = HEADER
+			+ "public class ValidJob extends Job {\n"
+			+ "	public ValidJob(String name, Map<String, Object> context) {super(name, context);}\n"
+			+ "	@Task(\"A\") public int a(@Context(\"x\") Integer x) {return x * 2;}\n"
+			+ "	@Task(\"B\") public String b(@LinkFrom(\"A\") int a, @Context(\"s\") String s) {return s + a;}\n"
+			+ "	@Task(\"C\") protected Integer c(@LinkFrom(\"A\") int a, @LinkFrom(\"B\") String b) {return a + b.length();}\n"
+			+ "}\n";
+
+	private Path dir;
+	private List<Diagnostic<? extends JavaFileObject>> diagnostics;
+
+	@Before
+	public void setUp() throws IOException {
+		dir = Files.createTempDirectory("jobprocessor");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		try (Stream<Path> files = Files.walk(dir)) {
+			files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	/** Compile les sources (nom de classe -> code) avec JobProcessor ; vrai si la compilation réussit. */
+	private boolean compile(Map<String, String> sources) throws IOException {
+		return compile(sources, true);
+	}
+
+	/**
+	 * Compile les sources, avec ou sans JobProcessor (sans : les tables déjà générées restent,
+	 * comme après une compilation incrémentale).
+	 */
+	private boolean compile(Map<String, String> sources, boolean withProcessor) throws IOException {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		assumeNotNull(compiler); // JRE sans compilateur
+		List<File> files = new ArrayList<>();
+		for (Map.Entry<String, String> source : sources.entrySet()) {
+			Path file = dir.resolve("gen").resolve(source.getKey() + ".java");
+			Files.createDirectories(file.getParent());
+			Files.write(file, source.getValue().getBytes(StandardCharsets.UTF_8));
+			files.add(file.toFile());
+		}
+		DiagnosticCollector<JavaFileObject> collector = new DiagnosticCollector<>();
+		try (StandardJavaFileManager manager = compiler.getStandardFileManager(collector, null, StandardCharsets.UTF_8)) {
+			List<String> options = new ArrayList<>(Arrays.asList("-d", dir.toString(), "-s", dir.toString(),
+					"-cp", System.getProperty("java.class.path"), "-encoding", "UTF-8"));
+			if ( ! withProcessor) options.add("-proc:none");
+			JavaCompiler.CompilationTask task = compiler.getTask(null, manager, collector, options, null,
+					manager.getJavaFileObjectsFromFiles(files));
+			if (withProcessor) task.setProcessors(Arrays.asList(new JobProcessor()));
+			boolean ok = task.call();
+			diagnostics = collector.getDiagnostics();
+			return ok;
+		}
+	}
+
+	private boolean hasError(String message) {
+		for (Diagnostic<? extends JavaFileObject> d : diagnostics) {
+			if ( (d.getKind() == Diagnostic.Kind.ERROR) && d.getMessage(null).contains(message) ) return true;
+		}
+		return false;
+	}
+
+	private static Map<String, String> source(String className, String body) {
+		Map<String, String> sources = new HashMap<>();
+		sources.put(className, HEADER
+				+ "public class " + className + " extends Job {\n"
+				+ "	public " + className + "(String name, Map<String, Object> context) {super(name, context);}\n"
+				+ body
+				+ "}\n");
+		return sources;
+	}
+
+	@Test
+	public void test1() throws Exception {
+		// Job valide : la table est générée, puis utilisée par JobStructure
+		Map<String, String> sources = new HashMap<>();
+		sources.put("ValidJob", VALID);
+		assertTrue(diagnostics + "", compile(sources));
+		assertTrue(Files.exists(dir.resolve("gen").resolve("ValidJob" + TaskTable.SUFFIX + ".java")));
+
+		try (URLClassLoader loader = new URLClassLoader(new URL[] {dir.toUri().toURL()},
+				getClass().getClassLoader())) {
+			Class<?> jobClass = loader.loadClass("gen.ValidJob");
+			Map<String, Object> context = new HashMap<>();
+			context.put("x", 21);
+			context.put("s", "v");
+			Job job = (Job) jobClass.getConstructor(String.class, Map.class).newInstance("Job", context);
+
+			JobStructure structure = new JobValidator(job).getStructure();
+			assertNotNull(loader.loadClass("gen.ValidJob" + TaskTable.SUFFIX));
+			GraphCSR<String> graph = structure.getTaskGraph();
+			assertEquals(3, graph.size());
+			assertTrue(graph.existEdge("A", "B"));
+			assertTrue(graph.existEdge("B", "C"));
+			assertEquals(1, structure.getReducedTaskGraph().getNeighborsIn("C").size());
+			assertEquals(2, structure.getContextRequirements().size());
+
+			JobDispatcher dispatcher = structure.getDispatcher();
+			int a = graph.id("A"), b = graph.id("B"), c = graph.id("C");
+			assertTrue(dispatcher.isDirect(a) && dispatcher.isDirect(b) && dispatcher.isDirect(c));
+			Object[] results = new Object[graph.size()];
+			Object[] contextValues = structure.contextValues(job);
+			results[a] = dispatcher.dispatch(a, job, results, contextValues);
+			results[b] = dispatcher.dispatch(b, job, results, contextValues);
+			results[c] = dispatcher.dispatch(c, job, results, contextValues);
+			assertEquals(42, results[a]);
+			assertEquals("v42", results[b]);
+			assertEquals(45, results[c]);
+			assertEquals(b, structure.taskIdOf("b", new Class<?>[] {int.class, String.class}));
+		}
+	}
+
+	@Test
+	public void test2() throws Exception {
+		// Les erreurs de structure sont des erreurs de compilation
+		assertFalse(compile(source("DuplicateJob",
+				"	@Task(\"A\") public int a() {return 1;}\n"
+				+ "	@Task(\"A\") public int b() {return 2;}\n")));
+		assertTrue(hasError("identifiant unique"));
+
+		assertFalse(compile(source("VoidJob", "	@Task(\"A\") public void a() {}\n")));
+		assertTrue(hasError("void"));
+
+		assertFalse(compile(source("StaticJob", "	@Task(\"A\") public static int a() {return 1;}\n")));
+		assertTrue(hasError("concrètes d'instance"));
+
+		assertFalse(compile(source("ParamJob", "	@Task(\"A\") public int a(int x) {return x;}\n")));
+		assertTrue(hasError("@Context OU (exclusif) @LinkFrom"));
+
+		assertFalse(compile(source("MissingJob", "	@Task(\"A\") public int a(@LinkFrom(\"Z\") int z) {return z;}\n")));
+		assertTrue(hasError("n'a pas été déclarée"));
+
+		assertFalse(compile(source("TypeJob",
+				"	@Task(\"A\") public int a() {return 1;}\n"
+				+ "	@Task(\"B\") public int b(@LinkFrom(\"A\") String a) {return 2;}\n")));
+		assertTrue(hasError("Assignation impossible"));
+
+		assertFalse(compile(source("CycleJob",
+				"	@Task(\"A\") public int a(@LinkFrom(\"B\") int b) {return b;}\n"
+				+ "	@Task(\"B\") public int b(@LinkFrom(\"A\") int a) {return a;}\n")));
+		assertTrue(hasError("cycle : A -> B -> A"));
+
+		Map<String, String> notJob = new HashMap<>();
+		notJob.put("NotJob", HEADER + "public class NotJob {\n	@Task(\"A\") public int a() {return 1;}\n}\n");
+		assertFalse(compile(notJob));
+		assertTrue(hasError("sous-classe de srcs.workflow.job.Job"));
+	}
+
+	@Test
+	public void test3() throws Exception {
+		// Tâche privée : le job est vérifié, mais aucune table n'est générée (repli sur la réflexion)
+		assertTrue(compile(source("PrivateJob",
+				"	@Task(\"A\") private int a() {return 1;}\n"
+				+ "	@Task(\"B\") public Integer b(@LinkFrom(\"A\") int a) {return a + 1;}\n")));
+		assertFalse(Files.exists(dir.resolve("gen").resolve("PrivateJob" + TaskTable.SUFFIX + ".java")));
+	}
+
+	@Test
+	public void test4() throws Exception {
+		// Classe imbriquée Foo$Bar et classe Foo_Bar : deux tables distinctes
+		Map<String, String> sources = source("Foo_Bar", "	@Task(\"A\") public int a() {return 1;}\n");
+		sources.put("Foo", HEADER
+				+ "public class Foo {\n"
+				+ "	public static class Bar extends Job {\n"
+				+ "		public Bar(String name, Map<String, Object> context) {super(name, context);}\n"
+				+ "		@Task(\"B\") public int b() {return 2;}\n"
+				+ "	}\n"
+				+ "}\n");
+		assertTrue(compile(sources));
+		assertTrue(Files.exists(dir.resolve("gen").resolve("Foo_0Bar" + TaskTable.SUFFIX + ".java")));
+		assertTrue(Files.exists(dir.resolve("gen").resolve("Foo_1Bar" + TaskTable.SUFFIX + ".java")));
+
+		try (URLClassLoader loader = new URLClassLoader(new URL[] {dir.toUri().toURL()}, getClass().getClassLoader())) {
+			TaskTable nested = (TaskTable) loader.loadClass("gen.Foo_0Bar" + TaskTable.SUFFIX).getDeclaredConstructor().newInstance();
+			TaskTable topLevel = (TaskTable) loader.loadClass("gen.Foo_1Bar" + TaskTable.SUFFIX).getDeclaredConstructor().newInstance();
+			assertEquals(Arrays.asList("B"), Arrays.asList(nested.taskIds()));
+			assertEquals(Arrays.asList("A"), Arrays.asList(topLevel.taskIds()));
+		}
+	}
+
+	@Test
+	public void test5() throws Exception {
+		// Table périmée : le job est recompilé sans JobProcessor après la modification d'un @LinkFrom
+		Map<String, String> sources = new HashMap<>();
+		sources.put("ValidJob", VALID);
+		assertTrue(diagnostics + "", compile(sources));
+		sources.put("ValidJob", VALID.replace("@LinkFrom(\"B\") String b", "@Context(\"s\") String b"));
+		assertTrue(diagnostics + "", compile(sources, false));
+
+		try (URLClassLoader loader = new URLClassLoader(new URL[] {dir.toUri().toURL()},
+				getClass().getClassLoader())) {
+			assertNotNull(loader.loadClass("gen.ValidJob" + TaskTable.SUFFIX));
+			Class<?> jobClass = loader.loadClass("gen.ValidJob");
+			Map<String, Object> context = new HashMap<>();
+			context.put("x", 21);
+			context.put("s", "v");
+			Job job = (Job) jobClass.getConstructor(String.class, Map.class).newInstance("Job", context);
+
+			// La table est ignorée : le graphe est celui des annotations
+			JobStructure structure = new JobValidator(job).getStructure();
+			GraphCSR<String> graph = structure.getTaskGraph();
+			assertFalse(graph.existEdge("B", "C"));
+			assertTrue(graph.existEdge("A", "C"));
+			assertEquals(3, structure.getContextRequirements().size());
+			assertEquals(43, new JobExecutorSequential(job).execute().get("C"));
+		}
+	}
+
+}
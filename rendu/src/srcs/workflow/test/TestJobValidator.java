@@ -1,9 +1,12 @@
 package srcs.workflow.test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
+import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -12,8 +15,10 @@ import org.junit.Test;
 import org.junit.runners.MethodSorters;
 
 import srcs.workflow.graph.Graph;
+import srcs.workflow.graph.GraphCSR;
 import srcs.workflow.job.Context;
 import srcs.workflow.job.Job;
+import srcs.workflow.job.JobStructure;
 import srcs.workflow.job.JobValidator;
 import srcs.workflow.job.LinkFrom;
 import srcs.workflow.job.Task;
@@ -132,7 +137,9 @@ public class TestJobValidator {
 			@Task("B")
 			public  Integer g(@LinkFrom("A") Integer x) {return 3;}
 		};
-		assertThrows(ValidationException.class, () ->new JobValidator(job));
+		ValidationException e = assertThrows(ValidationException.class, () ->new JobValidator(job));
+		// Le cycle est indiqué dans le message
+		assertTrue(e.getMessage().contains("A -> B -> A") || e.getMessage().contains("B -> A -> B"));
 	}
 	
 	
@@ -236,4 +243,108 @@ public class TestJobValidator {
 	}
 	
 	
+	//structure calculée une seule fois par classe, contexte vérifié pour chaque job
+	@Test
+	public void test13() throws ValidationException {
+		Map<String,Object> context  =new HashMap<>();
+		context.put("X", "Bonjour");
+		context.put("Z", Integer.valueOf(5));
+		JobValidator jv1 = new JobValidator(new JobWithContext("Job1",context));
+		JobValidator jv2 = new JobValidator(new JobWithContext("Job2",context));
+		assertSame(jv1.getStructure(), jv2.getStructure());
+		assertSame(jv1.getTaskGraph(), jv2.getTaskGraph());
+		assertThrows(UnsupportedOperationException.class, () ->jv1.getTaskGraph().addNode("F"));
+		
+		// Même classe, mais contexte incomplet
+		Map<String,Object> partial  =new HashMap<>();
+		partial.put("X", "Bonjour");
+		assertThrows(ValidationException.class, () ->new JobValidator(new JobWithContext("Job3",partial)));
+		
+		// Une classe non conforme le reste, à chaque validation
+		Job job = new Job("Job", new HashMap<>()) {
+			private static final long serialVersionUID = 1L;
+			@Task("A")
+			public Integer a(@LinkFrom("B") Integer b) {return 1;}
+			@Task("B")
+			public Integer b(@LinkFrom("A") Integer a) {return 1;}
+		};
+		ValidationException e1 = assertThrows(ValidationException.class, () ->new JobValidator(job));
+		ValidationException e2 = assertThrows(ValidationException.class, () ->new JobValidator(job));
+		assertEquals(e1.getMessage(), e2.getMessage());
+	}
+	
+	
+	//plans de liaison : arguments construits à partir des identifiants de tâches et du contexte
+	@Test
+	public void test14() throws ValidationException {
+		Map<String,Object> context  =new HashMap<>();
+		context.put("X", "Bonjour");
+		context.put("Z", Integer.valueOf(5));
+		Job job = new JobWithContext("Job",context);
+		JobStructure structure = new JobValidator(job).getStructure();
+		GraphCSR<String> graph = structure.getTaskGraph();
+		assertEquals(graph.size(), structure.getReducedTaskGraph().size());
+		assertEquals("E", structure.getReducedTaskGraph().value(graph.id("E")));
+		
+		Object[] results = new Object[graph.size()];
+		results[graph.id("A")] = 2;
+		results[graph.id("C")] = "2";
+		int e = graph.id("E");
+		assertEquals("e", structure.getMethod(e).getName());
+		assertArrayEquals(new Object[] {2, "2", "Bonjour"},
+				structure.bindArguments(e, results, structure.contextValues(job)));
+		
+		// Ordre topologique : chaque tâche après ses dépendances, calculé une seule fois
+		int[] order = structure.getTopologicalOrder();
+		assertEquals(graph.size(), order.length);
+		int[] rank = new int[order.length];
+		for (int i = 0; i < order.length; i++) rank[order[i]] = i;
+		for (String from : graph) {
+			for (String to : graph.getNeighborsOut(from)) {
+				assertTrue(rank[graph.id(from)] < rank[graph.id(to)]);
+			}
+		}
+		assertSame(order, structure.getTopologicalOrder());
+	}
+	
+	
+	//mode "toutes les erreurs" : une seule exception rapporte toutes les violations
+	@Test
+	public void test15() throws ValidationException {
+		Job job = new Job("Job", new HashMap<>()) {
+			private static final long serialVersionUID = 1L;
+			@Task("A")
+			public void a() {}
+			@Task("B")
+			public Integer b(Integer x) {return 1;}
+			@Task("C")
+			public Integer c(@LinkFrom("Z") Integer z) {return 1;}
+		};
+		ValidationException first = assertThrows(ValidationException.class, () ->new JobValidator(job));
+		assertEquals(1, first.getViolations().size());
+		ValidationException all = assertThrows(ValidationException.class, () ->new JobValidator(job, true));
+		assertEquals(3, all.getViolations().size());
+		assertTrue(all.getViolations().contains(first.getMessage()));
+		// Violations dans l'ordre des méthodes (getDeclaredMethods) : la première est celle du mode par défaut
+		assertEquals(first.getMessage(), all.getViolations().get(0));
+		Map<String, String> expected = new HashMap<>();
+		expected.put("a", "void");
+		expected.put("b", "obligatoirement");
+		expected.put("c", "Z");
+		int k = 0;
+		for (Method m : job.getClass().getDeclaredMethods()) {
+			if (m.isAnnotationPresent(Task.class)) assertTrue(all.getViolations().get(k++).contains(expected.get(m.getName())));
+		}
+		assertEquals(String.join("\n", all.getViolations()), all.getMessage());
+		
+		// Structure conforme : les violations du contexte sont toutes relevées
+		Map<String,Object> context  =new HashMap<>();
+		context.put("X", Integer.valueOf(5));
+		ValidationException ctx = assertThrows(ValidationException.class,
+				() ->new JobValidator(new JobWithContext("Job",context), true));
+		assertEquals(2, ctx.getViolations().size());
+		assertEquals(1, assertThrows(ValidationException.class,
+				() ->new JobValidator(new JobWithContext("Job",context))).getViolations().size());
+	}
+	
 }
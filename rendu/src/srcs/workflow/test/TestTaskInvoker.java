@@ -0,0 +1,71 @@
+package srcs.workflow.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import srcs.workflow.job.Context;
+import srcs.workflow.job.Job;
+import srcs.workflow.job.LinkFrom;
+import srcs.workflow.job.Task;
+import srcs.workflow.job.TaskInvoker;
+
+public class TestTaskInvoker {
+	
+	@SuppressWarnings("serial")
+	private static class PrivateJob extends Job {
+		public PrivateJob(String name, Map<String, Object> context) {
+			super(name, context);
+		}
+		
+		@Task("A")
+		public int a(@Context("x") int x) {return x * 2;}
+		
+		@Task("B")
+		private String b(@LinkFrom("A") Integer a, @Context("s") String s) {return s + a;}
+		
+		@Task("C")
+		public Integer c(@LinkFrom("A") Integer a) {throw new IllegalStateException("échec " + a);}
+	}
+	
+	@Test
+	public void test1() throws Exception {
+		Job job = new PrivateJob("Job", new HashMap<>());
+		
+		// Paramètres et retour primitifs, méthode privée d'une classe privée
+		TaskInvoker a = TaskInvoker.of(PrivateJob.class.getMethod("a", int.class));
+		assertEquals(42, a.invoke(job, new Object[] {21}));
+		TaskInvoker b = TaskInvoker.of(PrivateJob.class.getDeclaredMethod("b", Integer.class, String.class));
+		assertEquals("x42", b.invoke(job, new Object[] {42, "x"}));
+		
+		// Mis en cache, y compris par nom et types des paramètres (comme sur un TaskTracker)
+		assertSame(a, TaskInvoker.of(PrivateJob.class.getMethod("a", int.class)));
+		assertSame(a, TaskInvoker.of(PrivateJob.class, "a", new Class<?>[] {int.class}));
+		assertThrows(NoSuchMethodException.class, () -> TaskInvoker.of(PrivateJob.class, "z", new Class<?>[0]));
+	}
+	
+	@Test
+	public void test2() throws Exception {
+		Job job = new PrivateJob("Job", new HashMap<>());
+		TaskInvoker c = TaskInvoker.of(PrivateJob.class.getMethod("c", Integer.class));
+		
+		// Comme Method.invoke : l'exception de la tâche est enveloppée
+		InvocationTargetException e = assertThrows(InvocationTargetException.class, () -> c.invoke(job, new Object[] {1}));
+		assertTrue(e.getCause() instanceof IllegalStateException);
+		assertEquals("échec 1", e.getCause().getMessage());
+		
+		// Comme Method.invoke : des arguments qui ne conviennent pas ne sont pas enveloppés
+		TaskInvoker a = TaskInvoker.of(PrivateJob.class.getMethod("a", int.class));
+		assertThrows(IllegalArgumentException.class, () -> c.invoke(job, new Object[] {"1"}));
+		assertThrows(IllegalArgumentException.class, () -> a.invoke(job, new Object[] {null}));
+		assertThrows(IllegalArgumentException.class, () -> a.invoke(job, new Object[] {1, 2}));
+	}
+	
+}